@@ -2,17 +2,33 @@ package main;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import command.SaveCommand;
+import java.io.BufferedOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.PrintStream;
 import java.time.LocalDateTime;
+import java.util.Date;
 import java.util.Scanner;
-import java.util.Vector;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import model.Coordinates;
+import model.Person;
 import model.StudyGroup;
 import model.StudyGroupCollection;
+import util.AutoSaver;
+import util.BackgroundSaver;
 import util.CommandManager;
+import util.CoordinatesAdapter;
+import util.DateAdapter;
 import util.FileManager;
 import util.IdGenerator;
+import util.Journal;
 import util.LocalDateTimeAdapter;
+import util.PersonAdapter;
+import util.StudyGroupAdapter;
 import util.StudyGroupInputHandler;
 
 /**
@@ -23,49 +39,82 @@ public class Application {
     private final StudyGroupCollection collection;
     private final String fileName;
     private final Gson gson;
-    private StudyGroupInputHandler inputHandler;
+    private static final long LOAD_PROGRESS_SECONDS = 2;
+    /** Размер буфера вывода результатов команд. */
+    private static final int OUTPUT_BUFFER_SIZE = 1 << 16;
+
+    private final StudyGroupInputHandler inputHandler;
+    /** Буферизованный стандартный вывод, в который команды пишут результат по частям. */
+    private final PrintStream output = new PrintStream(
+            new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), OUTPUT_BUFFER_SIZE),
+            false);
     private final Scanner scanner;
-    private IdGenerator idGenerator;
+    private final IdGenerator idGenerator;
     private final FileManager fileManager;
+    private final Journal journal;
+    private final BackgroundSaver saver;
+    private final AutoSaver autoSaver;
     private final CommandManager commandManager;
-    private boolean shouldSaveOnExit = true;
+    private final CompletableFuture<Integer> loading;
+    private boolean loadingHandled;
+    private volatile boolean ready;
+    private volatile boolean shouldSaveOnExit = true;
 
     /**
      * Конструктор класса Application.
-     * Инициализирует все необходимые компоненты приложения.
+     * Инициализирует все необходимые компоненты приложения и начинает загрузку
+     * коллекции в фоновом потоке, не дожидаясь ее окончания.
      *
      * @param fileName имя файла для сохранения/загрузки коллекции
      */
     public Application(String fileName) {
-        this.collection = new StudyGroupCollection();
+        // Коллекцию читают поток загрузки, фоновое сохранение и обработчик завершения,
+        // поэтому нужен конкурентный режим
+        this.collection = new StudyGroupCollection(true);
         this.fileName = fileName;
+        final LocalDateTimeAdapter dateTimeAdapter = new LocalDateTimeAdapter();
+        final DateAdapter dateAdapter = new DateAdapter();
+        final CoordinatesAdapter coordinatesAdapter = new CoordinatesAdapter();
+        final PersonAdapter personAdapter = new PersonAdapter(dateAdapter);
         this.gson = new GsonBuilder()
-                .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter())
+                .registerTypeAdapter(LocalDateTime.class, dateTimeAdapter)
+                .registerTypeHierarchyAdapter(Date.class, dateAdapter)
+                .registerTypeAdapter(Coordinates.class, coordinatesAdapter)
+                .registerTypeAdapter(Person.class, personAdapter)
+                .registerTypeAdapter(StudyGroup.class,
+                        new StudyGroupAdapter(coordinatesAdapter, dateTimeAdapter, personAdapter))
                 .create();
         this.scanner = new Scanner(System.in);
-        this.idGenerator = new IdGenerator(collection);
-        this.inputHandler = new StudyGroupInputHandler(scanner, idGenerator);
+        // Генератор инициализируется после загрузки: до нее команды добавления не выполняются
+        this.idGenerator = new IdGenerator();
+        this.inputHandler = new StudyGroupInputHandler(scanner, idGenerator, gson);
         this.fileManager = new FileManager(gson);
-        this.commandManager = new CommandManager(collection, fileName, gson, inputHandler);
+        this.journal = new Journal(fileName, gson);
+        this.saver = new BackgroundSaver(fileName, collection, fileManager, journal);
+        this.autoSaver = AutoSaver.fromEnvironment(collection, saver);
+        this.commandManager = new CommandManager(collection, gson, inputHandler, journal, saver,
+                autoSaver);
 
         setupShutdownHook();
-        loadCollection();
+        this.loading = startLoading();
     }
 
     /**
      * Настраивает обработчик завершения работы приложения.
-     * При получении сигнала завершения сохраняет коллекцию в файл.
+     * При получении сигнала завершения сохраняет коллекцию в файл, дождавшись
+     * уже начатого фонового сохранения. Если коллекция еще не загружена,
+     * файл не перезаписывается.
      */
     private void setupShutdownHook() {
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-            if (shouldSaveOnExit) {
+            autoSaver.stop();
+            if (shouldSaveOnExit && !ready) {
+                System.out.println("\nЗагрузка коллекции не завершена, сохранение пропущено.");
+            } else if (shouldSaveOnExit) {
                 System.out.println("\nПолучен сигнал завершения. Сохраняем коллекцию...");
                 try {
-                    final SaveCommand saveCommand = new SaveCommand(fileName, gson);
-                    saveCommand.setCollection(collection);
-                    final String result = saveCommand.execute(new String[0]);
-                    System.out.println(result);
-                } catch (IOException e) {
+                    System.out.println(saver.saveAndWait());
+                } catch (IOException | RuntimeException e) {
                     System.err.println("Ошибка при сохранении: " + e.getMessage());
                 }
             }
@@ -73,64 +122,135 @@ public class Application {
     }
 
     /**
-     * Загружает коллекцию из файла.
-     * Если файл не существует или пуст, создает новую пустую коллекцию.
+     * Запускает загрузку коллекции из файла и применение журнала изменений
+     * в фоновом потоке.
+     *
+     * @return количество примененных записей журнала или ошибка загрузки
      */
-    private void loadCollection() {
-        try {
-            final Vector<StudyGroup> loadedCollection = fileManager.loadCollection(fileName);
-            if (!loadedCollection.isEmpty()) {
-                try {
-                    collection.loadFromVector(loadedCollection);
-                    this.idGenerator = new IdGenerator(collection);
-                    this.inputHandler = new StudyGroupInputHandler(scanner, idGenerator);
-                } catch (IllegalArgumentException e) {
-                    System.err.println("Ошибка при загрузке коллекции: " + e.getMessage());
-                    System.err.println("В файле обнаружены дублирующиеся ID.");
-                    System.err.println("Хотите создать новую пустую коллекцию? (да/нет)");
-                    
-                    while (true) {
-                        final String response = scanner.nextLine().trim().toLowerCase();
-                        if (response.equals("да")) {
-                            System.out.println("Создана новая пустая коллекция.");
-                            break;
-                        } else if (response.equals("нет")) {
-                            System.err.println("Программа завершена. "
-                                   + "Исправьте файл и попробуйте снова.");
-                            shouldSaveOnExit = false;
-                            System.exit(0);
-                        } else {
-                            System.err.println("Пожалуйста, введите Да или Нет");
-                        }
-                    } 
+    private CompletableFuture<Integer> startLoading() {
+        final CompletableFuture<Integer> result = new CompletableFuture<>();
+        final Thread loader = new Thread(() -> {
+            try {
+                fileManager.loadCollection(fileName, collection);
+                result.complete(journal.replay(collection));
+            } catch (IOException | RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        }, "collection-loader");
+        loader.setDaemon(true);
+        loader.start();
+        return result;
+    }
+
+    /**
+     * Дожидается окончания загрузки коллекции, сообщая о ее ходе, и завершает
+     * подготовку коллекции к работе. Ошибки загрузки обрабатываются здесь,
+     * в потоке консоли, так как требуют ответа пользователя.
+     */
+    private void awaitLoading() {
+        if (loadingHandled) {
+            return;
+        }
+        loadingHandled = true;
+        final long started = System.nanoTime();
+        boolean reported = false;
+        while (true) {
+            try {
+                final int replayed = loading.get(LOAD_PROGRESS_SECONDS, TimeUnit.SECONDS);
+                if (replayed > 0) {
+                    System.out.println("Из журнала применено изменений: " + replayed);
+                }
+                if (reported) {
+                    System.out.println("Коллекция загружена, элементов: " + collection.size());
                 }
+                break;
+            } catch (TimeoutException e) {
+                System.out.println((reported ? "Коллекция загружается"
+                        : "Коллекция еще загружается, команда будет выполнена после загрузки")
+                        + " (прошло " + TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - started)
+                        + " с)");
+                reported = true;
+            } catch (ExecutionException e) {
+                handleLoadError(e.getCause());
+                break;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                shouldSaveOnExit = false;
+                System.exit(0);
             }
+        }
+
+        idGenerator.initialize(collection);
+        try {
+            journal.attach(collection);
         } catch (IOException e) {
-            if (e.getMessage().contains("Ошибка парсинга JSON файла")) {
-                System.err.println("Ошибка при загрузке коллекции: " + e.getMessage());
+            System.err.println("Ошибка открытия журнала: " + e.getMessage());
+            System.err.println("Изменения будут сохраняться только в файл коллекции.");
+        }
+        ready = true;
+        autoSaver.start();
+    }
+
+    /**
+     * Обрабатывает ошибку загрузки коллекции.
+     * Если файл поврежден или содержит дублирующиеся ID, предлагает начать с пустой коллекцией.
+     *
+     * @param error ошибка загрузки
+     */
+    private void handleLoadError(Throwable error) {
+        if (error instanceof IllegalArgumentException) {
+            System.err.println("Ошибка при загрузке коллекции: " + error.getMessage());
+            System.err.println("В файле обнаружены дублирующиеся ID.");
+            askToStartEmpty();
+        } else if (error instanceof IOException) {
+            if (error.getMessage().contains("Ошибка парсинга")) {
+                System.err.println("Ошибка при загрузке коллекции: " + error.getMessage());
                 System.err.println("Файл поврежден или имеет неверный формат.");
-                System.err.println("Хотите создать новую пустую коллекцию? (да/нет)");
-                
-                while (true) {
-                    final String response = scanner.nextLine().trim().toLowerCase();
-                    if (response.equals("да")) {
-                        System.out.println("Создана новая пустая коллекция.");
-                        break;
-                    } else if (response.equals("нет")) {
-                        System.err.println("Программа завершена. "
-                              +  "Исправьте файл и попробуйте снова.");
-                        shouldSaveOnExit = false;
-                        System.exit(0);
-                    } else {
-                        System.err.println("Пожалуйста, введите Да или Нет");
-                    }
-                }
+                askToStartEmpty();
+            } else {
+                System.out.println("Ошибка чтения/создания файла: " + error.getMessage());
+            }
+        } else {
+            System.err.println("Ошибка при загрузке коллекции: " + error.getMessage());
+            askToStartEmpty();
+        }
+    }
+
+    /**
+     * Спрашивает пользователя, начать ли с пустой коллекцией, и завершает программу
+     * при отказе.
+     */
+    private void askToStartEmpty() {
+        System.err.println("Хотите создать новую пустую коллекцию? (да/нет)");
+        while (true) {
+            final String response = scanner.nextLine().trim().toLowerCase();
+            if (response.equals("да")) {
+                startEmpty();
+                break;
+            } else if (response.equals("нет")) {
+                System.err.println("Программа завершена. "
+                        + "Исправьте файл и попробуйте снова.");
+                shouldSaveOnExit = false;
+                System.exit(0);
             } else {
-                System.out.println("Ошибка чтения/создания файла: " + e.getMessage());
+                System.err.println("Пожалуйста, введите Да или Нет");
             }
         }
     }
 
+    /**
+     * Начинает работу с пустой коллекцией, отбрасывая журнал поврежденной коллекции.
+     */
+    private void startEmpty() {
+        collection.clear();
+        try {
+            journal.discard();
+        } catch (IOException e) {
+            System.err.println("Ошибка удаления журнала: " + e.getMessage());
+        }
+        System.out.println("Создана новая пустая коллекция.");
+    }
+
     /**
      * Выполняет команду, введенную пользователем.
      *
@@ -140,9 +260,18 @@ public class Application {
         final String[] parts = input.trim().split("\\s+", 2);
         final String commandName = parts[0].toLowerCase();
         final String[] args = parts.length > 1 ? parts[1].split("\\s+") : new String[0];
+        if (commandManager.requiresCollection(commandName)) {
+            awaitLoading();
+        }
 
-        final String result = commandManager.executeCommand(commandName, args);
-        System.out.println(result);
+        System.out.flush();
+        try {
+            commandManager.executeCommand(commandName, args, output);
+        } catch (IOException e) {
+            // PrintStream не выбрасывает IOException, а запоминает ошибку
+            System.err.println("Ошибка вывода результата: " + e.getMessage());
+        }
+        output.flush();
     }
 
     /**
@@ -165,6 +294,10 @@ public class Application {
         System.out.println(app.commandManager.executeCommand("welcome", new String[0]));
 
         while (true) {
+            // Ошибки загрузки сообщаются, как только она завершилась
+            if (app.loading.isDone()) {
+                app.awaitLoading();
+            }
             // Выводим приглашение к вводу
             System.out.print("> ");
             final String input;
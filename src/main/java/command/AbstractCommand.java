@@ -50,9 +50,10 @@ public abstract class AbstractCommand implements CollectionCommand {
      * @param args аргументы команды
      * @return результат выполнения команды
      * @throws IOException если произошла ошибка ввода/вывода
+     * @throws CommandFailedException если команда не выполнена
      */
     @Override
-    public abstract String execute(String[] args) throws IOException;
+    public abstract String execute(String[] args) throws IOException, CommandFailedException;
 
     /**
      * Устанавливает коллекцию для команды.
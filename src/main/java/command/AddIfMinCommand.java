@@ -25,14 +25,15 @@ public class AddIfMinCommand extends AbstractCommand {
      * @param args аргументы команды (не используются)
      * @return результат выполнения команды
      * @throws IOException если произошла ошибка ввода/вывода
+     * @throws CommandFailedException если коллекция или обработчик ввода не установлены
      */
     @Override
-    public String execute(String[] args) throws IOException {
+    public String execute(String[] args) throws IOException, CommandFailedException {
         if (collection == null) {
-            return "Ошибка: коллекция не установлена";
+            throw new CommandFailedException("Ошибка: коллекция не установлена");
         }
         if (inputHandler == null) {
-            return "Ошибка: обработчик ввода не установлен";
+            throw new CommandFailedException("Ошибка: обработчик ввода не установлен");
         }
         
         final StudyGroup newGroup = inputHandler.readStudyGroup();
@@ -46,6 +47,16 @@ public class AddIfMinCommand extends AbstractCommand {
         }
     }
 
+    /**
+     * Команда читает элемент через обработчик ввода.
+     *
+     * @return true
+     */
+    @Override
+    public boolean readsElement() {
+        return true;
+    }
+
     /**
      * Возвращает описание команды.
      *
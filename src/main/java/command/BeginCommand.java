@@ -0,0 +1,41 @@
+package command;
+
+/**
+ * Команда для начала пакета изменений.
+ */
+public class BeginCommand extends AbstractCommand {
+
+    /**
+     * Конструктор команды.
+     */
+    public BeginCommand() {
+        super("begin", "начать пакет изменений (применить — commit, отменить — rollback)", null);
+    }
+
+    /**
+     * Выполняет начало пакета изменений.
+     *
+     * @param args аргументы команды (не используются)
+     * @return сообщение о начале пакета
+     * @throws IllegalArgumentException если пакет уже начат
+     * @throws CommandFailedException если коллекция не установлена
+     */
+    @Override
+    public String execute(String[] args) throws CommandFailedException {
+        if (collection == null) {
+            throw new CommandFailedException("Ошибка: коллекция не установлена");
+        }
+        collection.begin();
+        return "Пакет изменений начат. Примените его командой commit или отмените командой rollback";
+    }
+
+    /**
+     * Возвращает описание команды.
+     *
+     * @return описание команды
+     */
+    @Override
+    public String getDescription() {
+        return description;
+    }
+}
@@ -18,11 +18,12 @@ public class ClearCommand extends AbstractCommand {
      *
      * @param args аргументы команды (не используются)
      * @return сообщение об успешной очистке
+     * @throws CommandFailedException если коллекция не установлена
      */
     @Override
-    public String execute(String[] args) {
+    public String execute(String[] args) throws CommandFailedException {
         if (collection == null) {
-            return "Ошибка: коллекция не установлена";
+            throw new CommandFailedException("Ошибка: коллекция не установлена");
         }
         collection.clear();
         return "Коллекция успешно очищена";
@@ -4,6 +4,13 @@ import java.io.IOException;
 
 /**
  * Базовый интерфейс для всех команд.
+ *
+ * <p>Результат команды можно получить строкой ({@link #execute(String[])}) или записать
+ * в приемник по частям ({@link #execute(String[], Appendable)}). Команды с объемным
+ * выводом реализуют второй способ, чтобы вывод начинался сразу и не собирался в памяти.
+ *
+ * <p>Если команда не выполнена, она выбрасывает {@link CommandFailedException}
+ * с сообщением для пользователя вместо того, чтобы вернуть его результатом.
  */
 public interface Command {
 
@@ -13,9 +20,56 @@ public interface Command {
      * @param args аргументы команды
      * @return результат выполнения команды
      * @throws IOException если произошла ошибка ввода/вывода
+     * @throws CommandFailedException если команда не выполнена
      */
-    String execute(String[] args) throws IOException;
+    String execute(String[] args) throws IOException, CommandFailedException;
+
+    /**
+     * Выполняет команду, записывая результат в приемник. Каждая строка результата,
+     * включая последнюю, завершается переводом строки. По умолчанию записывается
+     * результат {@link #execute(String[])}.
+     *
+     * @param args аргументы команды
+     * @param output приемник результата
+     * @throws IOException если произошла ошибка ввода/вывода
+     * @throws CommandFailedException если команда не выполнена
+     */
+    default void execute(String[] args, Appendable output)
+            throws IOException, CommandFailedException {
+        output.append(execute(args)).append('\n');
+    }
+
+    /**
+     * Собирает в строку результат команды, записанный через
+     * {@link #execute(String[], Appendable)}, без завершающего перевода строки.
+     * Используется командами с выводом по частям для реализации {@link #execute(String[])}.
+     *
+     * @param command команда
+     * @param args аргументы команды
+     * @return результат выполнения команды
+     * @throws IOException если произошла ошибка ввода/вывода
+     * @throws CommandFailedException если команда не выполнена
+     */
+    static String collectOutput(Command command, String[] args)
+            throws IOException, CommandFailedException {
+        final StringBuilder result = new StringBuilder();
+        command.execute(args, result);
+        if (result.length() > 0 && result.charAt(result.length() - 1) == '\n') {
+            result.setLength(result.length() - 1);
+        }
+        return result.toString();
+    }
     
+    /**
+     * Проверяет, читает ли команда элемент через обработчик ввода. В скрипте значения
+     * полей такого элемента записаны в строках после команды.
+     *
+     * @return true, если команда читает элемент
+     */
+    default boolean readsElement() {
+        return false;
+    }
+
     /**
      * Возвращает описание команды.
      *
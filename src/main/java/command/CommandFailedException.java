@@ -0,0 +1,22 @@
+package command;
+
+/**
+ * Исключение, сообщающее, что команда не выполнена. Сообщение исключения — результат
+ * команды, который выводится пользователю как есть.
+ *
+ * <p>В отличие от результата-строки исключение позволяет отличить ошибку
+ * от успешного выполнения, например, чтобы остановить и отменить атомарный скрипт.
+ */
+public class CommandFailedException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Конструктор исключения.
+     *
+     * @param message результат команды для пользователя
+     */
+    public CommandFailedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,41 @@
+package command;
+
+/**
+ * Команда для применения пакета изменений.
+ */
+public class CommitCommand extends AbstractCommand {
+
+    /**
+     * Конструктор команды.
+     */
+    public CommitCommand() {
+        super("commit", "применить пакет изменений", null);
+    }
+
+    /**
+     * Применяет пакет изменений.
+     *
+     * @param args аргументы команды (не используются)
+     * @return сообщение о применении пакета
+     * @throws IllegalArgumentException если пакет не начат
+     * @throws CommandFailedException если коллекция не установлена
+     */
+    @Override
+    public String execute(String[] args) throws CommandFailedException {
+        if (collection == null) {
+            throw new CommandFailedException("Ошибка: коллекция не установлена");
+        }
+        final long applied = collection.commit();
+        return "Пакет изменений применен, изменений: " + applied;
+    }
+
+    /**
+     * Возвращает описание команды.
+     *
+     * @return описание команды
+     */
+    @Override
+    public String getDescription() {
+        return description;
+    }
+}
@@ -0,0 +1,54 @@
+package command;
+
+
+/**
+ * Команда для подсчета количества групп с количеством студентов в заданном диапазоне.
+ */
+public class CountByStudentsCountBetweenCommand extends AbstractCommand {
+
+    /**
+     * Конструктор команды.
+     */
+    public CountByStudentsCountBetweenCommand() {
+        super("count_by_students_count_between",
+              "вывести количество элементов, значение поля studentsCount которых лежит "
+                + "в заданном диапазоне",
+              null);
+    }
+
+    /**
+     * Выполняет подсчет количества групп с количеством студентов в диапазоне [min, max].
+     *
+     * @param args аргументы команды (должны быть указаны границы min и max)
+     * @return сообщение с результатом подсчета
+     * @throws CommandFailedException если границы диапазона не указаны или не являются числами
+     */
+    @Override
+    public String execute(String[] args) throws CommandFailedException {
+        if (collection == null) {
+            throw new CommandFailedException("Ошибка: коллекция не установлена");
+        }
+        if (args.length < 2) {
+            throw new CommandFailedException("Не указаны границы диапазона");
+        }
+        try {
+            final long min = Long.parseLong(args[0]);
+            final long max = Long.parseLong(args[1]);
+            final int count = collection.countByStudentsCountBetween(min, max);
+            return "Количество групп с количеством студентов от " + min + " до " + max
+                    + ": " + count;
+        } catch (NumberFormatException e) {
+            throw new CommandFailedException("Границы диапазона должны быть числами");
+        }
+    }
+
+    /**
+     * Возвращает описание команды.
+     *
+     * @return описание команды
+     */
+    @Override
+    public String getDescription() {
+        return description;
+    }
+}
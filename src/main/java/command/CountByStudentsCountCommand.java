@@ -20,21 +20,22 @@ public class CountByStudentsCountCommand extends AbstractCommand {
      *
      * @param args аргументы команды (должно быть указано количество студентов)
      * @return сообщение с результатом подсчета
+     * @throws CommandFailedException если количество студентов не указано или не является числом
      */
     @Override
-    public String execute(String[] args) {
+    public String execute(String[] args) throws CommandFailedException {
         if (collection == null) {
-            return "Ошибка: коллекция не установлена";
+            throw new CommandFailedException("Ошибка: коллекция не установлена");
         }
         if (args.length < 1) {
-            return "Не указано количество студентов";
+            throw new CommandFailedException("Не указано количество студентов");
         }
         try {
             final long studentsCount = Long.parseLong(args[0]);
             final int count = collection.countByStudentsCount(studentsCount);
             return "Количество групп с " + studentsCount + " студентами: " + count;
         } catch (NumberFormatException e) {
-            return "Количество студентов должно быть числом";
+            throw new CommandFailedException("Количество студентов должно быть числом");
         }
     }
 
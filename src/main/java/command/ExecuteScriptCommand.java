@@ -1,19 +1,62 @@
 package command;
 
+import java.io.Flushable;
 import java.io.IOException;
-import java.util.List;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.Stack;
+import java.util.Set;
 import util.FileManager;
+import util.StudyGroupInputHandler;
 
 /**
  * Команда для выполнения скрипта из файла.
+ * Значения полей элемента для команд add, update, insert_at и add_if_min читаются из строк
+ * скрипта, следующих за командой, либо задаются строкой JSON в той же строке, например
+ * {@code add {"name": "P3112", ...}}.
+ *
+ * <p>Скрипт компилируется в план (см. {@link ScriptPlan}), который хранится в кэше,
+ * пока файл не изменится, поэтому повторный запуск не читает и не разбирает файл.
+ * Циклические вызовы ищутся по планам до выполнения первой команды. Результаты команд,
+ * в том числе вложенных скриптов, записываются в приемник вывода по мере выполнения,
+ * а не собираются в памяти.
+ *
+ * <p>С параметром {@value #ATOMIC_OPTION} скрипт выполняется одним пакетом изменений
+ * (см. {@link model.StudyGroupCollection#begin()}): выполнение останавливается на первой
+ * ошибке, и все изменения скрипта, включая вложенные скрипты, отменяются.
  */
 public class ExecuteScriptCommand extends AbstractCommand {
 
-    private static final Stack<String> scriptStack = new Stack<>();
+    /** Параметр атомарного выполнения скрипта. */
+    public static final String ATOMIC_OPTION = "--atomic";
+    private static final String CYCLE_MESSAGE =
+            "Обнаружен циклический вызов скриптов. Не делайте гадости такие.";
+    /** Сколько скомпилированных скриптов хранится в кэше. */
+    private static final int CACHE_SIZE = 32;
+    /** Наибольшая задержка вывода результата команды. */
+    private static final long FLUSH_NANOS = 100_000_000L;
+
     private final Map<String, Command> commands;
     private final FileManager fileManager;
+    private final Map<Path, ScriptPlan> plans =
+            new LinkedHashMap<Path, ScriptPlan>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Path, ScriptPlan> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            };
+    /** Выполняемые сейчас скрипты. */
+    private final Set<Path> running = new HashSet<>();
+    private long flushedAt;
+    /** Выполняется атомарный скрипт: ошибка останавливает все скрипты. */
+    private boolean atomic;
+    /** Описание первой ошибки атомарного скрипта или null. */
+    private String failure;
 
     /**
      * Конструктор команды выполнения скрипта.
@@ -22,79 +65,328 @@ public class ExecuteScriptCommand extends AbstractCommand {
      * @param fileManager менеджер файлов для чтения скрипта
      */
     public ExecuteScriptCommand(Map<String, Command> commands, FileManager fileManager) {
-        super("execute_script", "считать и исполнить скрипт из указанного файла", null);
+        this(commands, fileManager, null);
+    }
+
+    /**
+     * Конструктор команды выполнения скрипта, передающей строки скрипта обработчику ввода.
+     *
+     * @param commands карта доступных команд
+     * @param fileManager менеджер файлов для чтения скрипта
+     * @param inputHandler обработчик ввода элементов или null
+     */
+    public ExecuteScriptCommand(Map<String, Command> commands, FileManager fileManager,
+            StudyGroupInputHandler inputHandler) {
+        super("execute_script", "считать и исполнить скрипт из указанного файла", inputHandler);
         this.commands = commands;
         this.fileManager = fileManager;
     }
 
     /**
      * Выполняет скрипт из указанного файла.
-     * Читает команды из файла построчно и выполняет их.
+     *
+     * @param args аргументы команды: имя файла скрипта, перед которым может быть указан
+     *     параметр {@value #ATOMIC_OPTION}
+     * @return результаты команд скрипта и итог выполнения
+     * @throws IOException если произошла ошибка ввода/вывода
+     * @throws CommandFailedException если скрипт не удалось прочитать или вызовы
+     *     скриптов образуют цикл
+     */
+    @Override
+    public String execute(String[] args) throws IOException, CommandFailedException {
+        return Command.collectOutput(this, args);
+    }
+
+    /**
+     * Выполняет скрипт из указанного файла.
+     * Выполняет команды скрипта по порядку, записывая их результаты в приемник,
+     * а после них — итог выполнения скрипта.
      * Пропускает пустые строки и строки, начинающиеся с #.
      * Запрещает циклические вызовы скриптов.
      *
-     * @param args аргументы команды (должно быть указано имя файла скрипта)
-     * @return результат выполнения всех команд из скрипта
-     * @throws IOException если произошла ошибка при чтении файла
+     * @param args аргументы команды: имя файла скрипта, перед которым может быть указан
+     *     параметр {@value #ATOMIC_OPTION}
+     * @param output приемник результатов
+     * @throws IOException если не удалось записать результат
+     * @throws CommandFailedException если скрипт не удалось прочитать или вызовы
+     *     скриптов образуют цикл
      */
     @Override
-    public String execute(String[] args) throws IOException {
+    public void execute(String[] args, Appendable output)
+            throws IOException, CommandFailedException {
         if (collection == null) {
-            return "Ошибка: коллекция не установлена";
+            throw new CommandFailedException("Ошибка: коллекция не установлена");
         }
-        
-        if (args.length != 1) {
+
+        final boolean atomicOption = args.length == 2 && ATOMIC_OPTION.equals(args[0]);
+        if (args.length != 1 && !atomicOption) {
             throw new IllegalArgumentException("Необходимо указать имя файла скрипта");
         }
+        // Атомарный скрипт внутри атомарного выполняется в общем пакете
+        final boolean ownBatch = atomicOption && !atomic;
+        if (ownBatch && collection.inBatch()) {
+            throw new IllegalArgumentException(
+                    "Атомарный скрипт нельзя выполнить, пока открыт пакет изменений");
+        }
 
-        final String fileName = args[0];
-        
-        // Проверяем, не создаст ли этот скрипт циклический вызов
-        if (scriptStack.contains(fileName)) {
-            return "Обнаружен циклический вызов скриптов. Не делайте гадости такие.";
+        final String fileName = args[args.length - 1];
+        final Path path = resolve(fileName);
+        final ScriptPlan plan;
+        try {
+            plan = getPlan(path, fileName);
+            // Все дерево вызовов проверяется один раз, при запуске внешнего скрипта
+            if (running.isEmpty() && hasCycle(path, plan, new HashSet<>(), new HashSet<>())) {
+                throw new CommandFailedException(CYCLE_MESSAGE);
+            }
+        } catch (IOException e) {
+            throw new CommandFailedException(
+                    "Ошибка при чтении файла '" + fileName + "': " + e.getMessage());
+        }
+        // Вложенный скрипт мог измениться после проверки
+        if (!running.add(path)) {
+            throw new CommandFailedException(CYCLE_MESSAGE);
         }
 
+        final ScriptPlan.Cursor cursor = plan.cursor();
+        int executed = 0;
+        final String summary;
+        if (inputHandler != null) {
+            // Команды, вводящие элемент, читают значения полей из следующих строк скрипта
+            inputHandler.pushScript(cursor);
+        }
+        if (ownBatch) {
+            collection.begin();
+            atomic = true;
+            failure = null;
+        }
         try {
-            scriptStack.push(fileName);
-            final List<String> scriptLines = fileManager.readScript(fileName);
-            final StringBuilder result = new StringBuilder();
-
-            for (String line : scriptLines) {
-                final String[] parts = line.split("\\s+", 2);
-                final String commandName = parts[0].toLowerCase();
-                final String[] commandArgs = parts.length > 1 
-                        ? parts[1].split("\\s+") 
-                        : new String[0];
-
-                final Command command = commands.get(commandName);
-                if (command == null) {
-                    result.append("Неизвестная команда: ")
-                            .append(commandName)
-                            .append("\n");
-                    continue;
+            while (cursor.hasNext() && failure == null) {
+                final ScriptPlan.Step step = cursor.nextStep();
+                if (step != null) {
+                    final int line = cursor.getLine();
+                    // Ошибка во вложенном скрипте уже записана с его строкой
+                    if (!executeStep(step, output) && atomic && failure == null) {
+                        failure = "'" + fileName + "', строка " + line;
+                    }
+                    executed++;
                 }
+            }
+            if (ownBatch) {
+                if (failure != null) {
+                    final long undone = collection.rollback();
+                    summary = "Скрипт '" + fileName + "' остановлен из-за ошибки (" + failure
+                            + "), отменено изменений: " + undone;
+                } else {
+                    final long applied = collection.commit();
+                    summary = "Скрипт '" + fileName + "' выполнен атомарно, команд: " + executed
+                            + ", изменений: " + applied;
+                }
+            } else if (failure != null) {
+                summary = "Скрипт '" + fileName + "' остановлен из-за ошибки, команд: " + executed;
+            } else {
+                summary = "Скрипт '" + fileName + "' выполнен, команд: " + executed;
+            }
+        } finally {
+            if (ownBatch) {
+                atomic = false;
+                failure = null;
+                if (collection.inBatch()) {
+                    // Исключение, не перехваченное командой: изменения отменяются
+                    collection.rollback();
+                }
+            }
+            if (inputHandler != null) {
+                inputHandler.popScript();
+            }
+            running.remove(path);
+        }
+        output.append(summary).append('\n');
+    }
 
-                try {
-                    // Если команда работает с коллекцией, установим ее
-                    if (command instanceof CollectionCommand) {
-                        ((CollectionCommand) command).setCollection(collection);
-                    }
-                    
-                    result.append(command.execute(commandArgs))
-                            .append("\n");
-                } catch (IOException | IllegalArgumentException e) {
-                    result.append("Ошибка при выполнении команды ")
-                            .append(commandName)
-                            .append(": ")
-                            .append(e.getMessage())
-                            .append("\n");
+    /**
+     * Приводит имя файла скрипта к ключу кэша и проверки циклов.
+     *
+     * @param fileName имя файла скрипта
+     * @return абсолютный нормализованный путь
+     */
+    static Path resolve(String fileName) {
+        return Paths.get(fileName).toAbsolutePath().normalize();
+    }
+
+    /**
+     * Возвращает план скрипта из кэша или компилирует его, если файл изменился.
+     *
+     * @param path путь к скрипту
+     * @param fileName имя файла для сообщений об ошибках
+     * @return план скрипта
+     * @throws IOException если файл не найден или не читается
+     */
+    private ScriptPlan getPlan(Path path, String fileName) throws IOException {
+        final BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            throw new IOException("Файл '" + fileName + "' не найден", e);
+        }
+        ScriptPlan plan = plans.get(path);
+        if (plan == null || !plan.matches(attributes.lastModifiedTime(), attributes.size())) {
+            plan = ScriptPlan.compile(fileManager.readScriptLines(path.toString()), commands,
+                    this, attributes.lastModifiedTime(), attributes.size());
+            plans.put(path, plan);
+        }
+        return plan;
+    }
+
+    /**
+     * Ищет цикл в вызовах скриптов обходом планов в глубину. Скрипты, которые
+     * не удалось прочитать, пропускаются: ошибка будет выведена при их выполнении.
+     *
+     * @param path путь к скрипту
+     * @param plan план скрипта
+     * @param visiting скрипты на текущем пути обхода
+     * @param done скрипты, в вызовах которых циклов нет
+     * @return true, если найден цикл
+     */
+    private boolean hasCycle(Path path, ScriptPlan plan, Set<Path> visiting, Set<Path> done) {
+        visiting.add(path);
+        for (Path nested : plan.getNested()) {
+            if (visiting.contains(nested)) {
+                return true;
+            }
+            if (done.contains(nested)) {
+                continue;
+            }
+            final ScriptPlan nestedPlan;
+            try {
+                nestedPlan = getPlan(nested, nested.toString());
+            } catch (IOException e) {
+                continue;
+            }
+            if (hasCycle(nested, nestedPlan, visiting, done)) {
+                return true;
+            }
+        }
+        visiting.remove(path);
+        done.add(path);
+        return false;
+    }
+
+    /**
+     * Выполняет шаг скрипта и записывает его результат в приемник.
+     * Если в строке после аргументов задан элемент в виде JSON-объекта,
+     * он передается обработчику ввода. Если с прошлой передачи вывода прошло больше
+     * {@link #FLUSH_NANOS}, приемник, поддерживающий {@link Flushable}, сбрасывается.
+     *
+     * @param step шаг скрипта
+     * @param output приемник результатов
+     * @return false, если команда неизвестна или завершилась ошибкой
+     * @throws IOException если не удалось записать результат
+     */
+    private boolean executeStep(ScriptPlan.Step step, Appendable output) throws IOException {
+        final Command command = step.command;
+        if (command == null) {
+            output.append("Неизвестная команда: ").append(step.name).append('\n');
+            return false;
+        }
+        if (atomic && (command instanceof BeginCommand || command instanceof CommitCommand
+                || command instanceof RollbackCommand)) {
+            output.append("Команда ").append(step.name)
+                    .append(" недоступна в атомарном скрипте\n");
+            return false;
+        }
+
+        final StepOutput stepOutput = new StepOutput(output);
+        try {
+            // Если команда работает с коллекцией, установим ее
+            if (command instanceof CollectionCommand) {
+                ((CollectionCommand) command).setCollection(collection);
+            }
+            if (inputHandler != null) {
+                inputHandler.setInlineRecord(step.record);
+                if (step.record == null && command.readsElement()) {
+                    inputHandler.expectRecord();
                 }
             }
-            return result.toString();
+
+            command.execute(step.args, stepOutput);
+            return true;
+        } catch (CommandFailedException e) {
+            output.append(e.getMessage()).append('\n');
+            return false;
+        } catch (IllegalArgumentException e) {
+            output.append("Ошибка при выполнении команды ").append(step.name).append(": ")
+                    .append(e.getMessage()).append('\n');
+            return false;
         } catch (IOException e) {
-            return "Ошибка при чтении файла '" + fileName + "': " + e.getMessage();
+            if (stepOutput.failedWrite) {
+                // Приемник недоступен, продолжать скрипт бессмысленно
+                throw e;
+            }
+            output.append("Ошибка при выполнении команды ").append(step.name).append(": ")
+                    .append(e.getMessage()).append('\n');
+            return false;
         } finally {
-            scriptStack.pop();
+            if (inputHandler != null) {
+                inputHandler.setInlineRecord(null);
+                // Команда не прочитала элемент: его строки не должны выполняться как команды
+                inputHandler.skipRecord();
+            }
+            if (System.nanoTime() - flushedAt >= FLUSH_NANOS) {
+                flushedAt = System.nanoTime();
+                if (output instanceof Flushable) {
+                    ((Flushable) output).flush();
+                }
+            }
+        }
+    }
+
+    /**
+     * Приемник результата одного шага: передает вывод дальше и запоминает,
+     * выбросил ли ошибку сам приемник.
+     */
+    private static final class StepOutput implements Appendable, Flushable {
+        private final Appendable target;
+        /** Ошибку выбросил сам приемник, а не команда. */
+        private boolean failedWrite;
+
+        StepOutput(Appendable target) {
+            this.target = target;
+        }
+
+        @Override
+        public Appendable append(CharSequence csq) throws IOException {
+            final CharSequence text = csq == null ? "null" : csq;
+            return append(text, 0, text.length());
+        }
+
+        @Override
+        public Appendable append(CharSequence csq, int start, int end) throws IOException {
+            final CharSequence text = csq == null ? "null" : csq;
+            try {
+                target.append(text, start, end);
+            } catch (IOException e) {
+                failedWrite = true;
+                throw e;
+            }
+            return this;
+        }
+
+        @Override
+        public Appendable append(char c) throws IOException {
+            try {
+                target.append(c);
+            } catch (IOException e) {
+                failedWrite = true;
+                throw e;
+            }
+            return this;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (target instanceof Flushable) {
+                ((Flushable) target).flush();
+            }
         }
     }
 
@@ -0,0 +1,66 @@
+package command;
+
+import com.google.gson.Gson;
+import java.io.File;
+import java.io.IOException;
+import util.FileManager;
+
+/**
+ * Команда для выгрузки коллекции в двоичный снимок, JSON-файл или сегменты.
+ */
+public class ExportCommand extends AbstractCommand {
+
+    private final FileManager fileManager;
+
+    /**
+     * Конструктор команды выгрузки.
+     *
+     * @param gson объект Gson для сериализации
+     */
+    public ExportCommand(Gson gson) {
+        super("export", "выгрузить коллекцию в файл (двоичный формат, json или сегменты)", null);
+        this.fileManager = new FileManager(gson);
+    }
+
+    /**
+     * Выгружает коллекцию в указанный файл.
+     *
+     * @param args имя файла и необязательный формат: binary (по умолчанию), json или segments
+     * @return сообщение о результате выполнения команды
+     * @throws IllegalArgumentException если аргументы некорректны
+     * @throws IOException если произошла ошибка при записи в файл
+     * @throws CommandFailedException если коллекция не установлена
+     */
+    @Override
+    public String execute(String[] args) throws IOException, CommandFailedException {
+        if (collection == null) {
+            throw new CommandFailedException("Ошибка: коллекция не установлена");
+        }
+        if (args.length < 1 || args.length > 2) {
+            throw new IllegalArgumentException("Необходимо указать имя файла и, "
+                    + "при необходимости, формат (binary, json или segments)");
+        }
+        final String format = args.length == 2 ? args[1].toLowerCase() : "binary";
+        final File file;
+        if (format.equals("binary")) {
+            file = fileManager.saveBinary(args[0], collection.getCollection());
+        } else if (format.equals("json")) {
+            file = fileManager.saveJson(args[0], collection.getCollection());
+        } else if (format.equals("segments")) {
+            file = fileManager.saveSegments(args[0], collection.getCollection());
+        } else {
+            throw new IllegalArgumentException("Формат должен быть binary, json или segments");
+        }
+        return "Коллекция выгружена в файл: " + file.getAbsolutePath();
+    }
+
+    /**
+     * Возвращает описание команды.
+     *
+     * @return описание команды
+     */
+    @Override
+    public String getDescription() {
+        return description;
+    }
+}
@@ -0,0 +1,81 @@
+package command;
+
+import java.io.IOException;
+import java.util.Iterator;
+import model.StudyGroup;
+
+/**
+ * Команда для вывода групп с количеством студентов в заданном диапазоне.
+ */
+public class FilterStudentsCountBetweenCommand extends AbstractCommand {
+
+    /**
+     * Конструктор команды.
+     */
+    public FilterStudentsCountBetweenCommand() {
+        super("filter_students_count_between",
+              "вывести элементы, значение поля studentsCount которых лежит в заданном диапазоне, "
+                + "в порядке возрастания",
+              null);
+    }
+
+    /**
+     * Выполняет вывод групп с количеством студентов в диапазоне [min, max].
+     *
+     * @param args аргументы команды (должны быть указаны границы min и max)
+     * @return строка с найденными элементами
+     * @throws IOException если произошла ошибка ввода/вывода
+     * @throws CommandFailedException если границы диапазона не указаны или не являются числами
+     */
+    @Override
+    public String execute(String[] args) throws IOException, CommandFailedException {
+        return Command.collectOutput(this, args);
+    }
+
+    /**
+     * Выполняет вывод групп с количеством студентов в диапазоне [min, max].
+     * Группы выводятся по одной.
+     *
+     * @param args аргументы команды (должны быть указаны границы min и max)
+     * @param output приемник результата
+     * @throws IOException если произошла ошибка ввода/вывода
+     * @throws CommandFailedException если границы диапазона не указаны или не являются числами
+     */
+    @Override
+    public void execute(String[] args, Appendable output)
+            throws IOException, CommandFailedException {
+        if (collection == null) {
+            throw new CommandFailedException("Ошибка: коллекция не установлена");
+        }
+        if (args.length < 2) {
+            throw new CommandFailedException("Не указаны границы диапазона");
+        }
+        try {
+            final int min = Integer.parseInt(args[0]);
+            final int max = Integer.parseInt(args[1]);
+            final Iterator<StudyGroup> groups =
+                    collection.getByStudentsCountBetween(min, max).iterator();
+            if (!groups.hasNext()) {
+                output.append("В коллекции нет групп с количеством студентов от ")
+                        .append(String.valueOf(min)).append(" до ")
+                        .append(String.valueOf(max)).append('\n');
+                return;
+            }
+            while (groups.hasNext()) {
+                output.append(groups.next().toString()).append('\n');
+            }
+        } catch (NumberFormatException e) {
+            throw new CommandFailedException("Границы диапазона должны быть числами");
+        }
+    }
+
+    /**
+     * Возвращает описание команды.
+     *
+     * @return описание команды
+     */
+    @Override
+    public String getDescription() {
+        return description;
+    }
+}
@@ -1,7 +1,7 @@
 package command;
 
+import java.io.IOException;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 /**
  * Команда для группировки элементов по group admin и вывод их количества.
@@ -23,21 +23,40 @@ public class GroupCountingByGroupAdminCommand extends AbstractCommand {
      *
      * @param args аргументы команды (не используются)
      * @return строка с результатами группировки
+     * @throws IOException если произошла ошибка ввода/вывода
+     * @throws CommandFailedException если коллекция не установлена
      */
     @Override
-    public String execute(String[] args) {
+    public String execute(String[] args) throws IOException, CommandFailedException {
+        return Command.collectOutput(this, args);
+    }
+
+    /**
+     * Выполняет группировку элементов по администратору группы и выводит
+     * количество в каждой группе по одной строке.
+     *
+     * @param args аргументы команды (не используются)
+     * @param output приемник результата
+     * @throws IOException если произошла ошибка ввода/вывода
+     * @throws CommandFailedException если коллекция не установлена
+     */
+    @Override
+    public void execute(String[] args, Appendable output)
+            throws IOException, CommandFailedException {
         if (collection == null) {
-            return "Ошибка: коллекция не установлена";
+            throw new CommandFailedException("Ошибка: коллекция не установлена");
         }
         final Map<String, Long> adminCounts = collection.groupCountingByGroupAdmin();
         
         if (adminCounts.isEmpty()) {
-            return "В коллекции нет элементов с администраторами групп";
+            output.append("В коллекции нет элементов с администраторами групп\n");
+            return;
         }
         
-        return adminCounts.entrySet().stream()
-                .map(entry -> entry.getKey() + ": " + entry.getValue())
-                .collect(Collectors.joining("\n"));
+        for (Map.Entry<String, Long> entry : adminCounts.entrySet()) {
+            output.append(entry.getKey()).append(": ")
+                    .append(String.valueOf(entry.getValue())).append('\n');
+        }
     }
 
     /**
@@ -26,12 +26,26 @@ public class HelpCommand extends AbstractSimpleCommand {
      * @param args аргументы команды (не используются)
      * @return строка с описанием всех доступных команд
      * @throws IOException если произошла ошибка ввода/вывода
+     * @throws CommandFailedException не выбрасывается: справка выводится всегда
      */
     @Override
-    public String execute(String[] args) throws IOException {
-        final StringBuilder help = new StringBuilder("Доступные команды:\n");
-        commands.forEach((name, command) -> 
-                help.append(String.format("%s - %s\n", name, command.getDescription())));
-        return help.toString();
+    public String execute(String[] args) throws IOException, CommandFailedException {
+        return Command.collectOutput(this, args);
+    }
+
+    /**
+     * Выполняет вывод справки по доступным командам, по одной строке на команду.
+     *
+     * @param args аргументы команды (не используются)
+     * @param output приемник результата
+     * @throws IOException если произошла ошибка ввода/вывода
+     */
+    @Override
+    public void execute(String[] args, Appendable output) throws IOException {
+        output.append("Доступные команды:\n");
+        for (Map.Entry<String, Command> entry : commands.entrySet()) {
+            output.append(entry.getKey()).append(" - ")
+                    .append(entry.getValue().getDescription()).append('\n');
+        }
     }
 }
@@ -0,0 +1,84 @@
+package command;
+
+import com.google.gson.Gson;
+import java.io.File;
+import java.io.IOException;
+import model.StudyGroupCollection;
+import util.BackgroundSaver;
+import util.FileManager;
+import util.Journal;
+
+/**
+ * Команда для загрузки коллекции из двоичного снимка или JSON-файла.
+ */
+public class ImportCommand extends AbstractCommand {
+
+    private final FileManager fileManager;
+    private final Journal journal;
+    private final BackgroundSaver saver;
+
+    /**
+     * Конструктор команды загрузки.
+     *
+     * @param gson объект Gson для десериализации
+     * @param journal журнал изменений коллекции или null
+     * @param saver фоновое сохранение коллекции
+     */
+    public ImportCommand(Gson gson, Journal journal, BackgroundSaver saver) {
+        super("import", "заменить коллекцию содержимым файла (двоичный формат или json)", null);
+        this.fileManager = new FileManager(gson);
+        this.journal = journal;
+        this.saver = saver;
+    }
+
+    /**
+     * Заменяет коллекцию содержимым указанного файла. Формат определяется по сигнатуре.
+     * Файл сначала читается целиком, поэтому при ошибке коллекция не меняется.
+     * При журнале изменений команда дожидается записи нового снимка.
+     *
+     * @param args аргументы команды (должно быть указано имя файла)
+     * @return сообщение о результате выполнения команды
+     * @throws IllegalArgumentException если имя файла не указано или в файле есть дубликаты ID
+     * @throws IOException если файл не удалось прочитать или он поврежден,
+     *     или не удалось записать снимок
+     * @throws CommandFailedException если коллекция не установлена
+     */
+    @Override
+    public String execute(String[] args) throws IOException, CommandFailedException {
+        if (collection == null) {
+            throw new CommandFailedException("Ошибка: коллекция не установлена");
+        }
+        validateArguments(args, 1);
+        final String fileName = args[0];
+        if (!new File(fileName).isFile()) {
+            throw new IOException("Файл '" + fileName + "' не найден");
+        }
+
+        final StudyGroupCollection loaded = new StudyGroupCollection();
+        if (fileManager.isBinarySnapshot(fileName)) {
+            fileManager.loadBinary(fileName, loaded);
+        } else {
+            fileManager.loadCollection(fileName, loaded);
+        }
+        collection.loadFrom(loaded.getCollection().iterator());
+
+        final StringBuilder result = new StringBuilder("Загружено групп: ")
+                .append(collection.size());
+        if (journal != null) {
+            // Загрузка не попадает в журнал, поэтому сразу записываем новый снимок.
+            // Снимок пишет поток сохранения, чтобы уплотнения шли по очереди
+            result.append('\n').append(saver.saveAndWait(true));
+        }
+        return result.toString();
+    }
+
+    /**
+     * Возвращает описание команды.
+     *
+     * @return описание команды
+     */
+    @Override
+    public String getDescription() {
+        return description;
+    }
+}
@@ -1,17 +1,30 @@
 package command;
 
+import util.AutoSaver;
 
 /**
  * Команда для вывода информации о коллекции.
  */
 public class InfoCommand extends AbstractCommand {
 
+    private final AutoSaver autoSaver;
+
     /**
      * Конструктор команды.
      */
     public InfoCommand() {
+        this(null);
+    }
+
+    /**
+     * Конструктор команды, выводящей также метрики автосохранения.
+     *
+     * @param autoSaver автосохранение коллекции или null
+     */
+    public InfoCommand(AutoSaver autoSaver) {
         super("info", "вывести информацию о коллекции "
                 + "(тип, дата инициализации, количество элементов и т.д.)", null);
+        this.autoSaver = autoSaver;
     }
 
     /**
@@ -19,13 +32,17 @@ public class InfoCommand extends AbstractCommand {
      *
      * @param args аргументы команды (не используются)
      * @return строка с информацией о коллекции
+     * @throws CommandFailedException если коллекция не установлена
      */
     @Override
-    public String execute(String[] args) {
+    public String execute(String[] args) throws CommandFailedException {
         if (collection == null) {
-            return "Ошибка: коллекция не установлена";
+            throw new CommandFailedException("Ошибка: коллекция не установлена");
+        }
+        if (autoSaver == null) {
+            return collection.getCollectionInfo();
         }
-        return collection.getCollectionInfo();
+        return collection.getCollectionInfo() + "\n" + autoSaver.getMetrics();
     }
 
     /**
@@ -21,20 +21,21 @@ public class InsertAtCommand extends AbstractCommand {
     /**
      * Вставляет элемент в указанную позицию.
      * Если позиция больше размера коллекции, элемент добавляется в конец.
-     * После вставки обновляет ID всех элементов справа от вставленного.
+     * Элемент сохраняет сгенерированный ID, ID остальных элементов не меняются.
      *
      * @param args аргументы команды (должен быть указан индекс)
      * @return сообщение о результате выполнения команды
      * @throws IllegalArgumentException если индекс не указан или некорректен
      * @throws IOException если произошла ошибка при вводе данных
+     * @throws CommandFailedException если коллекция или обработчик ввода не установлены
      */
     @Override
-    public String execute(String[] args) throws IOException {
+    public String execute(String[] args) throws IOException, CommandFailedException {
         if (collection == null) {
-            return "Ошибка: коллекция не установлена";
+            throw new CommandFailedException("Ошибка: коллекция не установлена");
         }
         if (inputHandler == null) {
-            return "Ошибка: обработчик ввода не установлен";
+            throw new CommandFailedException("Ошибка: обработчик ввода не установлен");
         }
         
         if (args.length != 1) {
@@ -54,30 +55,32 @@ public class InsertAtCommand extends AbstractCommand {
         final StudyGroup newGroup = inputHandler.readStudyGroup();
         final int collectionSize = collection.size();
 
-        // Преобразуем ID в индекс (ID начинается с 1, индекс с 0)
-        final int insertIndex = index - 1;
+        // Преобразуем позицию в индекс (позиция начинается с 1, индекс с 0)
+        final int insertIndex = Math.max(index - 1, 0);
 
         if (insertIndex >= collectionSize) {
-            newGroup.setId(collectionSize + 1); // Устанавливаем ID равным размеру коллекции + 1
             collection.add(newGroup);
             return "Запрошенная позиция " + index + " превышает размер коллекции "
                   +  "(" + collectionSize
                   + "). Элемент вставлен в конец коллекции (позиция " + (collectionSize + 1)
                   + ", индекс в массиве: " + collectionSize + ")";
         } else {
-            // Сдвигаем все элементы вправо, начиная с конца
-            for (int i = collectionSize - 1; i >= insertIndex; i--) {
-                final StudyGroup group = collection.get(i);
-                group.setId(group.getId() + 1);
-            }
-            // Вставляем новый элемент с правильным ID
-            newGroup.setId(index); // ID = указанный индекс
             collection.insertAt(insertIndex, newGroup);
-            return "Элемент вставлен в позицию " + index + " (индекс в "
+            return "Элемент вставлен в позицию " + (insertIndex + 1) + " (индекс в "
                     + "массиве: " + insertIndex + ")";
         }
     }
 
+    /**
+     * Команда читает элемент через обработчик ввода.
+     *
+     * @return true
+     */
+    @Override
+    public boolean readsElement() {
+        return true;
+    }
+
     /**
      * Возвращает описание команды.
      *
@@ -1,5 +1,7 @@
 package command;
 
+import java.io.IOException;
+import java.util.Iterator;
 
 /**
  * Команда для вывода groupAdmin в порядке возрастания.
@@ -11,26 +13,60 @@ public class PrintFieldAscendingGroupAdminCommand extends AbstractCommand {
      */
     public PrintFieldAscendingGroupAdminCommand() {
         super("print_field_ascending_group_admin", 
-              "вывести значения поля groupAdmin всех элементов в порядке возрастания", 
+              "вывести значения поля groupAdmin всех элементов в порядке возрастания "
+                + "(необязательно: limit и offset)", 
               null);
     }
 
     /**
      * Выполняет вывод значений поля groupAdmin в порядке возрастания.
      *
-     * @param args аргументы команды (не используются)
+     * @param args аргументы команды (необязательные limit и offset)
      * @return строка со значениями поля groupAdmin в порядке возрастания
+     * @throws IOException если произошла ошибка ввода/вывода
+     * @throws CommandFailedException если limit или offset не являются неотрицательными числами
      */
     @Override
-    public String execute(String[] args) {
+    public String execute(String[] args) throws IOException, CommandFailedException {
+        return Command.collectOutput(this, args);
+    }
+
+    /**
+     * Выполняет вывод значений поля groupAdmin в порядке возрастания.
+     * Значения выводятся по одному по мере обхода индекса.
+     *
+     * @param args аргументы команды (необязательные limit и offset)
+     * @param output приемник результата
+     * @throws IOException если произошла ошибка ввода/вывода
+     * @throws CommandFailedException если limit или offset не являются неотрицательными числами
+     */
+    @Override
+    public void execute(String[] args, Appendable output)
+            throws IOException, CommandFailedException {
         if (collection == null) {
-            return "Ошибка: коллекция не установлена";
+            throw new CommandFailedException("Ошибка: коллекция не установлена");
+        }
+        final int limit;
+        final int offset;
+        try {
+            limit = args.length > 0 ? Integer.parseInt(args[0]) : Integer.MAX_VALUE;
+            offset = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+        } catch (NumberFormatException e) {
+            throw new CommandFailedException("limit и offset должны быть числами");
+        }
+        if (limit < 0 || offset < 0) {
+            throw new CommandFailedException("limit и offset должны быть неотрицательными");
+        }
+        boolean empty = true;
+        final Iterator<String> admins =
+                collection.getGroupAdminFieldAscending(offset, limit).iterator();
+        while (admins.hasNext()) {
+            output.append(admins.next()).append('\n');
+            empty = false;
         }
-        final String result = collection.getGroupAdminFieldAscending();
-        if (result.isEmpty()) {
-            return "В коллекции нет элементов с администраторами групп";
+        if (empty) {
+            output.append("В коллекции нет элементов с администраторами групп\n");
         }
-        return result;
     }
 
     /**
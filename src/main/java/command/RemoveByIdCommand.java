@@ -18,23 +18,24 @@ public class RemoveByIdCommand extends AbstractCommand {
      *
      * @param args аргументы команды (должен быть указан ID элемента)
      * @return сообщение о результате удаления
+     * @throws CommandFailedException если ID не указан, не является числом или элемент не найден
      */
     @Override
-    public String execute(String[] args) {
+    public String execute(String[] args) throws CommandFailedException {
         if (collection == null) {
-            return "Ошибка: коллекция не установлена";
+            throw new CommandFailedException("Ошибка: коллекция не установлена");
         }
         if (args.length < 1) {
-            return "Не указан ID элемента";
+            throw new CommandFailedException("Не указан ID элемента");
         }
         try {
             final int id = Integer.parseInt(args[0]);
             if (collection.removeById(id)) {
                 return "Элемент с ID " + id + " удален";
             }
-            return "Элемент с ID " + id + " не найден";
+            throw new CommandFailedException("Элемент с ID " + id + " не найден");
         } catch (NumberFormatException e) {
-            return "ID должен быть числом";
+            throw new CommandFailedException("ID должен быть числом");
         }
     }
 
@@ -19,11 +19,12 @@ public class RemoveFirstCommand extends AbstractCommand {
      *
      * @param args аргументы команды (не используются)
      * @return сообщение о результате удаления
+     * @throws CommandFailedException если коллекция не установлена
      */
     @Override
-    public String execute(String[] args) {
+    public String execute(String[] args) throws CommandFailedException {
         if (collection == null) {
-            return "Ошибка: коллекция не установлена";
+            throw new CommandFailedException("Ошибка: коллекция не установлена");
         }
         final StudyGroup first = collection.getFirst();
         if (first != null) {
@@ -0,0 +1,41 @@
+package command;
+
+/**
+ * Команда для отмены пакета изменений.
+ */
+public class RollbackCommand extends AbstractCommand {
+
+    /**
+     * Конструктор команды.
+     */
+    public RollbackCommand() {
+        super("rollback", "отменить пакет изменений", null);
+    }
+
+    /**
+     * Отменяет пакет изменений и возвращает коллекцию в состояние до его начала.
+     *
+     * @param args аргументы команды (не используются)
+     * @return сообщение об отмене пакета
+     * @throws IllegalArgumentException если пакет не начат
+     * @throws CommandFailedException если коллекция не установлена
+     */
+    @Override
+    public String execute(String[] args) throws CommandFailedException {
+        if (collection == null) {
+            throw new CommandFailedException("Ошибка: коллекция не установлена");
+        }
+        final long undone = collection.rollback();
+        return "Пакет изменений отменен, отменено изменений: " + undone;
+    }
+
+    /**
+     * Возвращает описание команды.
+     *
+     * @return описание команды
+     */
+    @Override
+    public String getDescription() {
+        return description;
+    }
+}
@@ -1,45 +1,52 @@
 package command;
 
-import java.io.File;
 import java.io.IOException;
-import util.FileManager;
+import util.BackgroundSaver;
 
 /**
  * Команда для сохранения коллекции в файл.
+ * Сохранение выполняется в фоновом потоке (см. {@link BackgroundSaver}), поэтому команда
+ * возвращается сразу; ход сохранения показывает команда save_status. С аргументом
+ * {@code --wait} команда дожидается окончания записи.
  */
 public class SaveCommand extends AbstractCommand {
 
-    private final String fileName;
-    private final com.google.gson.Gson gson;
-    private final FileManager fileManager;
+    private static final String WAIT_OPTION = "--wait";
+
+    private final BackgroundSaver saver;
 
     /**
      * Конструктор команды сохранения.
      *
-     * @param fileName имя файла для сохранения
-     * @param gson объект Gson для сериализации
+     * @param saver фоновое сохранение коллекции
      */
-    public SaveCommand(String fileName, com.google.gson.Gson gson) {
-        super("save", "сохранить коллекцию в файл", null);
-        this.fileName = fileName;
-        this.gson = gson;
-        this.fileManager = new FileManager(gson);
+    public SaveCommand(BackgroundSaver saver) {
+        super("save", "сохранить коллекцию в файл (в фоне; --wait — дождаться записи)", null);
+        this.saver = saver;
     }
 
     /**
-     * Выполняет команду сохранения коллекции в файл.
+     * Запускает сохранение коллекции в файл.
      *
-     * @param args аргументы команды (не используются)
+     * @param args необязательный аргумент --wait
      * @return результат выполнения команды
-     * @throws IOException если произошла ошибка при записи в файл
+     * @throws IllegalArgumentException если аргументы некорректны
+     * @throws IOException если произошла ошибка при записи в файл (только с --wait)
+     * @throws CommandFailedException если коллекция не установлена
      */
     @Override
-    public String execute(String[] args) throws IOException {
+    public String execute(String[] args) throws IOException, CommandFailedException {
         if (collection == null) {
-            return "Ошибка: коллекция не установлена";
+            throw new CommandFailedException("Ошибка: коллекция не установлена");
+        }
+        if (args.length > 1 || (args.length == 1 && !args[0].equals(WAIT_OPTION))) {
+            throw new IllegalArgumentException("Допустим только аргумент " + WAIT_OPTION);
+        }
+        if (args.length == 1) {
+            return saver.saveAndWait();
         }
-        final File savedFile = fileManager.saveCollection(fileName, collection.getCollection());
-        return "Коллекция успешно сохранена в файл: " + savedFile.getAbsolutePath();
+        saver.requestSave();
+        return "Сохранение выполняется в фоне (состояние: save_status)";
     }
 
     /**
@@ -0,0 +1,32 @@
+package command;
+
+import util.BackgroundSaver;
+
+/**
+ * Команда для вывода состояния фонового сохранения.
+ */
+public class SaveStatusCommand extends AbstractSimpleCommand {
+
+    private final BackgroundSaver saver;
+
+    /**
+     * Конструктор команды.
+     *
+     * @param saver фоновое сохранение коллекции
+     */
+    public SaveStatusCommand(BackgroundSaver saver) {
+        super("save_status", "вывести состояние фонового сохранения");
+        this.saver = saver;
+    }
+
+    /**
+     * Выводит состояние фонового сохранения.
+     *
+     * @param args аргументы команды (не используются)
+     * @return состояние сохранения
+     */
+    @Override
+    public String execute(String[] args) {
+        return saver.getStatus();
+    }
+}
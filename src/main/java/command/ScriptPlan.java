@@ -0,0 +1,198 @@
+package command;
+
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Скомпилированный скрипт: строки файла, разобранные один раз в шаги с уже найденными
+ * командами и аргументами.
+ *
+ * <p>Шаг строится для каждой непустой строки, не являющейся комментарием, хотя часть
+ * таких строк окажется значениями полей элемента: какие именно, становится известно
+ * только при выполнении, когда команда читает строки через {@link Cursor}. Поэтому план
+ * хранит и исходные строки, а выполнение идет по общему курсору.
+ *
+ * <p>План соответствует версии файла с заданными временем изменения и размером
+ * и используется повторно, пока файл не изменится.
+ */
+final class ScriptPlan {
+
+    /**
+     * Шаг скрипта: команда с аргументами.
+     */
+    static final class Step {
+        final String name;
+        /** Команда или null, если команда неизвестна. */
+        final Command command;
+        final String[] args;
+        /** Элемент в виде JSON-объекта или null. */
+        final String record;
+
+        Step(String name, Command command, String[] args, String record) {
+            this.name = name;
+            this.command = command;
+            this.args = args;
+            this.record = record;
+        }
+    }
+
+    private final FileTime modified;
+    private final long size;
+    private final String[] lines;
+    private final Step[] steps;
+    private final List<Path> nested;
+
+    private ScriptPlan(FileTime modified, long size, String[] lines, Step[] steps,
+            List<Path> nested) {
+        this.modified = modified;
+        this.size = size;
+        this.lines = lines;
+        this.steps = steps;
+        this.nested = nested;
+    }
+
+    /**
+     * Компилирует скрипт.
+     *
+     * @param lines строки скрипта
+     * @param commands карта доступных команд
+     * @param scriptCommand команда выполнения скриптов, вызовы которой собираются
+     *     для проверки циклов
+     * @param modified время изменения файла
+     * @param size размер файла
+     * @return план скрипта
+     */
+    static ScriptPlan compile(List<String> lines, Map<String, Command> commands,
+            Command scriptCommand, FileTime modified, long size) {
+        final String[] source = lines.toArray(new String[0]);
+        final Step[] steps = new Step[source.length];
+        final List<Path> nested = new ArrayList<>();
+        for (int i = 0; i < source.length; i++) {
+            final String line = source[i].trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            final int recordStart = line.indexOf('{');
+            final List<String> words = split(line, recordStart >= 0 ? recordStart : line.length());
+            final String name = words.isEmpty() ? "" : words.get(0).toLowerCase();
+            final String[] args = words.isEmpty()
+                    ? new String[0]
+                    : words.subList(1, words.size()).toArray(new String[0]);
+            final Command command = commands.get(name);
+            steps[i] = new Step(name, command, args,
+                    recordStart >= 0 ? line.substring(recordStart) : null);
+            if (command == scriptCommand && args.length == 1) {
+                try {
+                    nested.add(ExecuteScriptCommand.resolve(args[0]));
+                } catch (InvalidPathException e) {
+                    // Ошибка будет выведена при выполнении шага
+                }
+            }
+        }
+        return new ScriptPlan(modified, size, source, steps, Collections.unmodifiableList(nested));
+    }
+
+    /**
+     * Делит начало строки на слова по пробельным символам.
+     *
+     * @param line строка
+     * @param end конец делимой части
+     * @return слова
+     */
+    private static List<String> split(String line, int end) {
+        final List<String> words = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i < end; i++) {
+            if (Character.isWhitespace(line.charAt(i))) {
+                if (start >= 0) {
+                    words.add(line.substring(start, i));
+                    start = -1;
+                }
+            } else if (start < 0) {
+                start = i;
+            }
+        }
+        if (start >= 0) {
+            words.add(line.substring(start, end));
+        }
+        return words;
+    }
+
+    /**
+     * Проверяет, построен ли план по файлу с данными временем изменения и размером.
+     *
+     * @param modified время изменения файла
+     * @param size размер файла
+     * @return true, если план актуален
+     */
+    boolean matches(FileTime modified, long size) {
+        return this.modified.equals(modified) && this.size == size;
+    }
+
+    /**
+     * Возвращает пути скриптов, которые этот скрипт может вызвать.
+     *
+     * @return пути вложенных скриптов
+     */
+    List<Path> getNested() {
+        return nested;
+    }
+
+    /**
+     * Создает курсор для выполнения скрипта с первой строки.
+     *
+     * @return курсор
+     */
+    Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Курсор выполнения. Как итератор выдает строки скрипта командам, читающим значения
+     * полей, а {@link #nextStep()} выдает шаг следующей строки.
+     */
+    final class Cursor implements Iterator<String> {
+        private int position;
+
+        @Override
+        public boolean hasNext() {
+            return position < lines.length;
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return lines[position++];
+        }
+
+        /**
+         * Возвращает номер последней выданной строки, начиная с 1.
+         *
+         * @return номер строки
+         */
+        int getLine() {
+            return position;
+        }
+
+        /**
+         * Переходит к следующей строке и возвращает ее шаг.
+         *
+         * @return шаг или null для пустой строки и комментария
+         */
+        Step nextStep() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return steps[position++];
+        }
+    }
+}
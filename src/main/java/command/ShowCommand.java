@@ -1,5 +1,8 @@
 package command;
 
+import java.io.IOException;
+import java.util.List;
+import model.StudyGroup;
 
 /**
  * Команда для вывода всех элементов коллекции.
@@ -18,13 +21,36 @@ public class ShowCommand extends AbstractCommand {
      *
      * @param args аргументы команды (не используются)
      * @return строка с элементами коллекции
+     * @throws IOException если произошла ошибка ввода/вывода
+     * @throws CommandFailedException если коллекция не установлена
      */
     @Override
-    public String execute(String[] args) {
+    public String execute(String[] args) throws IOException, CommandFailedException {
+        return Command.collectOutput(this, args);
+    }
+
+    /**
+     * Выводит элементы коллекции по одному из снимка, не собирая их в одну строку.
+     *
+     * @param args аргументы команды (не используются)
+     * @param output приемник результата
+     * @throws IOException если произошла ошибка ввода/вывода
+     * @throws CommandFailedException если коллекция не установлена
+     */
+    @Override
+    public void execute(String[] args, Appendable output)
+            throws IOException, CommandFailedException {
         if (collection == null) {
-            return "Ошибка: коллекция не установлена";
+            throw new CommandFailedException("Ошибка: коллекция не установлена");
+        }
+        final List<StudyGroup> snapshot = collection.getCollection();
+        if (snapshot.isEmpty()) {
+            output.append("Коллекция пуста\n");
+            return;
+        }
+        for (StudyGroup group : snapshot) {
+            output.append(group.toString()).append('\n');
         }
-        return collection.getCollectionAsString();
     }
 
     /**
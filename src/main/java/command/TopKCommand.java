@@ -0,0 +1,78 @@
+package command;
+
+import java.io.IOException;
+import java.util.Iterator;
+import model.StudyGroup;
+
+/**
+ * Команда для вывода k наибольших элементов коллекции.
+ */
+public class TopKCommand extends AbstractCommand {
+
+    /**
+     * Конструктор команды.
+     */
+    public TopKCommand() {
+        super("top_k", "вывести k наибольших элементов коллекции в порядке убывания", null);
+    }
+
+    /**
+     * Выполняет вывод k наибольших элементов коллекции.
+     *
+     * @param args аргументы команды (должно быть указано количество элементов k)
+     * @return строка с найденными элементами
+     * @throws IOException если произошла ошибка ввода/вывода
+     * @throws CommandFailedException если количество элементов не указано или не является
+     *     положительным числом
+     */
+    @Override
+    public String execute(String[] args) throws IOException, CommandFailedException {
+        return Command.collectOutput(this, args);
+    }
+
+    /**
+     * Выполняет вывод k наибольших элементов коллекции. Группы выводятся по одной.
+     *
+     * @param args аргументы команды (должно быть указано количество элементов k)
+     * @param output приемник результата
+     * @throws IOException если произошла ошибка ввода/вывода
+     * @throws CommandFailedException если количество элементов не указано или не является
+     *     положительным числом
+     */
+    @Override
+    public void execute(String[] args, Appendable output)
+            throws IOException, CommandFailedException {
+        if (collection == null) {
+            throw new CommandFailedException("Ошибка: коллекция не установлена");
+        }
+        if (args.length < 1) {
+            throw new CommandFailedException("Не указано количество элементов");
+        }
+        try {
+            final int limit = Integer.parseInt(args[0]);
+            if (limit <= 0) {
+                throw new CommandFailedException("Количество элементов должно быть больше нуля");
+            }
+            final Iterator<StudyGroup> groups = collection.getHighest(limit).iterator();
+            if (!groups.hasNext()) {
+                output.append("Коллекция пуста\n");
+                return;
+            }
+            while (groups.hasNext()) {
+                output.append(groups.next().toString()).append('\n');
+            }
+        } catch (NumberFormatException e) {
+            throw new CommandFailedException("Количество элементов должно быть числом");
+        }
+    }
+
+    /**
+     * Возвращает описание команды.
+     *
+     * @return описание команды
+     */
+    @Override
+    public String getDescription() {
+        return description;
+    }
+}
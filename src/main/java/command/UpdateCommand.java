@@ -25,14 +25,15 @@ public class UpdateCommand extends AbstractCommand {
      * @param args аргументы команды (ID элемента)
      * @return результат выполнения команды
      * @throws IOException если произошла ошибка ввода/вывода
+     * @throws CommandFailedException если ID не является числом или элемент с таким ID не найден
      */
     @Override
-    public String execute(String[] args) throws IOException {
+    public String execute(String[] args) throws IOException, CommandFailedException {
         if (collection == null) {
-            return "Ошибка: коллекция не установлена";
+            throw new CommandFailedException("Ошибка: коллекция не установлена");
         }
         if (inputHandler == null) {
-            return "Ошибка: обработчик ввода не установлен";
+            throw new CommandFailedException("Ошибка: обработчик ввода не установлен");
         }
         
         validateArguments(args, 1);
@@ -41,19 +42,27 @@ public class UpdateCommand extends AbstractCommand {
             final long id = Long.parseLong(args[0]);
             final StudyGroup existingGroup = collection.findById(id);
             if (existingGroup == null) {
-                return "Элемент с ID " + id + " не найден";
+                throw new CommandFailedException("Элемент с ID " + id + " не найден");
             }
 
-            final StudyGroup newGroup = inputHandler.readStudyGroup();
-            newGroup.setId(id);
-            final int index = collection.indexOf(existingGroup);
-            collection.set(index, newGroup);
+            final StudyGroup newGroup = inputHandler.readStudyGroup(id);
+            collection.update(id, newGroup);
             return "Элемент успешно обновлен";
         } catch (NumberFormatException e) {
-            return "Ошибка: ID должен быть числом";
+            throw new CommandFailedException("Ошибка: ID должен быть числом");
         }
     }
 
+    /**
+     * Команда читает элемент через обработчик ввода.
+     *
+     * @return true
+     */
+    @Override
+    public boolean readsElement() {
+        return true;
+    }
+
     /**
      * Возвращает описание команды.
      *
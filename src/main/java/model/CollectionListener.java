@@ -0,0 +1,60 @@
+package model;
+
+/**
+ * Слушатель изменений коллекции учебных групп.
+ * Методы вызываются после успешного изменения, в конкурентном режиме — под блокировкой
+ * записи, поэтому порядок вызовов совпадает с порядком изменений. Если метод выбросил
+ * исключение, коллекция отменяет изменение (для пакета — весь пакет) и передает
+ * исключение вызывающему.
+ */
+public interface CollectionListener {
+
+    /**
+     * Вызывается после вставки группы.
+     *
+     * @param index позиция, в которую вставлена группа
+     * @param group вставленная группа
+     */
+    void inserted(int index, StudyGroup group);
+
+    /**
+     * Вызывается после обновления группы по ID.
+     *
+     * @param id ID обновленной группы
+     * @param group новая версия группы
+     */
+    void updated(long id, StudyGroup group);
+
+    /**
+     * Вызывается после замены группы по индексу.
+     *
+     * @param index индекс замененной группы
+     * @param group новая группа
+     */
+    void replaced(int index, StudyGroup group);
+
+    /**
+     * Вызывается после удаления группы по ID.
+     *
+     * @param id ID удаленной группы
+     */
+    void removed(long id);
+
+    /**
+     * Вызывается после очистки коллекции.
+     */
+    void cleared();
+
+    /**
+     * Вызывается перед уведомлениями об изменениях пакета (см.
+     * {@link StudyGroupCollection#commit()}), которые следуют подряд.
+     */
+    default void batchStarted() {
+    }
+
+    /**
+     * Вызывается после уведомлений об изменениях пакета.
+     */
+    default void batchFinished() {
+    }
+}
@@ -0,0 +1,104 @@
+package model;
+
+import java.util.AbstractList;
+import java.util.Iterator;
+
+/**
+ * Неизменяемый снимок коллекции учебных групп в порядке позиций.
+ *
+ * <p>Снимок получается за O(1): узлы дерева позиций не изменяются, а изменение коллекции
+ * копирует только путь от корня. Поэтому снимки одной коллекции разделяют неизменившиеся
+ * поддеревья, и сравнение двух снимков стоит пропорционально числу изменений между ними,
+ * а не размеру коллекции.
+ *
+ * <p>Каждой группе соответствует метка позиции — неотрицательное число, возрастающее вместе
+ * с позицией. Вставка и удаление других групп метку не меняют (кроме редкой перенумерации),
+ * поэтому по меткам можно сохранить и восстановить порядок коллекции.
+ */
+public final class CollectionSnapshot extends AbstractList<StudyGroup> {
+
+    /**
+     * Получатель различий между двумя снимками. Различия сообщаются
+     * в порядке возрастания меток.
+     */
+    public interface ChangeVisitor {
+
+        /**
+         * Группа с меткой отсутствует в новом снимке или заменена другой.
+         *
+         * @param label метка позиции
+         * @param group группа из старого снимка
+         */
+        void removed(long label, StudyGroup group);
+
+        /**
+         * Группа с меткой появилась в новом снимке или заменила прежнюю.
+         *
+         * @param label метка позиции
+         * @param group группа из нового снимка
+         */
+        void added(long label, StudyGroup group);
+    }
+
+    private final RankTree.Node root;
+    private final long highestId;
+
+    CollectionSnapshot(RankTree.Node root, long highestId) {
+        this.root = root;
+        this.highestId = highestId;
+    }
+
+    /**
+     * Возвращает наибольший ID, когда-либо выданный коллекции к моменту снимка
+     * (см. {@link StudyGroupCollection#getHighestId()}). Он не меньше ID любой группы
+     * снимка и сохраняется вместе с ним, чтобы ID удаленных групп не выдавались повторно.
+     *
+     * @return наибольший ID или 0
+     */
+    public long getHighestId() {
+        return highestId;
+    }
+
+    /**
+     * Возвращает группу по позиции за O(log n).
+     *
+     * @param index позиция
+     * @return группа
+     */
+    @Override
+    public StudyGroup get(int index) {
+        return RankTree.nodeAt(root, index).value;
+    }
+
+    /**
+     * Возвращает количество групп в снимке.
+     *
+     * @return размер снимка
+     */
+    @Override
+    public int size() {
+        return RankTree.size(root);
+    }
+
+    /**
+     * Возвращает итератор по группам в порядке позиций, O(1) на элемент.
+     *
+     * @return итератор
+     */
+    @Override
+    public Iterator<StudyGroup> iterator() {
+        return RankTree.iterator(root);
+    }
+
+    /**
+     * Сообщает различия между более ранним снимком и этим. Группа, замененная
+     * на той же позиции, сообщается как удаленная и добавленная с одной меткой.
+     * Если предыдущий снимок не задан, все группы сообщаются как добавленные.
+     *
+     * @param before более ранний снимок той же коллекции или null
+     * @param visitor получатель различий
+     */
+    public void forEachChange(CollectionSnapshot before, ChangeVisitor visitor) {
+        RankTree.diff(before == null ? null : before.root, root, visitor);
+    }
+}
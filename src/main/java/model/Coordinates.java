@@ -5,7 +5,7 @@ package model;
  */
 public class Coordinates {
 
-    private Double x1;
+    private double x1;
     private double y1;
 
     /**
@@ -13,7 +13,7 @@ public class Coordinates {
      *
      * @return значение координаты X
      */
-    public Double getX1() {
+    public double getX1() {
         return x1;
     }
 
@@ -0,0 +1,73 @@
+package model;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Агрегаты по администраторам групп, обновляемые при каждом изменении коллекции.
+ */
+class GroupAdminIndex {
+
+    private final Map<String, Long> countsByName = new HashMap<>();
+    private final Map<String, Long> countsByNameView = Collections.unmodifiableMap(countsByName);
+    private final TreeMap<String, Integer> renderedAscending = new TreeMap<>();
+
+    /**
+     * Учитывает администратора добавленной группы.
+     *
+     * @param admin администратор группы или null
+     */
+    void add(Person admin) {
+        if (admin == null) {
+            return;
+        }
+        countsByName.merge(admin.getName(), 1L, Long::sum);
+        renderedAscending.merge(admin.toString(), 1, Integer::sum);
+    }
+
+    /**
+     * Исключает администратора удаленной группы.
+     *
+     * @param admin администратор группы или null
+     */
+    void remove(Person admin) {
+        if (admin == null) {
+            return;
+        }
+        countsByName.computeIfPresent(admin.getName(),
+                (name, count) -> count == 1 ? null : count - 1);
+        renderedAscending.computeIfPresent(admin.toString(),
+                (key, count) -> count == 1 ? null : count - 1);
+    }
+
+    /**
+     * Очищает агрегаты.
+     */
+    void clear() {
+        countsByName.clear();
+        renderedAscending.clear();
+    }
+
+    /**
+     * Возвращает количество групп для каждого имени администратора.
+     *
+     * @return неизменяемое представление агрегата без копирования
+     */
+    Map<String, Long> countsByName() {
+        return countsByNameView;
+    }
+
+    /**
+     * Возвращает строковые представления администраторов в порядке возрастания.
+     * Поток читается прямо из отсортированного мультимножества без сортировки и копирования.
+     *
+     * @return ленивый поток строковых представлений с учетом повторов
+     */
+    Stream<String> renderedAscending() {
+        return renderedAscending.entrySet().stream()
+                .flatMap(entry -> Collections.nCopies(entry.getValue(), entry.getKey()).stream());
+    }
+}
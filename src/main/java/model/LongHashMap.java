@@ -0,0 +1,201 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Хеш-таблица с открытой адресацией для отображения long -> long без упаковки.
+ * Значения должны быть неотрицательными: отрицательное значение означает пустую ячейку.
+ * Таблица заполняется не более чем на три четверти.
+ */
+class LongHashMap {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private long[] values;
+    private int size;
+    private int mask;
+
+    /**
+     * Создает пустую таблицу.
+     */
+    LongHashMap() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * Создает пустую таблицу, рассчитанную на заданное количество элементов.
+     *
+     * @param expectedSize ожидаемое количество элементов
+     */
+    LongHashMap(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    /**
+     * Возвращает значение по ключу.
+     *
+     * @param key ключ
+     * @return значение или -1, если ключ отсутствует
+     */
+    long get(long key) {
+        int i = indexFor(key);
+        while (values[i] >= 0) {
+            if (keys[i] == key) {
+                return values[i];
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Проверяет наличие ключа.
+     *
+     * @param key ключ
+     * @return true, если ключ присутствует
+     */
+    boolean containsKey(long key) {
+        return get(key) >= 0;
+    }
+
+    /**
+     * Сохраняет значение по ключу.
+     *
+     * @param key ключ
+     * @param value неотрицательное значение
+     * @return предыдущее значение или -1, если ключа не было
+     */
+    long put(long key, long value) {
+        return put(key, value, true);
+    }
+
+    /**
+     * Сохраняет значение, только если ключ еще отсутствует.
+     *
+     * @param key ключ
+     * @param value неотрицательное значение
+     * @return текущее значение или -1, если значение было добавлено
+     */
+    long putIfAbsent(long key, long value) {
+        return put(key, value, false);
+    }
+
+    /**
+     * Удаляет ключ.
+     *
+     * @param key ключ
+     * @return удаленное значение или -1, если ключа не было
+     */
+    long remove(long key) {
+        int i = indexFor(key);
+        while (values[i] >= 0) {
+            if (keys[i] == key) {
+                final long old = values[i];
+                shiftBack(i);
+                size--;
+                return old;
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Удаляет все элементы.
+     */
+    void clear() {
+        Arrays.fill(values, -1);
+        size = 0;
+    }
+
+    /**
+     * Возвращает количество элементов.
+     *
+     * @return количество элементов
+     */
+    int size() {
+        return size;
+    }
+
+    private long put(long key, long value, boolean replace) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Значение должно быть неотрицательным");
+        }
+        int i = indexFor(key);
+        while (values[i] >= 0) {
+            if (keys[i] == key) {
+                final long old = values[i];
+                if (replace) {
+                    values[i] = value;
+                }
+                return old;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size * 4L > keys.length * 3L) {
+            rehash(keys.length * 2);
+        }
+        return -1;
+    }
+
+    /**
+     * Удаляет ячейку, сдвигая назад следующие за ней элементы той же цепочки.
+     */
+    private void shiftBack(int hole) {
+        int i = hole;
+        while (true) {
+            i = (i + 1) & mask;
+            if (values[i] < 0) {
+                break;
+            }
+            final int home = indexFor(keys[i]);
+            // Элемент можно перенести в дыру, только если его исходная ячейка не лежит между ними
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                keys[hole] = keys[i];
+                values[hole] = values[i];
+                hole = i;
+            }
+        }
+        values[hole] = -1;
+    }
+
+    private void rehash(int capacity) {
+        final long[] oldKeys = keys;
+        final long[] oldValues = values;
+        allocate(capacity);
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldValues[j] >= 0) {
+                int i = indexFor(oldKeys[j]);
+                while (values[i] >= 0) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        Arrays.fill(values, -1);
+        mask = capacity - 1;
+    }
+
+    private int indexFor(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 32;
+        return (int) h & mask;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * 3L < expectedSize * 4L) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
@@ -0,0 +1,196 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Индекс учебных групп в естественном порядке (см. {@link StudyGroup#compareTo}).
+ * Группы, равные при сравнении, хранятся в одной корзине в порядке добавления.
+ * Значение в дереве — сама группа, если она единственная в корзине, иначе список групп:
+ * так у большинства элементов нет отдельных объектов корзины.
+ */
+class NaturalOrderIndex {
+
+    private final TreeMap<StudyGroup, Object> index = new TreeMap<>();
+
+    /**
+     * Добавляет группу в индекс.
+     *
+     * @param group учебная группа
+     */
+    void add(StudyGroup group) {
+        final Object bucket = index.putIfAbsent(group, group);
+        if (bucket == null) {
+            return;
+        }
+        if (bucket instanceof StudyGroup) {
+            final List<StudyGroup> groups = new ArrayList<>(2);
+            groups.add((StudyGroup) bucket);
+            groups.add(group);
+            index.put(group, groups);
+        } else {
+            asList(bucket).add(group);
+        }
+    }
+
+    /**
+     * Удаляет группу из индекса. Сравнение внутри корзины выполняется по ссылке.
+     *
+     * @param group учебная группа
+     */
+    void remove(StudyGroup group) {
+        final Object bucket = index.get(group);
+        if (bucket == group) {
+            index.remove(group);
+            return;
+        }
+        if (!(bucket instanceof List)) {
+            return;
+        }
+        final List<StudyGroup> groups = asList(bucket);
+        for (int i = 0; i < groups.size(); i++) {
+            if (groups.get(i) == group) {
+                groups.remove(i);
+                break;
+            }
+        }
+        if (groups.size() == 1) {
+            index.put(group, groups.get(0));
+        }
+    }
+
+    /**
+     * Очищает индекс.
+     */
+    void clear() {
+        index.clear();
+    }
+
+    /**
+     * Возвращает наименьшую группу.
+     *
+     * @return наименьшая группа или null, если индекс пуст
+     */
+    StudyGroup first() {
+        final Map.Entry<StudyGroup, Object> entry = index.firstEntry();
+        if (entry == null) {
+            return null;
+        }
+        final Object bucket = entry.getValue();
+        return bucket instanceof StudyGroup ? (StudyGroup) bucket : asList(bucket).get(0);
+    }
+
+    /**
+     * Возвращает представление индекса по возрастанию.
+     *
+     * @return корзины групп по возрастанию
+     */
+    NavigableMap<StudyGroup, Object> ascending() {
+        return index;
+    }
+
+    /**
+     * Возвращает представление индекса по убыванию.
+     *
+     * @return корзины групп по убыванию
+     */
+    NavigableMap<StudyGroup, Object> descending() {
+        return index.descendingMap();
+    }
+
+    /**
+     * Возвращает представление индекса с группами, количество студентов которых
+     * лежит в заданном диапазоне, по возрастанию.
+     *
+     * @param minStudentsCount нижняя граница (включительно)
+     * @param maxStudentsCount верхняя граница (включительно)
+     * @return корзины групп диапазона
+     */
+    NavigableMap<StudyGroup, Object> betweenStudentsCount(int minStudentsCount,
+            int maxStudentsCount) {
+        if (minStudentsCount > maxStudentsCount) {
+            return Collections.emptyNavigableMap();
+        }
+        NavigableMap<StudyGroup, Object> range =
+                index.tailMap(StudyGroup.lowerBound(minStudentsCount), true);
+        if (maxStudentsCount < Integer.MAX_VALUE) {
+            range = range.headMap(StudyGroup.lowerBound(maxStudentsCount + 1), false);
+        }
+        return range;
+    }
+
+    /**
+     * Обходит группы представления индекса по порядку, не копируя их.
+     * Индекс нельзя менять, пока идет обход.
+     *
+     * @param view представление индекса
+     * @return итератор групп
+     */
+    static Iterator<StudyGroup> groups(NavigableMap<StudyGroup, Object> view) {
+        final Iterator<Object> buckets = view.values().iterator();
+        return new Iterator<>() {
+            private List<StudyGroup> bucket = Collections.emptyList();
+            private int position;
+
+            @Override
+            public boolean hasNext() {
+                return position < bucket.size() || buckets.hasNext();
+            }
+
+            @Override
+            public StudyGroup next() {
+                if (position < bucket.size()) {
+                    return bucket.get(position++);
+                }
+                final Object next = buckets.next();
+                if (next instanceof StudyGroup) {
+                    return (StudyGroup) next;
+                }
+                bucket = asList(next);
+                position = 1;
+                return bucket.get(0);
+            }
+        };
+    }
+
+    /**
+     * Копирует группы следующих корзин представления, пока скопировано меньше limit групп.
+     * Корзины копируются целиком, поэтому обход можно продолжить с ключа последней из них.
+     *
+     * @param view представление индекса
+     * @param after ключ последней уже скопированной корзины или null, чтобы начать сначала
+     * @param limit сколько групп достаточно скопировать
+     * @param into список, в который добавляются группы
+     * @return ключ последней скопированной корзины или null, если корзин больше нет
+     */
+    static StudyGroup copy(NavigableMap<StudyGroup, Object> view, StudyGroup after, int limit,
+            List<StudyGroup> into) {
+        final NavigableMap<StudyGroup, Object> rest =
+                after == null ? view : view.tailMap(after, false);
+        StudyGroup last = null;
+        final int start = into.size();
+        for (Map.Entry<StudyGroup, Object> entry : rest.entrySet()) {
+            if (into.size() - start >= limit) {
+                break;
+            }
+            final Object bucket = entry.getValue();
+            if (bucket instanceof StudyGroup) {
+                into.add((StudyGroup) bucket);
+            } else {
+                into.addAll(asList(bucket));
+            }
+            last = entry.getKey();
+        }
+        return last;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<StudyGroup> asList(Object bucket) {
+        return (List<StudyGroup>) bucket;
+    }
+}
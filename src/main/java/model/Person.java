@@ -9,7 +9,7 @@ public class Person {
 
     private String name;
     private Date birthday;
-    private Float height;
+    private float height;
     private String passportId;
     private Color eyeColor;
 
@@ -58,7 +58,7 @@ public class Person {
      *
      * @return рост в сантиметрах
      */
-    public Float getHeight() {
+    public float getHeight() {
         return height;
     }
 
@@ -0,0 +1,638 @@
+package model;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongSupplier;
+
+/**
+ * Дерево порядковых статистик (декартово дерево) для позиционного хранения учебных групп.
+ *
+ * <p>Узлы упорядочены по разреженным меткам позиции, а размеры поддеревьев позволяют
+ * за O(log n) получать элемент по позиции и позицию по метке. Позиция всегда вычисляется
+ * по размерам поддеревьев, а метки только задают порядок. Метки раздаются с шагом
+ * {@link #GAP}, поэтому вставка между соседями обычно не требует их пересчета. Если между
+ * соседями места нет, метки перераспределяются только в окне вокруг позиции вставки
+ * (см. {@link #spread(int, Relabeling)}), что в среднем стоит O(log² n) на вставку.
+ * Изменения копируют путь от корня, а опубликованные узлы не изменяются, поэтому
+ * прочитанный корень служит неизменяемым снимком для читателей в других потоках.
+ * Изменять дерево может только один поток одновременно.
+ */
+class RankTree implements Iterable<StudyGroup> {
+
+    /** Шаг между соседними метками после перенумерации. */
+    static final long GAP = 1L << 32;
+    /** Метка первого элемента после перенумерации. */
+    static final long ORIGIN = 1L << 61;
+
+    /**
+     * Получатель новых меток элементов, перенумерованных при вставке.
+     */
+    @FunctionalInterface
+    interface Relabeling {
+
+        /**
+         * Метка элемента изменилась.
+         *
+         * @param from прежняя метка
+         * @param to новая метка
+         * @param value элемент
+         */
+        void moved(long from, long to, StudyGroup value);
+    }
+
+    /**
+     * Узел дерева.
+     */
+    static final class Node {
+        final long label;
+        final StudyGroup value;
+        final int priority;
+        Node left;
+        Node right;
+        int size;
+
+        Node(long label, StudyGroup value, int priority, Node left, Node right) {
+            this.label = label;
+            this.value = value;
+            this.priority = priority;
+            this.left = left;
+            this.right = right;
+            this.size = 1 + size(left) + size(right);
+        }
+    }
+
+    /** Корень публикуется через volatile, поэтому читатели видят полностью построенные узлы. */
+    private volatile Node root;
+    private Node splitLeft;
+    private Node splitRight;
+
+    /**
+     * Возвращает количество элементов.
+     *
+     * @return количество элементов
+     */
+    int size() {
+        return size(root);
+    }
+
+    /**
+     * Возвращает текущий корень дерева. Так как узлы не изменяются,
+     * корень является согласованным снимком содержимого.
+     *
+     * @return корень дерева или null
+     */
+    Node root() {
+        return root;
+    }
+
+    /**
+     * Удаляет все элементы.
+     */
+    void clear() {
+        root = null;
+    }
+
+    /**
+     * Возвращает дерево к прежнему состоянию, полученному через {@link #root()}.
+     *
+     * @param snapshot прежний корень
+     */
+    void restore(Node snapshot) {
+        root = snapshot;
+    }
+
+    /**
+     * Возвращает элемент по позиции.
+     *
+     * @param rank позиция, начиная с 0
+     * @return элемент
+     */
+    StudyGroup get(int rank) {
+        return nodeAt(root, rank).value;
+    }
+
+    /**
+     * Возвращает метку элемента по позиции.
+     *
+     * @param rank позиция, начиная с 0
+     * @return метка элемента
+     */
+    long labelAt(int rank) {
+        return nodeAt(root, rank).label;
+    }
+
+    /**
+     * Возвращает элемент по метке.
+     *
+     * @param label метка
+     * @return элемент или null, если метка отсутствует
+     */
+    StudyGroup valueOf(long label) {
+        return valueOf(root, label);
+    }
+
+    /**
+     * Возвращает элемент снимка по метке.
+     *
+     * @param snapshot корень снимка
+     * @param label метка
+     * @return элемент или null, если метка отсутствует
+     */
+    static StudyGroup valueOf(Node snapshot, long label) {
+        Node node = snapshot;
+        while (node != null) {
+            if (label == node.label) {
+                return node.value;
+            }
+            node = label < node.label ? node.left : node.right;
+        }
+        return null;
+    }
+
+    /**
+     * Возвращает позицию элемента по метке.
+     *
+     * @param label метка
+     * @return позиция, начиная с 0, или -1, если метка отсутствует
+     */
+    int rankOf(long label) {
+        return rankOf(root, label);
+    }
+
+    /**
+     * Возвращает позицию элемента снимка по метке.
+     *
+     * @param snapshot корень снимка
+     * @param label метка
+     * @return позиция, начиная с 0, или -1, если метка отсутствует
+     */
+    static int rankOf(Node snapshot, long label) {
+        Node node = snapshot;
+        int rank = 0;
+        while (node != null) {
+            if (label < node.label) {
+                node = node.left;
+            } else if (label > node.label) {
+                rank += size(node.left) + 1;
+                node = node.right;
+            } else {
+                return rank + size(node.left);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Подбирает метку для вставки элемента в заданную позицию.
+     *
+     * @param rank позиция вставки, от 0 до size()
+     * @return свободная метка или -1, если между соседями нет места и нужна перенумерация
+     */
+    long labelForInsert(int rank) {
+        final int size = size();
+        if (size == 0) {
+            return ORIGIN;
+        }
+        if (rank >= size) {
+            final long last = labelAt(size - 1);
+            return last <= Long.MAX_VALUE - GAP ? last + GAP : -1;
+        }
+        final long next = labelAt(rank);
+        if (rank == 0) {
+            if (next >= GAP) {
+                return next - GAP;
+            }
+            return next > 0 ? next / 2 : -1;
+        }
+        final long prev = labelAt(rank - 1);
+        return next - prev > 1 ? prev + (next - prev) / 2 : -1;
+    }
+
+    /**
+     * Освобождает метку для вставки в заданную позицию, когда между соседями
+     * места нет (см. {@link #labelForInsert(int)}).
+     *
+     * <p>Метки перераспределяются в наименьшем выровненном диапазоне из 2^k меток,
+     * содержащем соседа позиции вставки, в котором элементов вместе с новым не больше
+     * 2^(k/2). После перераспределения соседние метки в диапазоне отстоят не меньше
+     * чем на 2^(k/2), поэтому следующая перенумерация этого диапазона потребует
+     * порядка k/2 вставок в одно место, а диапазон в 2^k меток вмещает больше элементов.
+     * Перенумерация затрагивает только элементы диапазона и стоит O(m + log n),
+     * где m — их количество.
+     *
+     * @param rank позиция вставки, от 0 до size()
+     * @param relabeling получатель новых меток перенумерованных элементов
+     * @return свободная метка для вставки в позицию rank
+     */
+    long spread(int rank, Relabeling relabeling) {
+        final int size = size();
+        if (size == 0) {
+            return ORIGIN;
+        }
+        // Диапазон строится вокруг соседа, поэтому новый элемент попадает в него же
+        final long anchor = labelAt(Math.min(rank, size - 1));
+        for (int bits = 1; bits < Long.SIZE; bits++) {
+            final long start = anchor & -(1L << bits);
+            // При переполнении конец диапазона отрицателен: диапазон доходит до конца меток
+            final long end = start + (1L << bits);
+            final int first = countBelow(start);
+            final int last = end <= 0 ? size : countBelow(end);
+            final int count = last - first + 1;
+            if (bits == Long.SIZE - 1 || count <= Math.pow(2, bits / 2.0)) {
+                return spread(start, end, rank - first, count, relabeling);
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Равномерно перераспределяет метки элементов диапазона [start, end), оставляя
+     * свободной метку с номером slot.
+     */
+    private long spread(long start, long end, int slot, int count, Relabeling relabeling) {
+        final long step = (end <= 0 ? Long.MAX_VALUE - start : end - start) / count;
+        split(root, start);
+        final Node left = splitLeft;
+        final Node middle;
+        final Node right;
+        if (end <= 0) {
+            middle = splitRight;
+            right = null;
+        } else {
+            split(splitRight, end);
+            middle = splitLeft;
+            right = splitRight;
+        }
+        final Iterator<Node> nodes = nodes(middle);
+        final long[] label = {0};
+        final Node spread = build(new Iterator<>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return nodes.hasNext();
+            }
+
+            @Override
+            public StudyGroup next() {
+                final Node node = nodes.next();
+                if (next == slot) {
+                    next++;
+                }
+                label[0] = start + next++ * step + step / 2;
+                relabeling.moved(node.label, label[0], node.value);
+                return node.value;
+            }
+        }, () -> label[0]);
+        root = merge(merge(left, spread), right);
+        return start + slot * step + step / 2;
+    }
+
+    /**
+     * Возвращает количество элементов с метками меньше заданной.
+     */
+    private int countBelow(long bound) {
+        Node node = root;
+        int count = 0;
+        while (node != null) {
+            if (node.label < bound) {
+                count += size(node.left) + 1;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Вставляет элемент с заданной меткой.
+     *
+     * @param label метка, отсутствующая в дереве
+     * @param value элемент
+     */
+    void insert(long label, StudyGroup value) {
+        root = insert(root, new Node(label, value, ThreadLocalRandom.current().nextInt(),
+                null, null));
+    }
+
+    /**
+     * Удаляет элемент по метке.
+     *
+     * @param label метка
+     * @return удаленный элемент или null, если метка отсутствует
+     */
+    StudyGroup remove(long label) {
+        final StudyGroup value = valueOf(label);
+        if (value != null) {
+            root = remove(root, label);
+        }
+        return value;
+    }
+
+    /**
+     * Заменяет элемент с заданной меткой.
+     *
+     * @param label метка
+     * @param value новый элемент
+     * @return прежний элемент или null, если метка отсутствует
+     */
+    StudyGroup replace(long label, StudyGroup value) {
+        final StudyGroup old = valueOf(label);
+        if (old != null) {
+            root = replace(root, label, value);
+        }
+        return old;
+    }
+
+    /**
+     * Перестраивает дерево из элементов в заданном порядке с заданными метками.
+     * Работает за O(n); элементы читаются из итератора по одному, поэтому их
+     * не нужно заранее собирать в список.
+     *
+     * @param values элементы в порядке позиций
+     * @param labels метки элементов; запрашиваются после каждого элемента
+     *     и должны строго возрастать
+     */
+    void rebuild(Iterator<StudyGroup> values, LongSupplier labels) {
+        root = build(values, labels);
+    }
+
+    /**
+     * Строит дерево из элементов в порядке меток за O(n).
+     */
+    private static Node build(Iterator<StudyGroup> values, LongSupplier labels) {
+        final ArrayDeque<Node> rightSpine = new ArrayDeque<>();
+        while (values.hasNext()) {
+            final StudyGroup value = values.next();
+            final Node node = new Node(labels.getAsLong(), value,
+                    ThreadLocalRandom.current().nextInt(), null, null);
+            Node lastPopped = null;
+            while (!rightSpine.isEmpty() && rightSpine.peek().priority < node.priority) {
+                lastPopped = rightSpine.pop();
+            }
+            node.left = lastPopped;
+            if (!rightSpine.isEmpty()) {
+                rightSpine.peek().right = node;
+            }
+            rightSpine.push(node);
+        }
+        final Node built = rightSpine.peekLast();
+        fixSizes(built);
+        return built;
+    }
+
+    /**
+     * Возвращает итератор по элементам в порядке позиций.
+     *
+     * @return итератор по текущему снимку дерева
+     */
+    @Override
+    public Iterator<StudyGroup> iterator() {
+        return iterator(root);
+    }
+
+    /**
+     * Возвращает итератор по элементам снимка в порядке позиций.
+     *
+     * @param snapshot корень снимка
+     * @return итератор
+     */
+    static Iterator<StudyGroup> iterator(Node snapshot) {
+        final Iterator<Node> nodes = nodes(snapshot);
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return nodes.hasNext();
+            }
+
+            @Override
+            public StudyGroup next() {
+                return nodes.next().value;
+            }
+        };
+    }
+
+    /**
+     * Возвращает неизменяемое представление снимка в виде списка.
+     * Доступ по индексу стоит O(log n), последовательный обход — O(1) на элемент.
+     *
+     * @param snapshot корень снимка
+     * @return список элементов снимка
+     */
+    static CollectionSnapshot asList(Node snapshot) {
+        return new CollectionSnapshot(snapshot, 0);
+    }
+
+    /**
+     * Сравнивает два снимка. Общие поддеревья пропускаются по совпадению ссылок,
+     * поэтому для снимков одного дерева время пропорционально числу изменений,
+     * умноженному на высоту дерева.
+     *
+     * @param before корень старого снимка или null
+     * @param after корень нового снимка или null
+     * @param visitor получатель различий в порядке возрастания меток
+     */
+    static void diff(Node before, Node after, CollectionSnapshot.ChangeVisitor visitor) {
+        if (before == after) {
+            return;
+        }
+        if (before == null || after == null) {
+            final Iterator<Node> nodes = nodes(before == null ? after : before);
+            while (nodes.hasNext()) {
+                final Node node = nodes.next();
+                if (before == null) {
+                    visitor.added(node.label, node.value);
+                } else {
+                    visitor.removed(node.label, node.value);
+                }
+            }
+            return;
+        }
+        final Node left;
+        final Node same;
+        final Node right;
+        if (before.label == after.label) {
+            left = after.left;
+            same = after;
+            right = after.right;
+        } else {
+            final Node[] parts = splitCopy(after, before.label);
+            left = parts[0];
+            same = parts[1];
+            right = parts[2];
+        }
+        diff(before.left, left, visitor);
+        if (same == null) {
+            visitor.removed(before.label, before.value);
+        } else if (same.value != before.value) {
+            visitor.removed(before.label, before.value);
+            visitor.added(same.label, same.value);
+        }
+        diff(before.right, right, visitor);
+    }
+
+    /**
+     * Разделяет поддерево, не изменяя его, на узлы с метками меньше label,
+     * узел с меткой label (или null) и узлы с большими метками.
+     */
+    private static Node[] splitCopy(Node node, long label) {
+        if (node == null) {
+            return new Node[3];
+        }
+        if (node.label == label) {
+            return new Node[] {node.left, node, node.right};
+        }
+        if (node.label < label) {
+            final Node[] parts = splitCopy(node.right, label);
+            parts[0] = copy(node, node.left, parts[0]);
+            return parts;
+        }
+        final Node[] parts = splitCopy(node.left, label);
+        parts[2] = copy(node, parts[2], node.right);
+        return parts;
+    }
+
+    /**
+     * Возвращает итератор по узлам поддерева в порядке меток.
+     */
+    private static Iterator<Node> nodes(Node snapshot) {
+        return new Iterator<>() {
+            private final ArrayDeque<Node> stack = new ArrayDeque<>();
+            private Node next = snapshot;
+
+            @Override
+            public boolean hasNext() {
+                return next != null || !stack.isEmpty();
+            }
+
+            @Override
+            public Node next() {
+                while (next != null) {
+                    stack.push(next);
+                    next = next.left;
+                }
+                if (stack.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                final Node node = stack.pop();
+                next = node.right;
+                return node;
+            }
+        };
+    }
+
+    /**
+     * Возвращает узел снимка по позиции.
+     *
+     * @param snapshot корень снимка
+     * @param rank позиция, начиная с 0
+     * @return узел
+     * @throws IndexOutOfBoundsException если позиция вне диапазона
+     */
+    static Node nodeAt(Node snapshot, int rank) {
+        if (rank < 0 || rank >= size(snapshot)) {
+            throw new IndexOutOfBoundsException("Позиция вне диапазона: " + rank);
+        }
+        Node node = snapshot;
+        while (true) {
+            final int leftSize = size(node.left);
+            if (rank < leftSize) {
+                node = node.left;
+            } else if (rank > leftSize) {
+                rank -= leftSize + 1;
+                node = node.right;
+            } else {
+                return node;
+            }
+        }
+    }
+
+    /**
+     * Возвращает размер поддерева.
+     *
+     * @param node корень поддерева или null
+     * @return количество элементов
+     */
+    static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private Node insert(Node node, Node created) {
+        if (node == null) {
+            return created;
+        }
+        if (created.priority > node.priority) {
+            split(node, created.label);
+            return new Node(created.label, created.value, created.priority,
+                    splitLeft, splitRight);
+        }
+        if (created.label < node.label) {
+            return copy(node, insert(node.left, created), node.right);
+        }
+        return copy(node, node.left, insert(node.right, created));
+    }
+
+    private Node remove(Node node, long label) {
+        if (label == node.label) {
+            return merge(node.left, node.right);
+        }
+        if (label < node.label) {
+            return copy(node, remove(node.left, label), node.right);
+        }
+        return copy(node, node.left, remove(node.right, label));
+    }
+
+    private Node replace(Node node, long label, StudyGroup value) {
+        if (label == node.label) {
+            return new Node(node.label, value, node.priority, node.left, node.right);
+        }
+        if (label < node.label) {
+            return copy(node, replace(node.left, label, value), node.right);
+        }
+        return copy(node, node.left, replace(node.right, label, value));
+    }
+
+    /**
+     * Разделяет поддерево на узлы с метками меньше label (splitLeft) и остальные (splitRight).
+     */
+    private void split(Node node, long label) {
+        if (node == null) {
+            splitLeft = null;
+            splitRight = null;
+        } else if (node.label < label) {
+            split(node.right, label);
+            splitLeft = copy(node, node.left, splitLeft);
+        } else {
+            split(node.left, label);
+            splitRight = copy(node, splitRight, node.right);
+        }
+    }
+
+    private Node merge(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            return copy(left, left.left, merge(left.right, right));
+        }
+        return copy(right, merge(left, right.left), right.right);
+    }
+
+    private static Node copy(Node node, Node left, Node right) {
+        return new Node(node.label, node.value, node.priority, left, right);
+    }
+
+    private static int fixSizes(Node node) {
+        if (node == null) {
+            return 0;
+        }
+        node.size = 1 + fixSizes(node.left) + fixSizes(node.right);
+        return node.size;
+    }
+}
@@ -0,0 +1,140 @@
+package model;
+
+import java.util.Arrays;
+import java.util.TreeMap;
+
+/**
+ * Гистограмма значений поля studentsCount.
+ * Точный подсчет выполняется по хеш-таблице, подсчет по диапазону — по дереву Фенвика
+ * для значений от 1 до {@link #FENWICK_LIMIT}. Остальные значения хранятся отдельно.
+ */
+class StudentsCountHistogram {
+
+    private static final int FENWICK_LIMIT = 1 << 20;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final LongHashMap counts = new LongHashMap();
+    private final TreeMap<Integer, Integer> outliers = new TreeMap<>();
+    private int[] tree = new int[INITIAL_CAPACITY + 1];
+    private int total;
+
+    /**
+     * Учитывает группу с заданным количеством студентов.
+     *
+     * @param studentsCount количество студентов
+     */
+    void add(int studentsCount) {
+        final long count = counts.get(studentsCount);
+        counts.put(studentsCount, count < 0 ? 1 : count + 1);
+        if (studentsCount <= 0 || studentsCount > FENWICK_LIMIT) {
+            outliers.merge(studentsCount, 1, Integer::sum);
+            return;
+        }
+        while (studentsCount > capacity()) {
+            grow();
+        }
+        update(studentsCount, 1);
+        total++;
+    }
+
+    /**
+     * Исключает группу с заданным количеством студентов.
+     *
+     * @param studentsCount количество студентов
+     */
+    void remove(int studentsCount) {
+        final long count = counts.get(studentsCount);
+        if (count <= 0) {
+            return;
+        }
+        if (count == 1) {
+            counts.remove(studentsCount);
+        } else {
+            counts.put(studentsCount, count - 1);
+        }
+        if (studentsCount <= 0 || studentsCount > FENWICK_LIMIT) {
+            outliers.computeIfPresent(studentsCount, (key, value) -> value == 1 ? null : value - 1);
+            return;
+        }
+        update(studentsCount, -1);
+        total--;
+    }
+
+    /**
+     * Очищает гистограмму.
+     */
+    void clear() {
+        counts.clear();
+        outliers.clear();
+        tree = new int[INITIAL_CAPACITY + 1];
+        total = 0;
+    }
+
+    /**
+     * Возвращает количество групп с заданным количеством студентов.
+     *
+     * @param studentsCount количество студентов
+     * @return количество групп
+     */
+    int count(long studentsCount) {
+        return (int) Math.max(counts.get(studentsCount), 0);
+    }
+
+    /**
+     * Возвращает количество групп с количеством студентов в диапазоне [min, max].
+     *
+     * @param min нижняя граница (включительно)
+     * @param max верхняя граница (включительно)
+     * @return количество групп
+     */
+    int countBetween(long min, long max) {
+        if (min > max || min > Integer.MAX_VALUE || max < Integer.MIN_VALUE) {
+            // Значения поля имеют тип int, поэтому такой диапазон пуст
+            return 0;
+        }
+        int result = prefix(max) - (min <= 1 ? 0 : prefix(min - 1));
+        final int lower = (int) Math.max(min, Integer.MIN_VALUE);
+        final int upper = (int) Math.min(max, Integer.MAX_VALUE);
+        for (int value : outliers.subMap(lower, true, upper, true).values()) {
+            result += value;
+        }
+        return result;
+    }
+
+    /**
+     * Возвращает количество групп со значением от 1 до bound, учтенных в дереве Фенвика.
+     */
+    private int prefix(long bound) {
+        if (bound <= 0) {
+            return 0;
+        }
+        if (bound >= capacity()) {
+            return total;
+        }
+        int sum = 0;
+        for (int i = (int) bound; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    private void update(int index, int delta) {
+        for (int i = index; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    /**
+     * Удваивает дерево. Узлы старой части не меняются, а новый корень покрывает
+     * весь старый диапазон, поэтому достаточно записать в него общую сумму.
+     */
+    private void grow() {
+        final int capacity = capacity();
+        tree = Arrays.copyOf(tree, capacity * 2 + 1);
+        tree[capacity * 2] = total;
+    }
+
+    private int capacity() {
+        return tree.length - 1;
+    }
+}
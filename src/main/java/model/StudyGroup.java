@@ -13,7 +13,7 @@ public class StudyGroup implements Comparable<StudyGroup> {
     private LocalDateTime creationDate;
     private int studentsCount;
     private long shouldBeExpelled;
-    private Float averageMark;
+    private float averageMark;
     private FormOfEducation formOfEducation;
     private Person groupAdmin;
 
@@ -100,6 +100,19 @@ public class StudyGroup implements Comparable<StudyGroup> {
         return creationDate;
     }
 
+    /**
+     * Устанавливает дату создания учебной группы. Используется при загрузке из файла.
+     *
+     * @param creationDate дата создания
+     * @throws IllegalArgumentException если дата равна null
+     */
+    public void setCreationDate(LocalDateTime creationDate) {
+        if (creationDate == null) {
+            throw new IllegalArgumentException("Дата создания не может быть null");
+        }
+        this.creationDate = creationDate;
+    }
+
     /**
      * Возвращает количество студентов в группе.
      *
@@ -149,7 +162,7 @@ public class StudyGroup implements Comparable<StudyGroup> {
      *
      * @return средняя оценка
      */
-    public Float getAverageMark() {
+    public float getAverageMark() {
         return averageMark;
     }
 
@@ -208,6 +221,20 @@ public class StudyGroup implements Comparable<StudyGroup> {
         this.groupAdmin = groupAdmin;
     }
 
+    /**
+     * Создает группу-границу для поиска по индексу: она меньше любой группы
+     * с тем же количеством студентов.
+     *
+     * @param studentsCount количество студентов
+     * @return группа-граница
+     */
+    static StudyGroup lowerBound(int studentsCount) {
+        final StudyGroup bound = new StudyGroup();
+        bound.studentsCount = studentsCount;
+        bound.shouldBeExpelled = Long.MIN_VALUE;
+        return bound;
+    }
+
     /**
      * Метод для сравнения.
      *
@@ -229,7 +256,10 @@ public class StudyGroup implements Comparable<StudyGroup> {
             return result;
         }
 
-        // Затем по name
+        // Затем по name; группа без имени (например, из поврежденного файла) считается меньшей
+        if (this.name == null || other.name == null) {
+            return this.name == null ? (other.name == null ? 0 : -1) : 1;
+        }
         return this.name.compareTo(other.name);
     }
 
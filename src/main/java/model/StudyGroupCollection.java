@@ -1,36 +1,176 @@
 package model;
 
 import java.time.LocalDateTime;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.Vector;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
- * Класс инкапсулирующий вектор учебных групп.
+ * Класс инкапсулирующий упорядоченную коллекцию учебных групп.
+ * Позиции хранятся в дереве порядковых статистик, ID отображаются на метки позиций.
+ *
+ * <p>В конкурентном режиме изменения выполняются последовательно под блокировкой записи.
+ * Позиционное чтение (вывод, обход, сохранение, доступ по индексу) работает без блокировок
+ * по неизменяемому снимку дерева, а запросы к индексам берут короткую блокировку чтения.
+ *
+ * <p>Изменения можно объединить в пакет (см. {@link #begin()}): до {@link #commit()}
+ * они видны только потоку, начавшему пакет, а слушатель и снимки для сохранения получают
+ * их разом; {@link #rollback()} возвращает коллекцию в состояние до начала пакета.
+ * Остальные потоки, пока пакет открыт, читают дерево до начала пакета, а для запросов
+ * к индексам при первом таком чтении по нему строятся отдельные индексы.
+ * Изменения из других потоков (включая начало нового пакета и загрузку) ждут, пока
+ * пакет не будет применен или отменен: иначе они попали бы в журнал отмены пакета
+ * и пропали бы при его отмене. Снимки для сохранения пакет не ждут. В однопоточном
+ * режиме ждать нечем, поэтому изменение из другого потока отклоняется.
+ *
+ * <p>Если слушатель не принял уведомление (например, не удалась запись в журнал),
+ * изменение отменяется тем же способом, что и пакет, а ошибка слушателя передается
+ * вызывающему: коллекция не расходится с журналом. Для этого изменение вне пакета
+ * при установленном слушателе выполняется как пакет из одного изменения.
  */
 public class StudyGroupCollection {
 
-    private final Vector<StudyGroup> collection;
+    /** Сколько групп индекса естественного порядка копируется под одной блокировкой. */
+    private static final int ORDERED_CHUNK = 1024;
+
+    private final RankTree collection;
     private final LocalDateTime initializationDate;
+    private final ReadWriteLock lock;
+    /** Сигнал об окончании пакета для потоков, ждущих возможности изменить коллекцию. */
+    private final Condition batchFinished;
+    private LongHashMap idIndex;
+    private final NaturalOrderIndex naturalOrder;
+    private final StudentsCountHistogram studentsCountHistogram;
+    private final GroupAdminIndex groupAdminIndex;
+    private CollectionListener listener;
+    private volatile long modifications;
+    private volatile long highestId;
+    private volatile long idGeneration;
+    private volatile Batch batch;
+
+    /**
+     * Открытый пакет изменений.
+     */
+    private static final class Batch {
+        final Thread owner;
+        /** Корень дерева до начала пакета: его видят другие потоки и снимки для сохранения. */
+        final RankTree.Node root;
+        /** Действия, отменяющие изменения индексов, в порядке изменений. */
+        final List<Runnable> undo = new ArrayList<>();
+        /** Уведомления слушателя, отложенные до применения пакета. */
+        final List<Consumer<CollectionListener>> events = new ArrayList<>();
+        /** Индексы изменены целиком (очистка) и при отмене перестраиваются. */
+        boolean rebuildOnRollback;
+        long modifications;
+        /** Индексы до начала пакета для чтения другими потоками или null, пока не нужны. */
+        Indexes committed;
+
+        Batch(Thread owner, RankTree.Node root) {
+            this.owner = owner;
+            this.root = root;
+        }
+    }
+
+    /**
+     * Индексы снимка коллекции, построенные по его дереву.
+     */
+    private static final class Indexes {
+        final RankTree.Node root;
+        final LongHashMap idIndex;
+        final NaturalOrderIndex naturalOrder = new NaturalOrderIndex();
+        final StudentsCountHistogram studentsCountHistogram = new StudentsCountHistogram();
+        final GroupAdminIndex groupAdminIndex = new GroupAdminIndex();
+
+        Indexes(RankTree.Node root) {
+            this.root = root;
+            this.idIndex = new LongHashMap(RankTree.size(root));
+            RankTree.diff(null, root, new CollectionSnapshot.ChangeVisitor() {
+                @Override
+                public void removed(long label, StudyGroup group) {
+                }
+
+                @Override
+                public void added(long label, StudyGroup group) {
+                    idIndex.put(group.getId(), label);
+                    naturalOrder.add(group);
+                    studentsCountHistogram.add(group.getStudentsCount());
+                    groupAdminIndex.add(group.getGroupAdmin());
+                }
+            });
+        }
+    }
 
     /**
      * Конструктор класса StudyGroupCollection.
-     * Создает пустую коллекцию и устанавливает дату инициализации.
+     * Создает пустую коллекцию для однопоточной работы и устанавливает дату инициализации.
      */
     public StudyGroupCollection() {
-        this.collection = new Vector<>();
+        this(false);
+    }
+
+    /**
+     * Конструктор класса StudyGroupCollection.
+     * Создает пустую коллекцию и устанавливает дату инициализации.
+     *
+     * @param concurrent true, если коллекция используется из нескольких потоков
+     */
+    public StudyGroupCollection(boolean concurrent) {
+        this.collection = new RankTree();
         this.initializationDate = LocalDateTime.now();
+        this.lock = concurrent ? new ReentrantReadWriteLock() : null;
+        this.batchFinished = concurrent ? lock.writeLock().newCondition() : null;
+        this.idIndex = new LongHashMap();
+        this.naturalOrder = new NaturalOrderIndex();
+        this.studentsCountHistogram = new StudentsCountHistogram();
+        this.groupAdminIndex = new GroupAdminIndex();
+    }
+
+    /**
+     * Проверяет, работает ли коллекция в конкурентном режиме.
+     *
+     * @return true, если коллекция потокобезопасна
+     */
+    public boolean isConcurrent() {
+        return lock != null;
+    }
+
+    /**
+     * Устанавливает слушателя изменений коллекции. Загрузка через {@link #loadFrom}
+     * слушателю не сообщается.
+     *
+     * @param listener слушатель или null, чтобы отключить уведомления
+     */
+    public void setListener(CollectionListener listener) {
+        write(() -> {
+            this.listener = listener;
+        });
     }
 
     /**
      * Добавляет учебную группу в коллекцию.
      *
      * @param group учебная группа для добавления
+     * @throws IllegalArgumentException если группа с таким ID уже есть в коллекции
      */
     public void add(StudyGroup group) {
-        collection.add(group);
+        change(() -> insertAtUnlocked(Integer.MAX_VALUE, group));
     }
 
     /**
@@ -40,7 +180,15 @@ public class StudyGroupCollection {
      * @return true, если группа была удалена, false в противном случае
      */
     public boolean removeById(long id) {
-        return collection.removeIf(group -> group.getId() == id);
+        return change(() -> {
+            final long label = removeId(id);
+            if (label < 0) {
+                return false;
+            }
+            indexRemoved(collection.remove(label));
+            changed(listener -> listener.removed(id));
+            return true;
+        });
     }
 
     /**
@@ -49,22 +197,105 @@ public class StudyGroupCollection {
      * @param id ID группы для обновления
      * @param newGroup новая версия группы
      * @return true, если группа была обновлена, false в противном случае
+     * @throws IllegalArgumentException если ID новой версии принадлежит другой группе
      */
     public boolean update(long id, StudyGroup newGroup) {
-        for (int i = 0; i < collection.size(); i++) {
-            if (collection.get(i).getId() == id) {
-                collection.set(i, newGroup);
-                return true;
+        return change(() -> {
+            final long label = idIndex.get(id);
+            if (label < 0) {
+                return false;
             }
-        }
-        return false;
+            replace(label, newGroup);
+            changed(listener -> listener.updated(id, newGroup));
+            return true;
+        });
     }
 
     /**
      * Очищает коллекцию.
      */
     public void clear() {
-        collection.clear();
+        change(() -> {
+            final Batch current = batch;
+            if (current != null) {
+                current.rebuildOnRollback = true;
+                current.undo.clear();
+            }
+            clearUnlocked();
+            changed(CollectionListener::cleared);
+        });
+    }
+
+    /**
+     * Начинает пакет изменений в текущем потоке. Изменения пакета сразу видны этому потоку,
+     * а остальные потоки, снимки {@link #checkpoint(Runnable)} и слушатель увидят их только
+     * после {@link #commit()}. Если пакет открыт другим потоком, метод ждет его окончания.
+     *
+     * @throws IllegalArgumentException если пакет уже начат этим потоком
+     */
+    public void begin() {
+        write(() -> {
+            awaitForeignBatch();
+            if (batch != null) {
+                throw new IllegalArgumentException("Пакет изменений уже начат");
+            }
+            batch = new Batch(Thread.currentThread(), collection.root());
+        });
+    }
+
+    /**
+     * Применяет пакет изменений: под одной блокировкой записи передает слушателю все
+     * отложенные уведомления и делает изменения видимыми остальным потокам.
+     * Если слушатель не принял уведомления, пакет отменяется целиком.
+     *
+     * @return количество изменений в пакете
+     * @throws IllegalArgumentException если пакет не начат
+     * @throws RuntimeException ошибка слушателя; изменения пакета при этом отменены
+     */
+    public long commit() {
+        return write(() -> {
+            awaitForeignBatch();
+            final Batch current = finishBatch();
+            publish(current, true);
+            return current.modifications;
+        });
+    }
+
+    /**
+     * Отменяет пакет изменений и возвращает коллекцию в состояние до его начала.
+     * Выданные в пакете ID остаются занятыми.
+     *
+     * @return количество отмененных изменений
+     * @throws IllegalArgumentException если пакет не начат
+     */
+    public long rollback() {
+        return write(() -> {
+            awaitForeignBatch();
+            final Batch current = finishBatch();
+            undo(current);
+            return current.modifications;
+        });
+    }
+
+    /**
+     * Проверяет, начат ли пакет изменений.
+     *
+     * @return true, если пакет изменений открыт
+     */
+    public boolean inBatch() {
+        return batch != null;
+    }
+
+    /**
+     * Возвращает количество изменений коллекции с момента создания: добавлений, удалений,
+     * замен и очисток. Загрузка через {@link #loadFrom} изменением не считается.
+     * Изменения пакета учитываются при его применении.
+     * Счетчик позволяет узнать, менялась ли коллекция после сохранения.
+     *
+     * @return количество изменений
+     */
+    public long getModificationCount() {
+        return modifications;
     }
 
     /**
@@ -73,9 +304,10 @@ public class StudyGroupCollection {
      * @return строка с информацией о типе коллекции, дате инициализации и количестве элементов
      */
     public String getCollectionInfo() {
-        return "Тип коллекции: Vector\n"
+        return "Тип коллекции: дерево порядковых статистик"
+                + (isConcurrent() ? " (конкурентный режим)" : "") + "\n"
                 + "Дата инициализации: " + initializationDate + "\n"
-                + "Количество элементов: " + collection.size();
+                + "Количество элементов: " + size();
     }
 
     /**
@@ -84,10 +316,11 @@ public class StudyGroupCollection {
      * @return строка с представлением всех элементов или сообщение о пустой коллекции
      */
     public String getCollectionAsString() {
-        if (collection.isEmpty()) {
+        final List<StudyGroup> snapshot = getCollection();
+        if (snapshot.isEmpty()) {
             return "Коллекция пуста";
         }
-        return collection.stream()
+        return snapshot.stream()
                 .map(StudyGroup::toString)
                 .collect(Collectors.joining("\n"));
     }
@@ -98,7 +331,7 @@ public class StudyGroupCollection {
      * @return первый элемент или null, если коллекция пуста
      */
     public StudyGroup getFirst() {
-        return collection.isEmpty() ? null : collection.firstElement();
+        return get(0);
     }
 
     /**
@@ -108,32 +341,160 @@ public class StudyGroupCollection {
      * @return количество найденных групп
      */
     public int countByStudentsCount(long studentsCount) {
-        return (int) collection.stream()
-                .filter(group -> group.getStudentsCount() == studentsCount)
-                .count();
+        return read(() -> studentsCountHistogram().count(studentsCount));
+    }
+
+    /**
+     * Подсчитывает количество групп с количеством студентов в заданном диапазоне.
+     *
+     * @param min нижняя граница (включительно)
+     * @param max верхняя граница (включительно)
+     * @return количество найденных групп
+     */
+    public int countByStudentsCountBetween(long min, long max) {
+        return read(() -> studentsCountHistogram().countBetween(min, max));
     }
 
     /**
      * Возвращает отсортированный список строковых представлений администраторов групп.
+     * Группы без администратора пропускаются.
      *
      * @return строка с отсортированными представлениями администраторов
      */
     public String getGroupAdminFieldAscending() {
-        return collection.stream()
-                .map(group -> group.getGroupAdmin().toString())
-                .sorted()
+        return getGroupAdminFieldAscending(0, Integer.MAX_VALUE)
                 .collect(Collectors.joining("\n"));
     }
 
+    /**
+     * Возвращает строковые представления администраторов групп по возрастанию
+     * с пропуском первых offset значений.
+     * В конкурентном режиме нужный отрезок копируется под блокировкой чтения.
+     *
+     * @param offset количество пропускаемых значений
+     * @param limit максимальное количество значений
+     * @return ленивый поток строковых представлений администраторов
+     */
+    public Stream<String> getGroupAdminFieldAscending(int offset, int limit) {
+        if (!isConcurrent()) {
+            return groupAdminIndex().renderedAscending()
+                    .skip(offset)
+                    .limit(limit);
+        }
+        return read(() -> groupAdminIndex().renderedAscending()
+                .skip(offset)
+                .limit(limit)
+                .collect(Collectors.toList()))
+                .stream();
+    }
+
     /**
      * Находит группу с минимальным значением.
      *
      * @return минимальная группа или null, если коллекция пуста
      */
     public StudyGroup findMin() {
-        return collection.stream()
-                .min(StudyGroup::compareTo)
-                .orElse(null);
+        return read(() -> naturalOrder().first());
+    }
+
+    /**
+     * Возвращает наименьшие группы в естественном порядке.
+     *
+     * @param limit максимальное количество групп
+     * @return ленивый поток групп по возрастанию
+     */
+    public Stream<StudyGroup> getLowest(int limit) {
+        return ordered(NaturalOrderIndex::ascending, limit);
+    }
+
+    /**
+     * Возвращает наибольшие группы в естественном порядке.
+     *
+     * @param limit максимальное количество групп
+     * @return ленивый поток групп по убыванию
+     */
+    public Stream<StudyGroup> getHighest(int limit) {
+        return ordered(NaturalOrderIndex::descending, limit);
+    }
+
+    /**
+     * Возвращает группы с количеством студентов в заданном диапазоне в естественном порядке.
+     *
+     * @param minStudentsCount нижняя граница (включительно)
+     * @param maxStudentsCount верхняя граница (включительно)
+     * @return ленивый поток групп по возрастанию
+     */
+    public Stream<StudyGroup> getByStudentsCountBetween(int minStudentsCount,
+            int maxStudentsCount) {
+        return ordered(index -> index.betweenStudentsCount(minStudentsCount, maxStudentsCount),
+                Integer.MAX_VALUE);
+    }
+
+    /**
+     * Возвращает ленивый поток групп представления индекса естественного порядка.
+     * Группы не собираются в список: в однопоточном режиме поток обходит индекс напрямую,
+     * а в конкурентном копирует под блокировкой чтения по {@code ORDERED_CHUNK} групп
+     * и продолжает обход с последней скопированной, поэтому память не зависит от размера
+     * результата, а изменения не ждут, пока результат выводится. Изменения между частями
+     * могут попасть в еще не пройденную часть потока.
+     *
+     * @param view представление индекса
+     * @param limit максимальное количество групп
+     * @return ленивый поток групп
+     */
+    private Stream<StudyGroup> ordered(
+            Function<NaturalOrderIndex, NavigableMap<StudyGroup, Object>> view, int limit) {
+        final Iterator<StudyGroup> groups = isConcurrent()
+                ? new OrderedChunks(view, Math.min(limit, ORDERED_CHUNK))
+                : NaturalOrderIndex.groups(view.apply(naturalOrder()));
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(groups,
+                Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .limit(limit);
+    }
+
+    /**
+     * Обход представления индекса естественного порядка частями, каждая из которых
+     * копируется под блокировкой чтения.
+     */
+    private final class OrderedChunks implements Iterator<StudyGroup> {
+        private final Function<NaturalOrderIndex, NavigableMap<StudyGroup, Object>> view;
+        private final int chunkSize;
+        private final List<StudyGroup> chunk = new ArrayList<>();
+        private int position;
+        /** Ключ последней скопированной корзины. */
+        private StudyGroup last;
+        private boolean exhausted;
+
+        OrderedChunks(Function<NaturalOrderIndex, NavigableMap<StudyGroup, Object>> view,
+                int chunkSize) {
+            this.view = view;
+            this.chunkSize = Math.max(chunkSize, 1);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (position < chunk.size()) {
+                return true;
+            }
+            if (exhausted) {
+                return false;
+            }
+            chunk.clear();
+            position = 0;
+            final StudyGroup after = last;
+            last = read(() -> NaturalOrderIndex.copy(view.apply(naturalOrder()), after,
+                    chunkSize, chunk));
+            exhausted = last == null;
+            return !chunk.isEmpty();
+        }
+
+        @Override
+        public StudyGroup next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return chunk.get(position++);
+        }
     }
 
     /**
@@ -143,10 +504,15 @@ public class StudyGroupCollection {
      * @return найденная группа или null, если группа не найдена
      */
     public StudyGroup findById(long id) {
-        return collection.stream()
-                .filter(group -> group.getId() == id)
-                .findFirst()
-                .orElse(null);
+        return read(() -> {
+            final Indexes committed = committedIndexes();
+            if (committed != null) {
+                final long label = committed.idIndex.get(id);
+                return label < 0 ? null : RankTree.valueOf(committed.root, label);
+            }
+            final long label = idIndex.get(id);
+            return label < 0 ? null : collection.valueOf(label);
+        });
     }
 
     /**
@@ -154,11 +520,15 @@ public class StudyGroupCollection {
      *
      * @param index индекс группы для обновления
      * @param group новая группа
+     * @throws IllegalArgumentException если ID новой группы принадлежит другой группе
      */
     public void set(int index, StudyGroup group) {
-        if (index >= 0 && index < collection.size()) {
-            collection.set(index, group);
-        }
+        change(() -> {
+            if (index >= 0 && index < collection.size()) {
+                replace(collection.labelAt(index), group);
+                changed(listener -> listener.replaced(index, group));
+            }
+        });
     }
 
     /**
@@ -168,7 +538,16 @@ public class StudyGroupCollection {
      * @return индекс группы или -1, если группа не найдена
      */
     public int indexOf(StudyGroup group) {
-        return collection.indexOf(group);
+        return read(() -> {
+            final Indexes committed = committedIndexes();
+            final RankTree.Node root = committed != null ? committed.root : collection.root();
+            final long label = (committed != null ? committed.idIndex : idIndex)
+                    .get(group.getId());
+            if (label >= 0 && RankTree.valueOf(root, label) == group) {
+                return RankTree.rankOf(root, label);
+            }
+            return RankTree.asList(root).indexOf(group);
+        });
     }
 
     /**
@@ -176,13 +555,10 @@ public class StudyGroupCollection {
      *
      * @param index индекс для вставки
      * @param group группа для вставки
+     * @throws IllegalArgumentException если группа с таким ID уже есть в коллекции
      */
     public void insertAt(int index, StudyGroup group) {
-        if (index >= collection.size()) {
-            collection.add(group);
-        } else {
-            collection.insertElementAt(group, index);
-        }
+        change(() -> insertAtUnlocked(index, group));
     }
 
     /**
@@ -191,7 +567,7 @@ public class StudyGroupCollection {
      * @return размер коллекции
      */
     public int size() {
-        return collection.size();
+        return RankTree.size(visibleRoot());
     }
 
     /**
@@ -201,52 +577,95 @@ public class StudyGroupCollection {
      * @return группа по указанному индексу или null, если индекс вне диапазона
      */
     public StudyGroup get(int index) {
-        return (index >= 0 && index < collection.size()) ? collection.get(index) : null;
+        final RankTree.Node snapshot = visibleRoot();
+        return (index >= 0 && index < RankTree.size(snapshot))
+                ? RankTree.nodeAt(snapshot, index).value
+                : null;
     }
 
     /**
      * Группирует элементы по администратору группы и возвращает кол-во элементов в каждой группе.
+     * В однопоточном режиме возвращается представление без копирования,
+     * в конкурентном — копия, снятая под блокировкой чтения.
      *
-     * @return map, где ключ - имя администратора, значение - кол-во групп с этим администратором
+     * @return неизменяемый map, где ключ - имя администратора,
+     *     значение - кол-во групп с этим администратором
      */
     public Map<String, Long> groupCountingByGroupAdmin() {
-        return collection.stream()
-                .filter(group -> group.getGroupAdmin() != null)
-                .collect(Collectors.groupingBy(
-                        group -> group.getGroupAdmin().getName(),
-                        Collectors.counting()));
+        if (!isConcurrent()) {
+            return groupAdminIndex().countsByName();
+        }
+        return read(() -> new HashMap<>(groupAdminIndex().countsByName()));
+    }
+
+    /**
+     * Возвращает наибольший ID, когда-либо бывший в коллекции, включая ID удаленных групп
+     * и ID, зарезервированные через {@link #reserveIds(long)}. Значение поддерживается
+     * при каждом добавлении, поэтому не требует обхода коллекции.
+     *
+     * @return наибольший ID или 0, если в коллекции не было групп
+     */
+    public long getHighestId() {
+        return highestId;
+    }
+
+    /**
+     * Возвращает поколение ID коллекции. Оно увеличивается, когда ID попадают в коллекцию
+     * не через генератор ID: при загрузке через {@link #loadFrom} и резервировании через
+     * {@link #reserveIds(long)}. Пока поколение не изменилось, новые ID в коллекции
+     * появляются только от генератора.
+     *
+     * @return поколение ID
+     */
+    public long getIdGeneration() {
+        return idGeneration;
     }
 
     /**
-     * Возвращает максимальный ID в коллекции.
+     * Резервирует ID до указанного включительно, например, сохраненную вместе
+     * с коллекцией отметку: такие ID больше не будут считаться свободными.
      *
-     * @return максимальный ID или 0, если коллекция пуста
+     * @param id наибольший занятый ID
      */
-    public long getMaxId() {
-        return collection.stream()
-                .mapToLong(StudyGroup::getId)
-                .max()
-                .orElse(0);
+    public void reserveIds(long id) {
+        write(() -> {
+            if (id > highestId) {
+                highestId = id;
+                idGeneration++;
+            }
+        });
     }
 
     /**
      * Возвращает коллекцию учебных групп.
-     * Этот метод должен использоваться только для сохранения коллекции.
+     * Результат — согласованный неизменяемый снимок, полученный без блокировок:
+     * последующие изменения коллекции на него не влияют. Другим потокам, кроме начавшего
+     * пакет изменений, снимок показывает коллекцию до начала пакета.
      *
-     * @return вектор с учебными группами
+     * @return неизменяемый список с учебными группами на момент вызова
      */
-    public Vector<StudyGroup> getCollection() {
-        return collection;
+    public CollectionSnapshot getCollection() {
+        final RankTree.Node root = visibleRoot();
+        // Отметка читается после корня, поэтому она не меньше ID групп снимка
+        return new CollectionSnapshot(root, highestId);
     }
 
     /**
-     * Устанавливает новую коллекцию учебных групп.
+     * Возвращает снимок коллекции, атомарно выполняя вместе с ним действие:
+     * изменения, сделанные до действия, попадут в снимок, а сделанные после — нет.
+     * Изменения открытого пакета в снимок не попадают: слушатель получит их при применении
+     * пакета, то есть после действия.
      *
-     * @param newCollection новая коллекция для установки
+     * @param action действие, выполняемое в момент снимка
+     * @return неизменяемый список с учебными группами на момент вызова
      */
-    private void setCollection(Vector<StudyGroup> newCollection) {
-        collection.clear();
-        collection.addAll(newCollection);
+    public CollectionSnapshot checkpoint(Runnable action) {
+        return write(() -> {
+            action.run();
+            final Batch current = batch;
+            return new CollectionSnapshot(current != null ? current.root : collection.root(),
+                    highestId);
+        });
     }
 
     /**
@@ -256,14 +675,420 @@ public class StudyGroupCollection {
      * @throws IllegalArgumentException если в коллекции найдены дублирующиеся ID
      */
     public void loadFromVector(Vector<StudyGroup> loadedCollection) {
-        // Проверяем уникальность ID
-        final Set<Long> ids = new HashSet<>();
-        for (StudyGroup group : loadedCollection) {
-            if (!ids.add(group.getId())) {
+        loadFrom(loadedCollection.iterator());
+    }
+
+    /**
+     * Заменяет содержимое коллекции группами из итератора.
+     * Группы читаются по одному и сразу попадают в дерево и индексы, поэтому
+     * промежуточный список не нужен. При ошибке коллекция остается пустой.
+     *
+     * @param groups группы в порядке позиций
+     * @throws IllegalArgumentException если найдены дублирующиеся ID
+     */
+    public void loadFrom(Iterator<StudyGroup> groups) {
+        loadFrom(groups, null);
+    }
+
+    /**
+     * Заменяет содержимое коллекции группами из итератора с заданными метками позиций
+     * (см. {@link CollectionSnapshot}), например, сохраненными вместе с группами.
+     * При ошибке коллекция остается пустой.
+     *
+     * @param groups группы в порядке позиций
+     * @param labels метки групп в том же порядке или null, чтобы назначить новые
+     * @throws IllegalArgumentException если найдены дублирующиеся ID,
+     *     метки не возрастают строго или этим потоком открыт пакет изменений
+     */
+    public void loadFrom(Iterator<StudyGroup> groups, PrimitiveIterator.OfLong labels) {
+        write(() -> {
+            awaitForeignBatch();
+            if (batch != null) {
                 throw new IllegalArgumentException(
-                    "Ошибка загрузки: найден дублирующийся ID " + group.getId());
+                    "Загрузка коллекции недоступна, пока открыт пакет изменений");
             }
+            clearUnlocked();
+            try {
+                final long[] label = {-1};
+                collection.rebuild(new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return groups.hasNext();
+                    }
+
+                    @Override
+                    public StudyGroup next() {
+                        final StudyGroup group = groups.next();
+                        final long next;
+                        if (labels != null) {
+                            next = labels.nextLong();
+                        } else {
+                            next = label[0] < 0 ? RankTree.ORIGIN : label[0] + RankTree.GAP;
+                        }
+                        if (next <= label[0]) {
+                            throw new IllegalArgumentException(
+                                "Ошибка загрузки: метки позиций должны возрастать");
+                        }
+                        label[0] = next;
+                        if (idIndex.putIfAbsent(group.getId(), next) >= 0) {
+                            throw new IllegalArgumentException(
+                                "Ошибка загрузки: найден дублирующийся ID " + group.getId());
+                        }
+                        indexAdded(group);
+                        return group;
+                    }
+                }, () -> label[0]);
+            } catch (RuntimeException e) {
+                clearUnlocked();
+                throw e;
+            } finally {
+                idGeneration++;
+            }
+        });
+    }
+
+    private void clearUnlocked() {
+        collection.clear();
+        idIndex.clear();
+        naturalOrder.clear();
+        studentsCountHistogram.clear();
+        groupAdminIndex.clear();
+    }
+
+    private void insertAtUnlocked(int index, StudyGroup group) {
+        if (idIndex.get(group.getId()) >= 0) {
+            throw new IllegalArgumentException(
+                    "Группа с ID " + group.getId() + " уже есть в коллекции");
         }
-        setCollection(loadedCollection);
+        final int rank = Math.max(0, Math.min(index, collection.size()));
+        long label = collection.labelForInsert(rank);
+        if (label < 0) {
+            label = collection.spread(rank, (from, to, moved) -> {
+                if (idIndex.get(moved.getId()) == from) {
+                    putId(moved.getId(), to);
+                }
+            });
+        }
+        collection.insert(label, group);
+        putId(group.getId(), label);
+        indexAdded(group);
+        changed(listener -> listener.inserted(rank, group));
+    }
+
+    /**
+     * Учитывает выполненное изменение: сообщает о нем слушателю или, если открыт пакет,
+     * откладывает уведомление до его применения.
+     *
+     * @param event уведомление слушателя
+     */
+    private void changed(Consumer<CollectionListener> event) {
+        final Batch current = batch;
+        if (current != null) {
+            current.modifications++;
+            if (listener != null) {
+                current.events.add(event);
+            }
+            return;
+        }
+        modifications++;
+        if (listener != null) {
+            event.accept(listener);
+        }
+    }
+
+    /**
+     * Запоминает действие, отменяющее изменение индекса, если открыт пакет.
+     *
+     * @param action отменяющее действие
+     */
+    private void undoable(Runnable action) {
+        final Batch current = batch;
+        if (current != null && !current.rebuildOnRollback) {
+            current.undo.add(action);
+        }
+    }
+
+    private void putId(long id, long label) {
+        final long previous = idIndex.put(id, label);
+        undoable(() -> {
+            if (previous < 0) {
+                idIndex.remove(id);
+            } else {
+                idIndex.put(id, previous);
+            }
+        });
+    }
+
+    private long removeId(long id) {
+        final long previous = idIndex.remove(id);
+        if (previous >= 0) {
+            undoable(() -> idIndex.put(id, previous));
+        }
+        return previous;
+    }
+
+    /**
+     * Выполняет изменение под блокировкой записи. Вне пакета при установленном слушателе
+     * изменение выполняется как пакет из одного изменения, чтобы его можно было отменить,
+     * если слушатель не примет уведомление.
+     *
+     * @param action изменение
+     * @return результат изменения
+     */
+    private <T> T change(Supplier<T> action) {
+        return write(() -> {
+            awaitForeignBatch();
+            if (batch != null || listener == null) {
+                return action.get();
+            }
+            batch = new Batch(Thread.currentThread(), collection.root());
+            final T result;
+            try {
+                result = action.get();
+            } catch (RuntimeException e) {
+                undo(finishBatch());
+                throw e;
+            }
+            publish(finishBatch(), false);
+            return result;
+        });
+    }
+
+    private void change(Runnable action) {
+        change(() -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * Передает слушателю уведомления завершенного пакета и учитывает его изменения.
+     * Если слушатель выбросил исключение, изменения пакета отменяются.
+     *
+     * @param current завершенный пакет
+     * @param grouped true, если слушателю сообщается о начале и конце пакета
+     */
+    private void publish(Batch current, boolean grouped) {
+        if (listener != null && !current.events.isEmpty()) {
+            try {
+                if (grouped) {
+                    listener.batchStarted();
+                }
+                try {
+                    for (Consumer<CollectionListener> event : current.events) {
+                        event.accept(listener);
+                    }
+                } finally {
+                    if (grouped) {
+                        listener.batchFinished();
+                    }
+                }
+            } catch (RuntimeException e) {
+                undo(current);
+                throw e;
+            }
+        }
+        modifications += current.modifications;
+    }
+
+    /**
+     * Возвращает коллекцию в состояние до начала завершенного пакета.
+     *
+     * @param current завершенный пакет
+     */
+    private void undo(Batch current) {
+        collection.restore(current.root);
+        if (current.rebuildOnRollback) {
+            rebuildIndexes();
+        } else {
+            for (int i = current.undo.size() - 1; i >= 0; i--) {
+                current.undo.get(i).run();
+            }
+        }
+    }
+
+    private Batch finishBatch() {
+        final Batch current = batch;
+        if (current == null) {
+            throw new IllegalArgumentException("Пакет изменений не начат");
+        }
+        batch = null;
+        if (batchFinished != null) {
+            batchFinished.signalAll();
+        }
+        return current;
+    }
+
+    /**
+     * Ждет окончания пакета изменений, открытого другим потоком. Вызывается под
+     * блокировкой записи, которая на время ожидания освобождается.
+     *
+     * @throws IllegalArgumentException если коллекция однопоточная или ожидание прервано
+     */
+    private void awaitForeignBatch() {
+        Batch current = batch;
+        while (current != null && current.owner != Thread.currentThread()) {
+            if (batchFinished == null) {
+                throw new IllegalArgumentException("Пакет изменений открыт другим потоком");
+            }
+            try {
+                batchFinished.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalArgumentException("Ожидание окончания пакета изменений прервано");
+            }
+            current = batch;
+        }
+    }
+
+    /**
+     * Перестраивает индексы по дереву позиций.
+     */
+    private void rebuildIndexes() {
+        final RankTree.Node root = collection.root();
+        idIndex = new LongHashMap(RankTree.size(root));
+        naturalOrder.clear();
+        studentsCountHistogram.clear();
+        groupAdminIndex.clear();
+        RankTree.diff(null, root, new CollectionSnapshot.ChangeVisitor() {
+            @Override
+            public void removed(long label, StudyGroup group) {
+            }
+
+            @Override
+            public void added(long label, StudyGroup group) {
+                idIndex.put(group.getId(), label);
+                indexAdded(group);
+            }
+        });
+    }
+
+    /**
+     * Заменяет группу с заданной меткой позиции и обновляет индексы.
+     *
+     * @param label метка позиции
+     * @param group новая группа
+     */
+    private void replace(long label, StudyGroup group) {
+        final long existing = idIndex.get(group.getId());
+        if (existing >= 0 && existing != label) {
+            throw new IllegalArgumentException(
+                    "Группа с ID " + group.getId() + " уже есть в коллекции");
+        }
+        final StudyGroup old = collection.replace(label, group);
+        if (idIndex.get(old.getId()) == label) {
+            removeId(old.getId());
+        }
+        putId(group.getId(), label);
+        indexRemoved(old);
+        indexAdded(group);
+    }
+
+    /**
+     * Добавляет группу во вторичные индексы.
+     *
+     * @param group добавленная группа
+     */
+    private void indexAdded(StudyGroup group) {
+        if (group.getId() > highestId) {
+            highestId = group.getId();
+        }
+        naturalOrder.add(group);
+        studentsCountHistogram.add(group.getStudentsCount());
+        groupAdminIndex.add(group.getGroupAdmin());
+        undoable(() -> indexRemoved(group));
+    }
+
+    /**
+     * Удаляет группу из вторичных индексов.
+     *
+     * @param group удаленная группа
+     */
+    private void indexRemoved(StudyGroup group) {
+        naturalOrder.remove(group);
+        studentsCountHistogram.remove(group.getStudentsCount());
+        groupAdminIndex.remove(group.getGroupAdmin());
+        undoable(() -> indexAdded(group));
+    }
+
+    /**
+     * Возвращает корень дерева, видимый текущему потоку: пока пакет изменений открыт
+     * другим потоком — корень до начала пакета.
+     */
+    private RankTree.Node visibleRoot() {
+        final Batch current = batch;
+        return current != null && current.owner != Thread.currentThread()
+                ? current.root
+                : collection.root();
+    }
+
+    /**
+     * Возвращает индексы до начала пакета, если пакет открыт другим потоком, иначе null.
+     * Индексы строятся при первом обращении. Вызывается под блокировкой чтения,
+     * поэтому пакет не может завершиться во время вызова.
+     */
+    private Indexes committedIndexes() {
+        final Batch current = batch;
+        if (current == null || current.owner == Thread.currentThread()) {
+            return null;
+        }
+        synchronized (current) {
+            if (current.committed == null) {
+                current.committed = new Indexes(current.root);
+            }
+            return current.committed;
+        }
+    }
+
+    private NaturalOrderIndex naturalOrder() {
+        final Indexes committed = committedIndexes();
+        return committed != null ? committed.naturalOrder : naturalOrder;
+    }
+
+    private StudentsCountHistogram studentsCountHistogram() {
+        final Indexes committed = committedIndexes();
+        return committed != null ? committed.studentsCountHistogram : studentsCountHistogram;
+    }
+
+    private GroupAdminIndex groupAdminIndex() {
+        final Indexes committed = committedIndexes();
+        return committed != null ? committed.groupAdminIndex : groupAdminIndex;
+    }
+
+    /**
+     * Выполняет чтение индексов, в конкурентном режиме — под блокировкой чтения.
+     */
+    private <T> T read(Supplier<T> action) {
+        if (lock == null) {
+            return action.get();
+        }
+        lock.readLock().lock();
+        try {
+            return action.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Выполняет изменение, в конкурентном режиме — под блокировкой записи.
+     */
+    private <T> T write(Supplier<T> action) {
+        if (lock == null) {
+            return action.get();
+        }
+        lock.writeLock().lock();
+        try {
+            return action.get();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void write(Runnable action) {
+        write(() -> {
+            action.run();
+            return null;
+        });
     }
 }
@@ -0,0 +1,220 @@
+package util;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import model.StudyGroupCollection;
+
+/**
+ * Автосохранение коллекции.
+ *
+ * <p>Планировщик раз в секунду сравнивает счетчик изменений коллекции со счетчиком
+ * последнего сохранения и запускает фоновое сохранение (см. {@link BackgroundSaver}),
+ * если несохраненных изменений накопилось не меньше порога или самое раннее из них
+ * сделано больше заданного интервала назад. Пока сохранение выполняется, новое
+ * не запускается, поэтому серия изменений записывается одним сохранением.
+ *
+ * <p>Пороги задаются переменными окружения {@value #MUTATIONS_VARIABLE}
+ * (количество изменений) и {@value #INTERVAL_VARIABLE} (секунды); значение 0
+ * отключает соответствующее условие.
+ */
+public class AutoSaver {
+
+    /** Переменная окружения с порогом количества изменений. */
+    public static final String MUTATIONS_VARIABLE = "LAB5_AUTOSAVE_MUTATIONS";
+    /** Переменная окружения с интервалом в секундах. */
+    public static final String INTERVAL_VARIABLE = "LAB5_AUTOSAVE_INTERVAL";
+
+    private static final long DEFAULT_MUTATIONS = 1000;
+    private static final long DEFAULT_INTERVAL_SECONDS = 60;
+    private static final long TICK_MILLIS = 1000;
+    /** Пауза перед повтором после неудачного автосохранения. */
+    private static final long RETRY_DELAY_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    private final StudyGroupCollection collection;
+    private final BackgroundSaver saver;
+    private final long mutationThreshold;
+    private final Duration interval;
+    private ScheduledExecutorService scheduler;
+
+    private long dirtySince;
+    private boolean dirty;
+    private long retryAfter;
+    private long triggered;
+    private long byMutations;
+    private long byInterval;
+    private long failed;
+
+    /**
+     * Конструктор автосохранения.
+     *
+     * @param collection коллекция
+     * @param saver фоновое сохранение коллекции
+     * @param mutationThreshold количество несохраненных изменений, после которого
+     *     коллекция сохраняется, или 0
+     * @param interval наибольшее время хранения несохраненного изменения или
+     *     {@link Duration#ZERO}
+     * @throws IllegalArgumentException если порог или интервал отрицательны
+     */
+    public AutoSaver(StudyGroupCollection collection, BackgroundSaver saver,
+            long mutationThreshold, Duration interval) {
+        if (mutationThreshold < 0 || interval.isNegative()) {
+            throw new IllegalArgumentException(
+                    "Пороги автосохранения не могут быть отрицательными");
+        }
+        this.collection = collection;
+        this.saver = saver;
+        this.mutationThreshold = mutationThreshold;
+        this.interval = interval;
+    }
+
+    /**
+     * Создает автосохранение с порогами из переменных окружения. Некорректные
+     * значения заменяются значениями по умолчанию с предупреждением.
+     *
+     * @param collection коллекция
+     * @param saver фоновое сохранение коллекции
+     * @return автосохранение
+     */
+    public static AutoSaver fromEnvironment(StudyGroupCollection collection,
+            BackgroundSaver saver) {
+        final long mutations = readVariable(MUTATIONS_VARIABLE, DEFAULT_MUTATIONS);
+        final long seconds = readVariable(INTERVAL_VARIABLE, DEFAULT_INTERVAL_SECONDS);
+        return new AutoSaver(collection, saver, mutations, Duration.ofSeconds(seconds));
+    }
+
+    private static long readVariable(String name, long defaultValue) {
+        final String value = System.getenv(name);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            final long parsed = Long.parseLong(value.trim());
+            if (parsed >= 0) {
+                return parsed;
+            }
+        } catch (NumberFormatException e) {
+            // Ниже выводится предупреждение
+        }
+        System.err.println("Переменная окружения " + name + " должна быть неотрицательным "
+                + "целым числом; используется значение по умолчанию " + defaultValue);
+        return defaultValue;
+    }
+
+    /**
+     * Проверяет, включено ли автосохранение.
+     *
+     * @return true, если задан хотя бы один порог
+     */
+    public boolean isEnabled() {
+        return mutationThreshold > 0 || !interval.isZero();
+    }
+
+    /**
+     * Запускает планировщик автосохранения, если оно включено.
+     */
+    public synchronized void start() {
+        if (scheduler != null || !isEnabled()) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            final Thread thread = new Thread(task, "collection-autosave");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::check, TICK_MILLIS, TICK_MILLIS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Останавливает планировщик. Уже запущенное сохранение завершается.
+     */
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Проверяет пороги и при необходимости запускает сохранение.
+     */
+    synchronized void check() {
+        final long unsaved = collection.getModificationCount() - saver.getSavedModificationCount();
+        final long now = System.nanoTime();
+        if (unsaved <= 0) {
+            dirty = false;
+            return;
+        }
+        if (!dirty) {
+            dirty = true;
+            dirtySince = now;
+        }
+        if (saver.isBusy() || now - retryAfter < 0) {
+            return;
+        }
+        final boolean mutationsReached = mutationThreshold > 0 && unsaved >= mutationThreshold;
+        final boolean intervalReached = !interval.isZero()
+                && now - dirtySince >= interval.toNanos();
+        if (!mutationsReached && !intervalReached) {
+            return;
+        }
+        triggered++;
+        if (mutationsReached) {
+            byMutations++;
+        } else {
+            byInterval++;
+        }
+        // Изменения, сделанные во время сохранения, отсчитываются заново
+        dirty = false;
+        final CompletableFuture<String> result = saver.requestSave();
+        result.whenComplete((message, error) -> {
+            if (error != null) {
+                onFailure();
+            }
+        });
+    }
+
+    private synchronized void onFailure() {
+        failed++;
+        retryAfter = System.nanoTime() + RETRY_DELAY_NANOS;
+    }
+
+    /**
+     * Возвращает описание настроек и счетчиков автосохранения.
+     *
+     * @return метрики автосохранения
+     */
+    public synchronized String getMetrics() {
+        if (!isEnabled()) {
+            return "Автосохранение: отключено";
+        }
+        final long unsaved = Math.max(0,
+                collection.getModificationCount() - saver.getSavedModificationCount());
+        final StringBuilder metrics = new StringBuilder("Автосохранение: ");
+        if (mutationThreshold > 0) {
+            metrics.append("каждые ").append(mutationThreshold).append(" изменений");
+        }
+        if (!interval.isZero()) {
+            metrics.append(mutationThreshold > 0 ? " или " : "")
+                    .append("не позже ").append(interval.getSeconds())
+                    .append(" с после изменения");
+        }
+        metrics.append("\nНесохраненных изменений: ").append(unsaved);
+        if (unsaved > 0 && dirty) {
+            metrics.append(" (старейшему ")
+                    .append(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - dirtySince))
+                    .append(" с)");
+        }
+        metrics.append("\nАвтосохранений: ").append(triggered)
+                .append(" (по количеству изменений: ").append(byMutations)
+                .append(", по времени: ").append(byInterval)
+                .append("), неудачных: ").append(failed);
+        if (saver.getLastFinished() != null) {
+            metrics.append("\nПоследнее сохранение: ").append(saver.getLastFinished());
+        }
+        return metrics.toString();
+    }
+}
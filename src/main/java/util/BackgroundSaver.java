@@ -0,0 +1,266 @@
+package util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import model.StudyGroupCollection;
+
+/**
+ * Сохранение коллекции в фоновом потоке.
+ *
+ * <p>Сохранение берет снимок коллекции за O(1) (см. {@link model.CollectionSnapshot})
+ * и записывает его в отдельном потоке, поэтому консоль не ждет записи файла,
+ * а изменения, сделанные во время записи, в этот снимок не попадают. Файл пишется
+ * во временный файл и атомарно переименовывается (см. {@link FileManager}).
+ *
+ * <p>Сохранения выполняются по одному. Запросы, поступившие, пока сохранение ждет
+ * своей очереди, объединяются с ним: снимок берется в момент начала записи и
+ * содержит все изменения, сделанные до каждого из этих запросов.
+ *
+ * <p>Уплотнение журнала, которого требует команда (например, после импорта),
+ * тоже выполняется здесь, а не в потоке консоли, поэтому оно не пересекается
+ * с другими сохранениями и обновляет счетчик сохраненных изменений.
+ */
+public class BackgroundSaver {
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+    private final String fileName;
+    private final StudyGroupCollection collection;
+    private final FileManager fileManager;
+    private final Journal journal;
+    private final ExecutorService executor;
+
+    private CompletableFuture<String> queued;
+    /** Ожидающее сохранение должно уплотнить журнал, даже если он невелик. */
+    private boolean compactionQueued;
+    private LocalDateTime runningSince;
+    private LocalDateTime lastFinished;
+    private long lastDurationMillis;
+    private String lastResult;
+    private String lastError;
+    private long requests;
+    private long coalesced;
+    private long completed;
+    private volatile long savedModifications;
+
+    /**
+     * Конструктор фонового сохранения.
+     *
+     * @param fileName имя файла коллекции
+     * @param collection коллекция
+     * @param fileManager менеджер файлов для записи снимка
+     * @param journal журнал изменений коллекции или null
+     */
+    public BackgroundSaver(String fileName, StudyGroupCollection collection,
+            FileManager fileManager, Journal journal) {
+        this.fileName = fileName;
+        this.collection = collection;
+        this.fileManager = fileManager;
+        this.journal = journal;
+        this.executor = Executors.newSingleThreadExecutor(task -> {
+            final Thread thread = new Thread(task, "collection-saver");
+            // Не мешает завершению программы: последнее сохранение ждет обработчик завершения
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Запрашивает сохранение коллекции. Если сохранение уже ждет очереди,
+     * запрос объединяется с ним.
+     *
+     * @return результат сохранения: сообщение или исключение {@link IOException}
+     */
+    public CompletableFuture<String> requestSave() {
+        return requestSave(false);
+    }
+
+    /**
+     * Запрашивает сохранение коллекции. Если сохранение уже ждет очереди,
+     * запрос объединяется с ним.
+     *
+     * @param compact true, чтобы при журнале изменений записать полный снимок
+     *     и уплотнить журнал независимо от его размера
+     * @return результат сохранения: сообщение или исключение {@link IOException}
+     */
+    public synchronized CompletableFuture<String> requestSave(boolean compact) {
+        requests++;
+        compactionQueued |= compact;
+        if (queued != null) {
+            coalesced++;
+            return queued;
+        }
+        final CompletableFuture<String> result = new CompletableFuture<>();
+        queued = result;
+        executor.execute(() -> run(result));
+        return result;
+    }
+
+    /**
+     * Сохраняет коллекцию в текущем потоке, дождавшись уже запрошенных сохранений.
+     *
+     * @return сообщение о результате
+     * @throws IOException если произошла ошибка при записи
+     */
+    public String saveAndWait() throws IOException {
+        return saveAndWait(false);
+    }
+
+    /**
+     * Сохраняет коллекцию в текущем потоке, дождавшись уже запрошенных сохранений.
+     *
+     * @param compact true, чтобы при журнале изменений записать полный снимок
+     *     и уплотнить журнал независимо от его размера
+     * @return сообщение о результате
+     * @throws IOException если произошла ошибка при записи
+     */
+    public String saveAndWait(boolean compact) throws IOException {
+        try {
+            return requestSave(compact).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Проверяет, выполняется ли или ждет очереди сохранение.
+     *
+     * @return true, если сохранение не завершено
+     */
+    public synchronized boolean isBusy() {
+        return queued != null || runningSince != null;
+    }
+
+    /**
+     * Возвращает значение счетчика изменений коллекции (см.
+     * {@link StudyGroupCollection#getModificationCount()}), при котором был взят снимок
+     * последнего успешного сохранения. Изменения после него еще не сохранены.
+     *
+     * @return счетчик изменений на момент последнего сохранения
+     */
+    public long getSavedModificationCount() {
+        return savedModifications;
+    }
+
+    /**
+     * Проверяет, завершилось ли последнее сохранение ошибкой.
+     *
+     * @return true, если последнее сохранение не удалось
+     */
+    public synchronized boolean hasFailed() {
+        return lastError != null;
+    }
+
+    /**
+     * Возвращает время завершения последнего сохранения.
+     *
+     * @return время или null, если сохранений не было
+     */
+    public synchronized LocalDateTime getLastFinished() {
+        return lastFinished;
+    }
+
+    /**
+     * Возвращает описание состояния фонового сохранения.
+     *
+     * @return состояние сохранения
+     */
+    public synchronized String getStatus() {
+        final StringBuilder status = new StringBuilder();
+        if (runningSince != null) {
+            status.append("Сохранение выполняется с ").append(TIME_FORMAT.format(runningSince));
+        } else {
+            status.append("Сохранение не выполняется");
+        }
+        if (queued != null) {
+            status.append(", следующее ждет очереди");
+        }
+        status.append('\n');
+        if (lastFinished == null) {
+            status.append("Сохранений в этом сеансе не было");
+        } else {
+            status.append("Последнее сохранение завершено в ")
+                    .append(TIME_FORMAT.format(lastFinished))
+                    .append(" за ").append(lastDurationMillis).append(" мс: ")
+                    .append(lastError != null ? "ошибка: " + lastError : lastResult);
+        }
+        status.append('\n').append("Запросов: ").append(requests)
+                .append(", объединено с ожидающими: ").append(coalesced)
+                .append(", выполнено сохранений: ").append(completed);
+        return status.toString();
+    }
+
+    private void run(CompletableFuture<String> result) {
+        final long started;
+        final boolean compact;
+        synchronized (this) {
+            // Дальнейшие запросы требуют нового снимка
+            queued = null;
+            compact = compactionQueued;
+            compactionQueued = false;
+            runningSince = LocalDateTime.now();
+            started = System.nanoTime();
+        }
+        // Счетчик читается до снимка: изменение между ними попадет в снимок,
+        // но будет считаться несохраненным, что лишь вызовет лишнее сохранение
+        final long modifications = collection.getModificationCount();
+        String message = null;
+        Exception error = null;
+        try {
+            message = save(compact);
+            savedModifications = modifications;
+        } catch (IOException | RuntimeException e) {
+            error = e instanceof UncheckedIOException ? ((UncheckedIOException) e).getCause() : e;
+        }
+        synchronized (this) {
+            runningSince = null;
+            lastFinished = LocalDateTime.now();
+            lastDurationMillis = (System.nanoTime() - started) / 1_000_000;
+            lastResult = message;
+            lastError = error != null ? error.getMessage() : null;
+            completed++;
+        }
+        if (error != null) {
+            System.err.println("Ошибка фонового сохранения: " + error.getMessage());
+            result.completeExceptionally(error);
+        } else {
+            result.complete(message);
+        }
+    }
+
+    /**
+     * Сохраняет коллекцию: при журнале изменений сбрасывает журнал на диск или уплотняет
+     * его, иначе записывает снимок в файл коллекции.
+     *
+     * @param compact true, если журнал нужно уплотнить независимо от его размера
+     */
+    private String save(boolean compact) throws IOException {
+        if (journal != null) {
+            // Сегментированная коллекция уплотняется всегда: перезаписываются
+            // только измененные сегменты
+            if (!compact && !journal.needsCompaction(collection.size())
+                    && !fileManager.isSegmentManifest(fileName)) {
+                journal.sync();
+                return "Изменения сохранены в журнал (записей после последнего снимка: "
+                        + journal.getRecords() + ")";
+            }
+            final File savedFile = journal.compact(collection, fileManager);
+            return "Коллекция успешно сохранена в файл: " + savedFile.getAbsolutePath();
+        }
+        final File savedFile = fileManager.saveCollection(fileName, collection.getCollection());
+        return "Коллекция успешно сохранена в файл: " + savedFile.getAbsolutePath();
+    }
+}
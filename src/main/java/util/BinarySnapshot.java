@@ -0,0 +1,524 @@
+package util;
+
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import model.Color;
+import model.Coordinates;
+import model.FormOfEducation;
+import model.Person;
+import model.StudyGroup;
+
+/**
+ * Двоичный формат снимка коллекции.
+ *
+ * <p>Заголовок: сигнатура {@link #MAGIC}, версия формата и количество групп.
+ * Далее группы записываются подряд полями фиксированной ширины. Даты хранятся
+ * как секунды и наносекунды эпохи (creationDate, в UTC) и миллисекунды эпохи (birthday).
+ * Имена администраторов попадают в словарь при первом появлении, а затем
+ * записываются номером в словаре.
+ *
+ * <p>Начиная с версии 2 за записями следует таблица смещений (по одному long на группу)
+ * и концевик: смещение таблицы и сигнатура {@link #FOOTER_MAGIC}. Файл читается через
+ * отображение в память окнами по границам записей, поэтому размер снимка не ограничен
+ * размером одного отображения, а обрезанный файл обнаруживается до начала загрузки.
+ * Окна освобождаются сразу после чтения (см. {@link MappedBuffers}), чтобы загруженный
+ * файл можно было заменить при сохранении.
+ *
+ * <p>Версия 3 отличается только таблицей меток позиций (по одному long на группу)
+ * между записями и таблицей смещений. Она используется для сегментов
+ * (см. {@link SegmentStore}), где группы хранятся не в порядке позиций коллекции.
+ */
+final class BinarySnapshot {
+
+    /** Сигнатура файла: "SGBS". */
+    static final int MAGIC = 0x53474253;
+    /** Сигнатура концевика: "SGBE". */
+    static final int FOOTER_MAGIC = 0x53474245;
+    /** Текущая версия формата. */
+    static final int VERSION = 2;
+    /** Версия формата с таблицей меток позиций. */
+    static final int LABELED_VERSION = 3;
+
+    private static final int HEADER_BYTES = 3 * Integer.BYTES;
+    private static final int FOOTER_BYTES = Long.BYTES + Integer.BYTES;
+    /** Максимальный размер одного окна отображения. */
+    private static final long WINDOW_BYTES = 1L << 28;
+
+    private static final int HAS_COORDINATES = 1;
+    private static final int HAS_CREATION_DATE = 1 << 1;
+    private static final int HAS_ADMIN = 1 << 2;
+
+    private static final int NO_DATE = 0;
+    private static final int UTIL_DATE = 1;
+    private static final int SQL_DATE = 2;
+
+    private static final int NULL_REFERENCE = -1;
+    private static final int NULL_ORDINAL = -1;
+
+    private static final FormOfEducation[] FORMS = FormOfEducation.values();
+    private static final Color[] COLORS = Color.values();
+
+    private BinarySnapshot() {
+    }
+
+    /**
+     * Записывает снимок коллекции.
+     *
+     * @param stream буферизованный поток для записи
+     * @param groups группы в порядке позиций
+     * @throws IOException если произошла ошибка при записи
+     */
+    static void write(OutputStream stream, List<StudyGroup> groups) throws IOException {
+        write(stream, groups, null);
+    }
+
+    /**
+     * Записывает снимок групп вместе с метками их позиций (версия 3).
+     *
+     * @param stream буферизованный поток для записи
+     * @param groups группы
+     * @param labels метки групп в том же порядке или null, чтобы записать версию 2
+     * @throws IOException если произошла ошибка при записи
+     */
+    static void write(OutputStream stream, List<StudyGroup> groups, long[] labels)
+            throws IOException {
+        final CountingOutputStream counter = new CountingOutputStream(stream);
+        final DataOutputStream out = new DataOutputStream(counter);
+        final int count = groups.size();
+        out.writeInt(MAGIC);
+        out.writeInt(labels == null ? VERSION : LABELED_VERSION);
+        out.writeInt(count);
+        final long[] offsets = new long[count];
+        final Map<String, Integer> dictionary = new HashMap<>();
+        int i = 0;
+        for (StudyGroup group : groups) {
+            offsets[i++] = counter.position;
+            writeGroup(out, group, dictionary);
+        }
+        if (labels != null) {
+            for (int j = 0; j < count; j++) {
+                out.writeLong(labels[j]);
+            }
+        }
+        final long tableOffset = counter.position;
+        for (long offset : offsets) {
+            out.writeLong(offset);
+        }
+        out.writeLong(tableOffset);
+        out.writeInt(FOOTER_MAGIC);
+        out.flush();
+    }
+
+    /**
+     * Возвращает итератор, читающий группы из снимка по одной через отображение файла
+     * в память. Ошибки формата во время чтения сообщаются как {@link IllegalStateException}
+     * с причиной {@link IOException}. Отображение освобождается, когда прочитана последняя
+     * группа, а если обход прерван — при закрытии итератора.
+     *
+     * @param channel канал файла снимка
+     * @return итератор по группам в порядке позиций
+     * @throws IOException если файл не является снимком поддерживаемой версии или обрезан
+     */
+    static Records read(FileChannel channel) throws IOException {
+        final long size = channel.size();
+        if (size < HEADER_BYTES) {
+            throw new EOFException();
+        }
+        final ByteBuffer header = readAt(channel, 0, HEADER_BYTES);
+        if (header.getInt() != MAGIC) {
+            throw new IOException("Файл не является двоичным снимком коллекции");
+        }
+        final int version = header.getInt();
+        final int count = header.getInt();
+        if (count < 0) {
+            throw new IOException("Некорректное количество групп: " + count);
+        }
+        if (version == 1) {
+            // В первой версии нет таблицы смещений: записи занимают весь остаток файла
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Снимок версии 1 больше 2 ГБ не поддерживается");
+            }
+            final long[] offsets = {HEADER_BYTES, size};
+            return new Records(channel, count, offsets, false);
+        }
+        final long tableOffset = tableOffset(channel, version, count);
+        final long tableBytes = (long) count * Long.BYTES;
+        final long recordsEnd = version == LABELED_VERSION ? tableOffset - tableBytes : tableOffset;
+        final long[] offsets = new long[count + 1];
+        readAt(channel, tableOffset, tableBytes).asLongBuffer().get(offsets, 0, count);
+        offsets[count] = recordsEnd;
+        long previous = HEADER_BYTES;
+        for (long offset : offsets) {
+            if (offset < previous || offset > recordsEnd) {
+                throw new IOException("Таблица смещений повреждена");
+            }
+            previous = offset;
+        }
+        return new Records(channel, count, offsets, true);
+    }
+
+    /**
+     * Читает метки позиций из снимка версии 3.
+     *
+     * @param channel канал файла снимка
+     * @return метки групп в порядке записей
+     * @throws IOException если файл не является снимком с метками или обрезан
+     */
+    static long[] readLabels(FileChannel channel) throws IOException {
+        if (channel.size() < HEADER_BYTES) {
+            throw new EOFException();
+        }
+        final ByteBuffer header = readAt(channel, 0, HEADER_BYTES);
+        if (header.getInt() != MAGIC || header.getInt() != LABELED_VERSION) {
+            throw new IOException("Файл не является сегментом коллекции");
+        }
+        final int count = header.getInt();
+        if (count < 0) {
+            throw new IOException("Некорректное количество групп: " + count);
+        }
+        final long tableBytes = (long) count * Long.BYTES;
+        final long labelsOffset = tableOffset(channel, LABELED_VERSION, count) - tableBytes;
+        final long[] labels = new long[count];
+        readAt(channel, labelsOffset, tableBytes).asLongBuffer().get(labels);
+        return labels;
+    }
+
+    /**
+     * Читает участок файла в буфер в куче. Служебные таблицы читаются так,
+     * а не отображением, чтобы не держать отображения файла после загрузки.
+     */
+    private static ByteBuffer readAt(FileChannel channel, long position, long length)
+            throws IOException {
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Таблица снимка больше 2 ГБ");
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate((int) length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * Проверяет версию и концевик снимка и возвращает смещение таблицы смещений.
+     */
+    private static long tableOffset(FileChannel channel, int version, int count)
+            throws IOException {
+        if (version != VERSION && version != LABELED_VERSION) {
+            throw new IOException("Неподдерживаемая версия двоичного снимка: " + version);
+        }
+        final long size = channel.size();
+        final long tableBytes = (long) count * Long.BYTES;
+        final long labelBytes = version == LABELED_VERSION ? tableBytes : 0;
+        if (size < HEADER_BYTES + labelBytes + tableBytes + FOOTER_BYTES) {
+            throw new EOFException();
+        }
+        final ByteBuffer footer = readAt(channel, size - FOOTER_BYTES, FOOTER_BYTES);
+        final long tableOffset = footer.getLong();
+        if (footer.getInt() != FOOTER_MAGIC || tableOffset + tableBytes + FOOTER_BYTES != size
+                || tableOffset - labelBytes < HEADER_BYTES) {
+            throw new EOFException();
+        }
+        return tableOffset;
+    }
+
+    /**
+     * Итератор по записям, отображающий файл в память окнами по границам записей.
+     * Предыдущее окно освобождается, как только отображено следующее.
+     */
+    static final class Records implements Iterator<StudyGroup>, Closeable {
+        private final FileChannel channel;
+        private final int count;
+        private final long[] offsets;
+        private final boolean indexed;
+        private final List<String> dictionary = new ArrayList<>();
+        private ByteBuffer window;
+        private long windowStart;
+        private int next;
+
+        Records(FileChannel channel, int count, long[] offsets, boolean indexed) {
+            this.channel = channel;
+            this.count = count;
+            this.offsets = offsets;
+            this.indexed = indexed;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < count;
+        }
+
+        @Override
+        public StudyGroup next() {
+            if (next == count) {
+                throw new NoSuchElementException();
+            }
+            try {
+                if (!indexed) {
+                    if (window == null) {
+                        window = map(offsets[0], offsets[1]);
+                    }
+                    final StudyGroup group = readGroup(window, dictionary);
+                    advance();
+                    return group;
+                }
+                final long start = offsets[next];
+                if (window == null || offsets[next + 1] - windowStart > window.limit()) {
+                    close();
+                    window = map(start, windowEnd(start));
+                    windowStart = start;
+                }
+                window.position((int) (start - windowStart));
+                final StudyGroup group = readGroup(window, dictionary);
+                if (window.position() != offsets[next + 1] - windowStart) {
+                    throw new IOException("Запись " + next + " не совпадает с таблицей смещений");
+                }
+                advance();
+                return group;
+            } catch (BufferUnderflowException e) {
+                throw new IllegalStateException("файл обрезан", new EOFException());
+            } catch (IOException e) {
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+        }
+
+        /**
+         * Освобождает отображение. Итератор можно закрывать повторно.
+         */
+        @Override
+        public void close() {
+            final ByteBuffer mapped = window;
+            window = null;
+            MappedBuffers.unmap(mapped);
+        }
+
+        private void advance() {
+            next++;
+            if (next == count) {
+                close();
+            }
+        }
+
+        /**
+         * Возвращает конец окна: последнюю границу записи, укладывающуюся в окно,
+         * но не меньше конца текущей записи.
+         */
+        private long windowEnd(long start) {
+            int last = next + 1;
+            while (last < count && offsets[last + 1] - start <= WINDOW_BYTES) {
+                last++;
+            }
+            return offsets[last];
+        }
+
+        private ByteBuffer map(long start, long end) throws IOException {
+            if (end - start > Integer.MAX_VALUE) {
+                throw new IOException("Запись больше 2 ГБ");
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        }
+    }
+
+    private static void writeGroup(DataOutputStream out, StudyGroup group,
+            Map<String, Integer> dictionary) throws IOException {
+        final Coordinates coordinates = group.getCoordinates();
+        final LocalDateTime creationDate = group.getCreationDate();
+        final Person admin = group.getGroupAdmin();
+        out.writeLong(group.getId());
+        writeString(out, group.getName());
+        out.writeByte((coordinates != null ? HAS_COORDINATES : 0)
+                | (creationDate != null ? HAS_CREATION_DATE : 0)
+                | (admin != null ? HAS_ADMIN : 0));
+        if (coordinates != null) {
+            out.writeDouble(coordinates.getX1());
+            out.writeDouble(coordinates.getY1());
+        }
+        if (creationDate != null) {
+            out.writeLong(creationDate.toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(creationDate.getNano());
+        }
+        out.writeInt(group.getStudentsCount());
+        out.writeLong(group.getShouldBeExpelled());
+        out.writeFloat(group.getAverageMark());
+        writeOrdinal(out, group.getFormOfEducation());
+        if (admin != null) {
+            writeReference(out, admin.getName(), dictionary);
+            final Date birthday = admin.getBirthday();
+            if (birthday == null) {
+                out.writeByte(NO_DATE);
+            } else {
+                out.writeByte(birthday instanceof java.sql.Date ? SQL_DATE : UTIL_DATE);
+                out.writeLong(birthday.getTime());
+            }
+            out.writeFloat(admin.getHeight());
+            writeString(out, admin.getPassportId());
+            writeOrdinal(out, admin.getEyeColor());
+        }
+    }
+
+    private static StudyGroup readGroup(ByteBuffer in, List<String> dictionary)
+            throws IOException {
+        final StudyGroup group = new StudyGroup();
+        try {
+            group.setId(in.getLong());
+            final String name = readString(in);
+            if (name != null) {
+                group.setName(name);
+            }
+            final int flags = in.get();
+            if ((flags & HAS_COORDINATES) != 0) {
+                final Coordinates coordinates = new Coordinates();
+                coordinates.setX1(in.getDouble());
+                coordinates.setY1(in.getDouble());
+                group.setCoordinates(coordinates);
+            }
+            if ((flags & HAS_CREATION_DATE) != 0) {
+                group.setCreationDate(LocalDateTime.ofEpochSecond(in.getLong(), in.getInt(),
+                        ZoneOffset.UTC));
+            }
+            group.setStudentsCount(in.getInt());
+            group.setShouldBeExpelled(in.getLong());
+            group.setAverageMark(in.getFloat());
+            final int form = in.get();
+            if (form != NULL_ORDINAL) {
+                group.setFormOfEducation(FORMS[form]);
+            }
+            if ((flags & HAS_ADMIN) != 0) {
+                group.setGroupAdmin(readPerson(in, dictionary));
+            }
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeException e) {
+            throw new IOException("Некорректная запись группы: " + e.getMessage(), e);
+        }
+        return group;
+    }
+
+    private static Person readPerson(ByteBuffer in, List<String> dictionary)
+            throws IOException {
+        final Person person = new Person();
+        final String name = readReference(in, dictionary);
+        if (name != null) {
+            person.setName(name);
+        }
+        final int dateKind = in.get();
+        if (dateKind != NO_DATE) {
+            final long time = in.getLong();
+            person.setBirthday(dateKind == SQL_DATE ? new java.sql.Date(time) : new Date(time));
+        }
+        person.setHeight(in.getFloat());
+        final String passportId = readString(in);
+        if (passportId != null) {
+            person.setPassportId(passportId);
+        }
+        final int color = in.get();
+        if (color != NULL_ORDINAL) {
+            person.setEyeColor(COLORS[color]);
+        }
+        return person;
+    }
+
+    private static void writeOrdinal(DataOutputStream out, Enum<?> value) throws IOException {
+        out.writeByte(value == null ? NULL_ORDINAL : value.ordinal());
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) throws IOException {
+        final int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > in.remaining()) {
+            throw new IOException("Некорректная длина строки: " + length);
+        }
+        final byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Записывает строку через словарь: известная строка — номером, новая — номером
+     * следующей записи словаря и самой строкой.
+     */
+    private static void writeReference(DataOutputStream out, String value,
+            Map<String, Integer> dictionary) throws IOException {
+        if (value == null) {
+            out.writeInt(NULL_REFERENCE);
+            return;
+        }
+        final Integer known = dictionary.get(value);
+        if (known != null) {
+            out.writeInt(known);
+            return;
+        }
+        final int index = dictionary.size();
+        dictionary.put(value, index);
+        out.writeInt(index);
+        writeString(out, value);
+    }
+
+    private static String readReference(ByteBuffer in, List<String> dictionary)
+            throws IOException {
+        final int index = in.getInt();
+        if (index == NULL_REFERENCE) {
+            return null;
+        }
+        if (index < 0 || index > dictionary.size()) {
+            throw new IOException("Некорректная ссылка на словарь: " + index);
+        }
+        if (index == dictionary.size()) {
+            dictionary.add(readString(in));
+        }
+        return dictionary.get(index);
+    }
+
+    /**
+     * Поток, считающий записанные байты, чтобы заполнить таблицу смещений.
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long position;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            position++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            position += len;
+        }
+    }
+}
@@ -3,24 +3,36 @@ package util;
 import com.google.gson.Gson;
 import command.AddCommand;
 import command.AddIfMinCommand;
+import command.BeginCommand;
+import command.BottomKCommand;
 import command.ClearCommand;
 import command.CollectionCommand;
 import command.Command;
+import command.CommandFailedException;
+import command.CommitCommand;
+import command.CountByStudentsCountBetweenCommand;
 import command.CountByStudentsCountCommand;
 import command.ExecuteScriptCommand;
 import command.ExitCommand;
+import command.ExportCommand;
+import command.FilterStudentsCountBetweenCommand;
 import command.GroupCountingByGroupAdminCommand;
 import command.HelpCommand;
+import command.ImportCommand;
 import command.InfoCommand;
 import command.InsertAtCommand;
 import command.PrintFieldAscendingGroupAdminCommand;
 import command.RemoveByIdCommand;
 import command.RemoveFirstCommand;
+import command.RollbackCommand;
 import command.SaveCommand;
+import command.SaveStatusCommand;
 import command.ShowCommand;
+import command.TopKCommand;
 import command.UpdateCommand;
 import command.WelcomeCommand;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.HashMap;
 import java.util.Map;
 import model.StudyGroupCollection;
@@ -38,47 +50,65 @@ public class CommandManager {
      * Конструктор класса CommandManager.
      *
      * @param collection коллекция StudyGroup
-     * @param fileName имя файла для сохранения/загрузки
      * @param gson объект Gson для сериализации/десериализации
      * @param inputHandler обработчик ввода данных
+     * @param journal журнал изменений коллекции или null
+     * @param saver фоновое сохранение коллекции
+     * @param autoSaver автосохранение коллекции или null
      */
-    public CommandManager(StudyGroupCollection collection, String fileName,
-            Gson gson, StudyGroupInputHandler inputHandler) {
+    public CommandManager(StudyGroupCollection collection, Gson gson,
+            StudyGroupInputHandler inputHandler, Journal journal, BackgroundSaver saver,
+            AutoSaver autoSaver) {
         this.collection = collection;
         this.fileManager = new FileManager(gson);
-        this.commands = initializeCommands(fileName, gson, inputHandler);
+        this.commands = initializeCommands(gson, inputHandler, journal, saver, autoSaver);
     }
 
     /**
      * Инициализирует карту доступных команд.
      *
-     * @param fileName имя файла для сохранения/загрузки
      * @param gson объект Gson для сериализации/десериализации
      * @param inputHandler обработчик ввода данных
+     * @param journal журнал изменений коллекции или null
+     * @param saver фоновое сохранение коллекции
+     * @param autoSaver автосохранение коллекции или null
      * @return карта команд, где ключ - имя команды, значение - объект команды
      */
-    private Map<String, Command> initializeCommands(String fileName, Gson gson,
-            StudyGroupInputHandler inputHandler) {
+    private Map<String, Command> initializeCommands(Gson gson,
+            StudyGroupInputHandler inputHandler, Journal journal, BackgroundSaver saver,
+            AutoSaver autoSaver) {
         final Map<String, Command> commands = new HashMap<>();
 
         // Простые команды, не требующие коллекцию
         commands.put("welcome", new WelcomeCommand());
         commands.put("help", new HelpCommand(commands));
         commands.put("exit", new ExitCommand());
+        commands.put("save_status", new SaveStatusCommand(saver));
 
         // Команды, работающие с коллекцией
-        addCollectionCommand(commands, "info", new InfoCommand());
+        addCollectionCommand(commands, "info", new InfoCommand(autoSaver));
         addCollectionCommand(commands, "show", new ShowCommand());
         addCollectionCommand(commands, "clear", new ClearCommand());
-        addCollectionCommand(commands, "save", new SaveCommand(fileName, gson));
+        addCollectionCommand(commands, "save", new SaveCommand(saver));
+        addCollectionCommand(commands, "export", new ExportCommand(gson));
+        addCollectionCommand(commands, "import", new ImportCommand(gson, journal, saver));
         addCollectionCommand(commands, "remove_by_id", new RemoveByIdCommand());
         addCollectionCommand(commands, "remove_first", new RemoveFirstCommand());
         addCollectionCommand(commands, "count_by_students_count", 
             new CountByStudentsCountCommand());
+        addCollectionCommand(commands, "count_by_students_count_between",
+            new CountByStudentsCountBetweenCommand());
         addCollectionCommand(commands, "group_counting_by_group_admin", 
             new GroupCountingByGroupAdminCommand());
         addCollectionCommand(commands, "print_field_ascending_group_admin", 
             new PrintFieldAscendingGroupAdminCommand());
+        addCollectionCommand(commands, "top_k", new TopKCommand());
+        addCollectionCommand(commands, "bottom_k", new BottomKCommand());
+        addCollectionCommand(commands, "filter_students_count_between",
+            new FilterStudentsCountBetweenCommand());
+        addCollectionCommand(commands, "begin", new BeginCommand());
+        addCollectionCommand(commands, "commit", new CommitCommand());
+        addCollectionCommand(commands, "rollback", new RollbackCommand());
 
         // Команды, требующие inputHandler
         if (inputHandler != null) {
@@ -90,7 +120,7 @@ public class CommandManager {
 
         // Особая команда для выполнения скриптов
         addCollectionCommand(commands, "execute_script", 
-            new ExecuteScriptCommand(commands, fileManager));
+            new ExecuteScriptCommand(commands, fileManager, inputHandler));
 
         return commands;
     }
@@ -108,6 +138,17 @@ public class CommandManager {
         commands.put(name, command);
     }
 
+    /**
+     * Проверяет, работает ли команда с коллекцией. Такие команды нельзя выполнять,
+     * пока коллекция загружается.
+     *
+     * @param commandName имя команды
+     * @return true, если команда работает с коллекцией
+     */
+    public boolean requiresCollection(String commandName) {
+        return commands.get(commandName) instanceof CollectionCommand;
+    }
+
     /**
      * Выполняет команду с заданными аргументами.
      *
@@ -116,17 +157,44 @@ public class CommandManager {
      * @return результат выполнения команды
      */
     public String executeCommand(String commandName, String[] args) {
+        final StringBuilder result = new StringBuilder();
+        try {
+            executeCommand(commandName, args, result);
+        } catch (IOException e) {
+            // StringBuilder не выбрасывает IOException
+            throw new UncheckedIOException(e);
+        }
+        if (result.length() > 0 && result.charAt(result.length() - 1) == '\n') {
+            result.setLength(result.length() - 1);
+        }
+        return result.toString();
+    }
+
+    /**
+     * Выполняет команду с заданными аргументами, записывая результат в приемник
+     * по мере выполнения. Каждая строка результата завершается переводом строки.
+     *
+     * @param commandName имя команды
+     * @param args аргументы команды
+     * @param output приемник результата
+     * @throws IOException если не удалось записать результат
+     */
+    public void executeCommand(String commandName, String[] args, Appendable output)
+            throws IOException {
         final Command command = commands.get(commandName);
         if (command == null) {
-            return "Неизвестная команда. Введите 'help' для списка доступных команд.";
+            output.append("Неизвестная команда. Введите 'help' для списка доступных команд.\n");
+            return;
         }
 
         try {
-            return command.execute(args);
+            command.execute(args, output);
+        } catch (CommandFailedException e) {
+            output.append(e.getMessage()).append('\n');
         } catch (IllegalArgumentException e) {
-            return "Ошибка: " + e.getMessage();
-        } catch (IOException e) {
-            return "Ошибка при выполнении команды: " + e.getMessage();
+            output.append("Ошибка: ").append(e.getMessage()).append('\n');
+        } catch (IOException | UncheckedIOException e) {
+            output.append("Ошибка при выполнении команды: ").append(e.getMessage()).append('\n');
         }
     }
 }
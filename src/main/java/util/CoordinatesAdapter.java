@@ -0,0 +1,75 @@
+package util;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import model.Coordinates;
+
+/**
+ * Адаптер для сериализации координат без рефлексии.
+ */
+public class CoordinatesAdapter extends TypeAdapter<Coordinates> {
+
+    /**
+     * Сериализует координаты в JSON.
+     *
+     * @param out JsonWriter для записи JSON
+     * @param value координаты
+     * @throws IOException если произошла ошибка при записи
+     */
+    @Override
+    public void write(JsonWriter out, Coordinates value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("x1").value(value.getX1());
+        out.name("y1").value(value.getY1());
+        out.endObject();
+    }
+
+    /**
+     * Десериализует JSON в координаты. Неизвестные поля и значения null пропускаются.
+     *
+     * @param in JsonReader для чтения JSON
+     * @return координаты или null
+     * @throws IOException если произошла ошибка при чтении
+     * @throws JsonSyntaxException если значение поля некорректно
+     */
+    @Override
+    public Coordinates read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        final Coordinates coordinates = new Coordinates();
+        in.beginObject();
+        while (in.hasNext()) {
+            final String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            try {
+                switch (name) {
+                    case "x1":
+                        coordinates.setX1(in.nextDouble());
+                        break;
+                    case "y1":
+                        coordinates.setY1(in.nextDouble());
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            } catch (IllegalArgumentException e) {
+                throw new JsonSyntaxException(e.getMessage() + " " + in.getPath(), e);
+            }
+        }
+        in.endObject();
+        return coordinates;
+    }
+}
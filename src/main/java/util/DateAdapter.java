@@ -0,0 +1,315 @@
+package util;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.text.DateFormat;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Адаптер для сериализации дат ({@link Date} и {@link java.sql.Date}).
+ *
+ * <p>Формат совпадает с тем, что Gson по умолчанию пишет в локали en-US:
+ * {@code "Jan 2, 2000"} для {@link java.sql.Date} и {@code "Jan 2, 2000, 3:04:05 PM"}
+ * для {@link Date}, но не зависит от локали системы. Дата без времени читается обратно
+ * как {@link java.sql.Date}. Время отсчитывается в часовом поясе системы.
+ *
+ * <p>Даты с 1600 по 9999 год записываются и разбираются по фиксированной схеме без
+ * {@link SimpleDateFormat}; остальные (в том числе до перехода на григорианский календарь)
+ * обрабатываются форматтерами.
+ */
+public class DateAdapter extends TypeAdapter<Date> {
+
+    private static final int MIN_FAST_YEAR = 1600;
+    private static final int MAX_FAST_YEAR = 9999;
+    private static final String[] MONTHS = {"Jan", "Feb", "Mar", "Apr", "May", "Jun",
+        "Jul", "Aug", "Sep", "Oct", "Nov", "Dec"};
+    private static final char NARROW_SPACE = '\u202F';
+
+    private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+
+    private final TimeZone timeZone;
+    private final DateFormat dateFormat;
+    private final DateFormat dateTimeFormat;
+    private final List<DateFormat> localFormats;
+
+    /**
+     * Конструктор адаптера дат в часовом поясе системы.
+     */
+    public DateAdapter() {
+        this.timeZone = TimeZone.getDefault();
+        this.dateFormat = new SimpleDateFormat("MMM d, yyyy", Locale.US);
+        this.dateTimeFormat = new SimpleDateFormat("MMM d, y, h:mm:ss a", Locale.US);
+        // Файлы, записанные прежними версиями в другой локали системы
+        this.localFormats = List.of(new SimpleDateFormat("MMM d, yyyy"),
+                DateFormat.getDateTimeInstance(DateFormat.DEFAULT, DateFormat.DEFAULT));
+    }
+
+    /**
+     * Сериализует дату в JSON.
+     *
+     * @param out JsonWriter для записи JSON
+     * @param value дата для сериализации
+     * @throws IOException если произошла ошибка при записи
+     */
+    @Override
+    public void write(JsonWriter out, Date value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+        } else {
+            out.value(format(value));
+        }
+    }
+
+    /**
+     * Десериализует JSON в дату.
+     *
+     * @param in JsonReader для чтения JSON
+     * @return дата или null
+     * @throws IOException если произошла ошибка при чтении
+     * @throws JsonSyntaxException если строка не является датой
+     */
+    @Override
+    public Date read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        final String date = in.nextString();
+        final Date parsed = parse(date);
+        if (parsed == null) {
+            throw new JsonSyntaxException("Некорректная дата: " + date);
+        }
+        return parsed;
+    }
+
+    /**
+     * Форматирует дату.
+     *
+     * @param value дата
+     * @return строка вида "Jan 2, 2000" или "Jan 2, 2000, 3:04:05 PM"
+     */
+    String format(Date value) {
+        final boolean dateOnly = value instanceof java.sql.Date;
+        // Смещение берется из TimeZone, как у SimpleDateFormat: для старых дат
+        // оно отличается от правил java.time
+        final long millis = value.getTime();
+        final LocalDateTime time = LocalDateTime.ofEpochSecond(
+                Math.floorDiv(millis + timeZone.getOffset(millis), 1000L), 0, ZoneOffset.UTC);
+        final int year = time.getYear();
+        if (year < MIN_FAST_YEAR || year > MAX_FAST_YEAR) {
+            return formatSlow(dateOnly ? dateFormat : dateTimeFormat, value);
+        }
+        final StringBuilder text = new StringBuilder(dateOnly ? 12 : 24)
+                .append(MONTHS[time.getMonthValue() - 1]).append(' ')
+                .append(time.getDayOfMonth()).append(", ").append(year);
+        if (dateOnly) {
+            return text.toString();
+        }
+        final int hour = time.getHour() % 12;
+        text.append(", ").append(hour == 0 ? 12 : hour).append(':');
+        appendTwoDigits(text, time.getMinute()).append(':');
+        appendTwoDigits(text, time.getSecond());
+        return text.append(time.getHour() < 12 ? " AM" : " PM").toString();
+    }
+
+    /**
+     * Разбирает дату. Кроме основного формата принимаются формат Gson до Java 9
+     * (без запятой перед временем), формат локали системы и ISO 8601.
+     *
+     * @param text строка с датой
+     * @return дата или null, если строка не распознана
+     */
+    Date parse(String text) {
+        final Date fast = parseFast(text);
+        if (fast != null) {
+            return fast;
+        }
+        Date parsed = parseSlow(dateTimeFormat, text, false);
+        if (parsed == null) {
+            parsed = parseSlow(dateFormat, text, true);
+        }
+        for (int i = 0; parsed == null && i < localFormats.size(); i++) {
+            parsed = parseSlow(localFormats.get(i), text, i == 0);
+        }
+        return parsed != null ? parsed : parseIso(text);
+    }
+
+    /**
+     * Разбирает дату по фиксированной схеме "MMM d, yyyy[,] [h:mm:ss a]".
+     *
+     * @return дата или null, если строка не подходит под схему
+     */
+    private Date parseFast(String text) {
+        final int length = text.length();
+        if (length < "Jan 1, 1600".length() || text.charAt(3) != ' ') {
+            return null;
+        }
+        final int month = month(text);
+        int position = 4;
+        final int dayDigits = isDigit(text.charAt(position + 1)) ? 2 : 1;
+        final int day = number(text, position, dayDigits);
+        position += dayDigits;
+        if (month < 0 || day <= 0 || position + 6 > length
+                || text.charAt(position) != ',' || text.charAt(position + 1) != ' ') {
+            return null;
+        }
+        position += 2;
+        final int year = number(text, position, 4);
+        position += 4;
+        if (year < MIN_FAST_YEAR || (position < length && isDigit(text.charAt(position)))) {
+            return null;
+        }
+        try {
+            final LocalDate date = LocalDate.of(year, month, day);
+            if (position == length) {
+                final long millis = toEpochMilli(date.atStartOfDay());
+                return millis != Long.MIN_VALUE ? new java.sql.Date(millis) : null;
+            }
+            if (text.charAt(position) == ',') {
+                position++;
+            }
+            if (position >= length || text.charAt(position) != ' ') {
+                return null;
+            }
+            position++;
+            final int hourDigits = position + 1 < length && isDigit(text.charAt(position + 1))
+                    ? 2 : 1;
+            final int hour = number(text, position, hourDigits);
+            position += hourDigits;
+            if (hour <= 0 || hour > 12 || position + 9 != length
+                    || text.charAt(position) != ':' || text.charAt(position + 3) != ':') {
+                return null;
+            }
+            final int minute = number(text, position + 1, 2);
+            final int second = number(text, position + 4, 2);
+            final char space = text.charAt(position + 6);
+            final boolean pm;
+            if (text.startsWith("AM", position + 7)) {
+                pm = false;
+            } else if (text.startsWith("PM", position + 7)) {
+                pm = true;
+            } else {
+                return null;
+            }
+            if (minute < 0 || second < 0 || (space != ' ' && space != NARROW_SPACE)) {
+                return null;
+            }
+            final LocalDateTime dateTime = date.atTime(hour % 12 + (pm ? 12 : 0), minute, second);
+            final long millis = toEpochMilli(dateTime);
+            return millis != Long.MIN_VALUE ? new Date(millis) : null;
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Переводит местное время в момент, если рядом нет перехода смещения часового пояса.
+     *
+     * @return миллисекунды от эпохи или Long.MIN_VALUE, если нужен форматтер
+     */
+    private long toEpochMilli(LocalDateTime time) {
+        final long local = time.toEpochSecond(ZoneOffset.UTC) * 1000L;
+        final int offset = timeZone.getOffset(local - timeZone.getRawOffset());
+        final long millis = local - offset;
+        if (timeZone.getOffset(millis) != offset
+                || timeZone.getOffset(millis - MILLIS_PER_DAY) != offset
+                || timeZone.getOffset(millis + MILLIS_PER_DAY) != offset) {
+            return Long.MIN_VALUE;
+        }
+        return millis;
+    }
+
+    private static int month(String text) {
+        for (int i = 0; i < MONTHS.length; i++) {
+            if (text.startsWith(MONTHS[i])) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Читает ровно count десятичных цифр.
+     *
+     * @return число или -1, если встретилась не цифра
+     */
+    private static int number(String text, int offset, int count) {
+        if (offset + count > text.length()) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            final char c = text.charAt(i);
+            if (!isDigit(c)) {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static StringBuilder appendTwoDigits(StringBuilder text, int value) {
+        if (value < 10) {
+            text.append('0');
+        }
+        return text.append(value);
+    }
+
+    private static String formatSlow(DateFormat format, Date value) {
+        synchronized (format) {
+            return format.format(value);
+        }
+    }
+
+    /**
+     * Разбирает строку форматтером целиком.
+     *
+     * @return дата или null, если строка не подходит
+     */
+    private static Date parseSlow(DateFormat format, String text, boolean dateOnly) {
+        final ParsePosition position = new ParsePosition(0);
+        final Date parsed;
+        synchronized (format) {
+            parsed = format.parse(text, position);
+        }
+        if (parsed == null || position.getIndex() != text.length()) {
+            return null;
+        }
+        return dateOnly ? new java.sql.Date(parsed.getTime()) : parsed;
+    }
+
+    private Date parseIso(String text) {
+        try {
+            if (text.indexOf('T') < 0) {
+                final LocalDate date = LocalDate.parse(text);
+                return new java.sql.Date(date.atStartOfDay(timeZone.toZoneId())
+                        .toInstant().toEpochMilli());
+            }
+            final char last = text.charAt(text.length() - 1);
+            if (last == 'Z' || text.lastIndexOf('+') > 0 || text.lastIndexOf('-') > 10) {
+                return Date.from(OffsetDateTime.parse(text).toInstant());
+            }
+            return Date.from(LocalDateTime.parse(text).atZone(timeZone.toZoneId()).toInstant());
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+}
@@ -1,24 +1,43 @@
 package util;
 
 import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.google.gson.stream.MalformedJsonException;
 import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.FileReader;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Vector;
+import java.util.concurrent.ForkJoinPool;
 import model.StudyGroup;
+import model.StudyGroupCollection;
 
 /**
  * Класс для управления файлами.
  */
 public class FileManager {
 
+    private static final int BUFFER_SIZE = 1 << 16;
+
     private final Gson gson;
 
     /**
@@ -31,82 +50,369 @@ public class FileManager {
     }
 
     /**
-     * Сохраняет коллекцию в файл.
+     * Сохраняет коллекцию в файл. Группы сериализуются по одной прямо в буферизованный
+     * канал файла, поэтому дополнительная память не зависит от размера коллекции.
+     * Если файл уже содержит двоичный снимок, коллекция сохраняется в двоичном формате,
+     * а если манифест сегментов — перезаписываются измененные сегменты (см. {@link SegmentStore}).
      *
      * @param fileName имя файла для сохранения
      * @param collection коллекция для сохранения
      * @return созданный файл
      * @throws IOException если произошла ошибка при записи в файл
      */
-    public File saveCollection(String fileName, Vector<StudyGroup> collection) throws IOException {
-        final File file = new File(fileName);
-        if (!file.exists()) {
-            file.getParentFile().mkdirs();
-            file.createNewFile();
+    public File saveCollection(String fileName, List<StudyGroup> collection) throws IOException {
+        return saveCollection(fileName, collection, temporary -> { });
+    }
+
+    /**
+     * Сохраняет коллекцию так же, как {@link #saveCollection(String, List)}, но перед
+     * атомарной заменой файла передает записанный временный файл действию. Журнал
+     * запоминает так, какой снимок заменит файл коллекции.
+     *
+     * @param fileName имя файла для сохранения
+     * @param collection коллекция для сохранения
+     * @param beforeReplace действие над временным файлом перед заменой
+     * @return созданный файл
+     * @throws IOException если произошла ошибка при записи в файл или в действии
+     */
+    File saveCollection(String fileName, List<StudyGroup> collection,
+            BeforeReplace beforeReplace) throws IOException {
+        if (isSegmentManifest(fileName)) {
+            return new SegmentStore(fileName, gson).save(collection, beforeReplace);
         }
-        
-        try (BufferedOutputStream bos = new BufferedOutputStream(new FileOutputStream(file))) {
-            final byte[] data = gson.toJson(collection).getBytes(StandardCharsets.UTF_8);
-            bos.write(data);
-            bos.flush();
+        if (isBinarySnapshot(fileName)) {
+            return writeAtomically(fileName, binary(collection), beforeReplace);
         }
-        
-        return file;
+        return writeAtomically(fileName, json(collection), beforeReplace);
+    }
+
+    /**
+     * Сохраняет коллекцию в JSON-файл независимо от текущего формата файла.
+     * Файл записывается во временный и атомарно заменяет прежний.
+     *
+     * @param fileName имя файла для сохранения
+     * @param collection коллекция для сохранения
+     * @return созданный файл
+     * @throws IOException если произошла ошибка при записи в файл
+     */
+    public File saveJson(String fileName, List<StudyGroup> collection) throws IOException {
+        return writeAtomically(fileName, json(collection), temporary -> { });
+    }
+
+    private FileContent json(List<StudyGroup> collection) {
+        return channel -> {
+            try {
+                final JsonWriter writer = gson.newJsonWriter(new BufferedWriter(
+                        Channels.newWriter(channel, StandardCharsets.UTF_8), BUFFER_SIZE));
+                final TypeAdapter<StudyGroup> adapter = gson.getAdapter(StudyGroup.class);
+                writer.beginArray();
+                for (StudyGroup group : collection) {
+                    adapter.write(writer, group);
+                }
+                writer.endArray();
+                writer.flush();
+            } catch (JsonIOException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+        };
     }
 
     /**
-     * Загружает коллекцию из файла.
+     * Загружает коллекцию из файла потоково: элементы JSON-массива разбираются по одному
+     * и сразу добавляются в коллекцию, поэтому в памяти не держится промежуточный список.
+     * Большие файлы разбираются параллельно на всех ядрах (см. {@link ParallelJsonLoader}).
+     * Двоичные снимки и сегментированные коллекции загружаются в своих форматах.
      * Если файл не существует, создает новый пустой файл.
      *
      * @param fileName имя файла для загрузки
-     * @return загруженная коллекция или пустая коллекция, если файл пуст
-     * @throws IOException если произошла ошибка при чтении файла
+     * @param collection коллекция, содержимое которой будет заменено
+     * @return количество загруженных групп
+     * @throws IOException если произошла ошибка при чтении или разборе файла
+     * @throws IllegalArgumentException если в файле найдены дублирующиеся ID
      */
-    public Vector<StudyGroup> loadCollection(String fileName) throws IOException {
+    public int loadCollection(String fileName, StudyGroupCollection collection)
+            throws IOException {
         final File file = new File(fileName);
         if (!file.exists()) {
             file.getParentFile().mkdirs();
             file.createNewFile();
             System.out.println("Создан новый файл: " + fileName);
-            return new Vector<>();
+            return 0;
+        }
+        if (isBinarySnapshot(fileName)) {
+            return loadBinary(fileName, collection);
+        }
+        if (isSegmentManifest(fileName)) {
+            return loadSegments(fileName, collection);
         }
 
-        try (FileReader reader = new FileReader(file)) {
-            final TypeToken<Vector<StudyGroup>> token = new TypeToken<>() {
-            };
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+             JsonReader reader = gson.newJsonReader(new BufferedReader(
+                     Channels.newReader(channel, StandardCharsets.UTF_8), BUFFER_SIZE))) {
+            final JsonToken first;
             try {
-                final Vector<StudyGroup> loadedCollection = gson.fromJson(reader, token.getType());
-                return loadedCollection != null ? loadedCollection : new Vector<>();
-            } catch (com.google.gson.JsonSyntaxException e) {
-                throw new IOException("Ошибка парсинга JSON файла: файл поврежден "
-                        + "или имеет неверный формат", e);
+                first = reader.peek();
+            } catch (EOFException e) {
+                // Пустой файл соответствует пустой коллекции
+                collection.clear();
+                return 0;
+            }
+            if (first == JsonToken.NULL) {
+                collection.clear();
+                return 0;
+            }
+            final int parallelism = Runtime.getRuntime().availableProcessors();
+            if (first == JsonToken.BEGIN_ARRAY
+                    && ParallelJsonLoader.isWorthwhile(channel.size(), parallelism)) {
+                final ForkJoinPool pool = new ForkJoinPool(parallelism);
+                try {
+                    final Iterator<StudyGroup> groups =
+                            ParallelJsonLoader.read(channel, gson, pool);
+                    if (groups != null) {
+                        collection.loadFrom(groups);
+                        return collection.size();
+                    }
+                } finally {
+                    pool.shutdownNow();
+                }
+            }
+            // Как и Gson.fromJson, допускаем нестрогий JSON
+            reader.setLenient(true);
+            reader.beginArray();
+            final TypeAdapter<StudyGroup> adapter = gson.getAdapter(StudyGroup.class);
+            collection.loadFrom(new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    try {
+                        return reader.hasNext();
+                    } catch (IOException e) {
+                        throw new JsonIOException(e);
+                    }
+                }
+
+                @Override
+                public StudyGroup next() {
+                    try {
+                        return adapter.read(reader);
+                    } catch (IOException e) {
+                        throw new JsonIOException(e);
+                    }
+                }
+            });
+            reader.endArray();
+            return collection.size();
+        } catch (JsonIOException e) {
+            if (e.getCause() instanceof MalformedJsonException
+                    || e.getCause() instanceof EOFException) {
+                collection.clear();
+                throw parseError(e);
             }
+            throw new IOException(e.getMessage(), e);
+        } catch (JsonParseException | IllegalStateException | MalformedJsonException
+                 | EOFException e) {
+            collection.clear();
+            throw parseError(e);
         }
     }
-    
+
     /**
-     * Читает скрипт из файла.
+     * Сохраняет коллекцию в двоичном формате (см. {@link BinarySnapshot}).
+     * Файл записывается во временный и атомарно заменяет прежний.
      *
-     * @param fileName имя файла скрипта
-     * @return список строк скрипта, исключая пустые строки и комментарии
-     * @throws IOException если произошла ошибка при чтении файла
+     * @param fileName имя файла для сохранения
+     * @param collection коллекция для сохранения
+     * @return созданный файл
+     * @throws IOException если произошла ошибка при записи в файл
+     */
+    public File saveBinary(String fileName, List<StudyGroup> collection) throws IOException {
+        return writeAtomically(fileName, binary(collection), temporary -> { });
+    }
+
+    private static FileContent binary(List<StudyGroup> collection) {
+        return channel -> {
+            final OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel),
+                    BUFFER_SIZE);
+            BinarySnapshot.write(out, collection);
+            out.flush();
+        };
+    }
+
+    /**
+     * Записывает файл через временный файл рядом с ним: содержимое сбрасывается на диск,
+     * после чего временный файл атомарно заменяет прежний. Поэтому сбой во время записи
+     * оставляет прежний файл целым, а читатели никогда не видят недописанный файл.
+     *
+     * @param fileName имя файла
+     * @param content запись содержимого в канал временного файла
+     * @param beforeReplace действие над временным файлом перед заменой
+     * @return записанный файл
+     * @throws IOException если произошла ошибка при записи
      */
-    public List<String> readScript(String fileName) throws IOException {
+    private static File writeAtomically(String fileName, FileContent content,
+            BeforeReplace beforeReplace) throws IOException {
+        final File file = new File(fileName);
+        final File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        final Path temporary = Path.of(fileName + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                content.write(channel);
+                channel.force(true);
+            }
+            beforeReplace.accept(temporary);
+            Files.move(temporary, file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+        return file;
+    }
+
+    /**
+     * Запись содержимого файла в канал.
+     */
+    @FunctionalInterface
+    private interface FileContent {
+        void write(FileChannel channel) throws IOException;
+    }
+
+    /**
+     * Действие над записанным и сброшенным на диск временным файлом
+     * перед тем, как он заменит прежний.
+     */
+    @FunctionalInterface
+    interface BeforeReplace {
+        void accept(Path temporary) throws IOException;
+    }
+
+    /**
+     * Загружает коллекцию из двоичного снимка, заменяя ее содержимое.
+     * Файл читается через отображение в память, без промежуточного буфера;
+     * к возврату из метода отображение уже освобождено.
+     *
+     * @param fileName имя файла снимка
+     * @param collection коллекция, содержимое которой будет заменено
+     * @return количество загруженных групп
+     * @throws IOException если файл не удалось прочитать или он поврежден
+     * @throws IllegalArgumentException если в файле найдены дублирующиеся ID
+     */
+    public int loadBinary(String fileName, StudyGroupCollection collection) throws IOException {
         final File file = new File(fileName);
         if (!file.exists()) {
             throw new IOException("Файл '" + fileName + "' не найден");
         }
-        
-        final List<String> scriptLines = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final BinarySnapshot.Records groups;
+            try {
+                groups = BinarySnapshot.read(channel);
+            } catch (IOException e) {
+                final String reason = e instanceof EOFException ? "файл обрезан" : e.getMessage();
+                throw new IOException("Ошибка парсинга двоичного снимка: " + reason, e);
+            }
+            // Отображение освобождается и при ошибке, иначе файл нельзя будет заменить
+            try (groups) {
+                collection.loadFrom(groups);
+            }
+            return collection.size();
+        } catch (IllegalStateException e) {
+            collection.clear();
+            final String reason = e.getCause() instanceof EOFException
+                    ? "файл обрезан" : e.getMessage();
+            throw new IOException("Ошибка парсинга двоичного снимка: " + reason, e);
+        }
+    }
+
+    /**
+     * Сохраняет коллекцию сегментами по диапазонам ID (см. {@link SegmentStore}).
+     * Если коллекция уже хранится сегментами и передан ее снимок, перезаписываются
+     * только сегменты, в которых группы изменились с прошлого сохранения.
+     *
+     * @param fileName имя файла манифеста
+     * @param collection коллекция для сохранения
+     * @return файл манифеста
+     * @throws IOException если произошла ошибка при записи
+     */
+    public File saveSegments(String fileName, List<StudyGroup> collection) throws IOException {
+        return new SegmentStore(fileName, gson).save(collection);
+    }
+
+    /**
+     * Загружает коллекцию из сегментов, заменяя ее содержимое.
+     * Сегменты читаются параллельно.
+     *
+     * @param fileName имя файла манифеста
+     * @param collection коллекция, содержимое которой будет заменено
+     * @return количество загруженных групп
+     * @throws IOException если манифест или сегмент поврежден или не читается
+     * @throws IllegalArgumentException если в сегментах найдены дублирующиеся ID
+     */
+    public int loadSegments(String fileName, StudyGroupCollection collection)
+            throws IOException {
+        try {
+            return new SegmentStore(fileName, gson).load(collection);
+        } catch (IOException e) {
+            collection.clear();
+            throw e;
+        }
+    }
+
+    /**
+     * Проверяет, содержит ли файл манифест сегментированной коллекции.
+     *
+     * @param fileName имя файла
+     * @return true, если файл содержит JSON-объект, а не массив групп
+     * @throws IOException если файл не удалось прочитать
+     */
+    public boolean isSegmentManifest(String fileName) throws IOException {
+        return SegmentStore.isManifest(fileName);
+    }
+
+    /**
+     * Проверяет, содержит ли файл двоичный снимок коллекции.
+     *
+     * @param fileName имя файла
+     * @return true, если файл начинается с сигнатуры двоичного снимка
+     * @throws IOException если файл не удалось прочитать
+     */
+    public boolean isBinarySnapshot(String fileName) throws IOException {
+        final File file = new File(fileName);
+        if (!file.isFile() || file.length() < Integer.BYTES) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return in.readInt() == BinarySnapshot.MAGIC;
+        }
+    }
+
+    private static IOException parseError(Exception cause) {
+        return new IOException("Ошибка парсинга JSON файла: файл поврежден "
+                + "или имеет неверный формат", cause);
+    }
+
+    /**
+     * Читает все строки скрипта в кодировке UTF-8, как и файлы коллекции, включая пустые:
+     * в скрипте они могут быть значениями полей элемента (например, пропуск администратора
+     * группы).
+     *
+     * @param fileName имя файла скрипта
+     * @return строки скрипта
+     * @throws IOException если произошла ошибка при чтении файла
+     */
+    public List<String> readScriptLines(String fileName) throws IOException {
+        final Path path = Path.of(fileName);
+        if (!Files.exists(path)) {
+            throw new IOException("Файл '" + fileName + "' не найден");
+        }
+        final List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
             String line;
             while ((line = reader.readLine()) != null) {
-                line = line.trim();
-                if (!line.isEmpty() && !line.startsWith("#")) {
-                    scriptLines.add(line);
-                }
+                lines.add(line);
             }
         }
-        return scriptLines;
+        return lines;
     }
 }
@@ -1,30 +1,85 @@
 package util;
 
+import java.util.concurrent.atomic.AtomicLong;
 import model.StudyGroupCollection;
 
 /**
  * Класс для генерации уникальных ID.
+ *
+ * <p>ID выдаются без блокировок: каждый поток арендует у общего атомарного счетчика
+ * блок из {@value #BLOCK_SIZE} ID и раздает его, не обращаясь к счетчику. Блок начинается
+ * после наибольшего ID коллекции на момент аренды (см.
+ * {@link StudyGroupCollection#getHighestId()}), который сохраняется вместе с коллекцией,
+ * поэтому ID удаленных групп не выдаются повторно и после перезапуска.
+ *
+ * <p>ID из блоков других потоков не пересекаются с арендованным блоком, поэтому блок
+ * остается действительным, пока в коллекцию не попадут ID не от генератора (загрузка,
+ * импорт, резервирование). Такие изменения отмечает поколение ID коллекции
+ * (см. {@link StudyGroupCollection#getIdGeneration()}), записанное в блок при аренде.
  */
 public class IdGenerator {
 
-    private long nextId;
+    /** Количество ID, арендуемых потоком за одно обращение к общему счетчику. */
+    static final int BLOCK_SIZE = 64;
 
+    /** Первый еще не арендованный ID. */
+    private final AtomicLong nextBlock = new AtomicLong(1);
     /**
-     * Конструктор класса IdGenerator.
-     * Инициализирует генератор ID на основе существующей коллекции.
+     * Арендованный потоком блок: следующий ID, граница блока (не включая ее)
+     * и поколение ID коллекции на момент аренды.
+     */
+    private final ThreadLocal<long[]> lease = ThreadLocal.withInitial(() -> new long[3]);
+    private volatile StudyGroupCollection collection;
+
+    /**
+     * Конструктор генератора, который инициализируется позже, когда коллекция
+     * будет загружена (см. {@link #initialize(StudyGroupCollection)}).
+     */
+    public IdGenerator() {
+    }
+
+    /**
+     * Конструктор класса IdGenerator для уже загруженной коллекции.
      *
-     * @param collection коллекция StudyGroup, на основе которой будет определен следующий ID
+     * @param collection коллекция StudyGroup, для которой выдаются ID
      */
     public IdGenerator(StudyGroupCollection collection) {
-        this.nextId = collection.getMaxId() + 1;
+        initialize(collection);
+    }
+
+    /**
+     * Инициализирует генератор по загруженной коллекции. Следующий ID определяется
+     * по отметке наибольшего ID коллекции за O(1), без обхода групп.
+     *
+     * @param collection загруженная коллекция
+     */
+    public void initialize(StudyGroupCollection collection) {
+        this.collection = collection;
     }
 
     /**
-     * Возвращает следующий доступный ID и увеличивает счетчик.
+     * Возвращает следующий доступный ID. Метод потокобезопасен и не блокирует потоки.
      *
      * @return следующий уникальный ID
+     * @throws IllegalStateException если коллекция еще не загружена
      */
     public long getNextId() {
-        return nextId++;
+        final StudyGroupCollection current = collection;
+        if (current == null) {
+            throw new IllegalStateException("Генератор ID используется до загрузки коллекции");
+        }
+        final long[] block = lease.get();
+        final long generation = current.getIdGeneration();
+        // Блок устарел, если после аренды в коллекцию попали чужие ID, например, при импорте
+        if (block[0] >= block[1] || block[2] != generation) {
+            // Поколение читается до отметки, поэтому блок начнется после всех его ID
+            final long highestId = current.getHighestId();
+            final long start = nextBlock.getAndUpdate(
+                    next -> Math.max(next, highestId + 1) + BLOCK_SIZE);
+            block[0] = Math.max(start, highestId + 1);
+            block[1] = block[0] + BLOCK_SIZE;
+            block[2] = generation;
+        }
+        return block[0]++;
     }
 }
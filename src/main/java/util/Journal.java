@@ -0,0 +1,600 @@
+package util;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonWriter;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32C;
+import model.CollectionListener;
+import model.StudyGroup;
+import model.StudyGroupCollection;
+
+/**
+ * Журнал изменений коллекции (write-ahead log).
+ *
+ * <p>Каждое изменение дописывается в файл {@code <имя файла>.journal} одной строкой JSON,
+ * поэтому сохранение стоит пропорционально числу изменений. JSON-файл коллекции служит
+ * снимком, который периодически обновляется при уплотнении журнала. При запуске
+ * загружается снимок, после чего журнал применяется заново.
+ *
+ * <p>Уплотнение переименовывает текущий журнал в {@code <имя файла>.journal.old}
+ * в момент снимка и удаляет его после записи снимка, поэтому сбой на любом шаге
+ * не теряет изменений: при следующем запуске применяются оба журнала. Перед заменой
+ * файла коллекции в старый журнал дописывается отпечаток нового снимка (размер
+ * и CRC32C файла). Если сбой случился уже после замены, файл коллекции совпадает
+ * с отпечатком, и покрытые снимком записи старого журнала не применяются повторно.
+ * Отпечаток хранится в журнале, а не в снимке, потому что JSON-снимок — просто
+ * массив групп, в котором нет места для служебных полей.
+ *
+ * <p>Если записать изменение не удалось, недописанные записи отбрасываются: буфер
+ * не сбрасывается, а файл обрезается до последней целой записи. Исключение доходит
+ * до коллекции, и она отменяет изменение (см. {@link CollectionListener}).
+ */
+public class Journal implements CollectionListener {
+
+    /** Минимальное количество записей, после которого журнал уплотняется. */
+    private static final int MIN_COMPACTION_RECORDS = 1000;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final String fileName;
+    private final Path journalPath;
+    private final Path oldJournalPath;
+    private final Gson gson;
+    private final TypeAdapter<StudyGroup> adapter;
+    private FileChannel channel;
+    private Writer writer;
+    /** Размер файла журнала после последней записи, целиком сброшенной в файл. */
+    private long flushedSize;
+    private long records;
+    private boolean snapshotDiscarded;
+    /** Записи пакета изменений сбрасываются в файл один раз, в конце пакета. */
+    private boolean batch;
+    /** Текст записи собирается в буфере и передается в файл одним вызовом. */
+    private final StringBuilder line = new StringBuilder();
+    private final Writer lineWriter = new LineWriter();
+    /**
+     * Уплотнения выполняются по одному: иначе второе переименовало бы журнал,
+     * пока первое еще пишет снимок. Монитор журнала для этого не подходит,
+     * так как снимок пишется без него.
+     */
+    private final Object compactionLock = new Object();
+    private volatile boolean attached;
+
+    /**
+     * Конструктор класса Journal.
+     *
+     * @param fileName имя файла коллекции
+     * @param gson объект Gson для сериализации/десериализации
+     */
+    public Journal(String fileName, Gson gson) {
+        this.fileName = fileName;
+        this.journalPath = Path.of(fileName + ".journal");
+        this.oldJournalPath = Path.of(fileName + ".journal.old");
+        this.gson = gson;
+        this.adapter = gson.getAdapter(StudyGroup.class);
+    }
+
+    /**
+     * Применяет к коллекции изменения из журнала, накопленные после последнего снимка.
+     * Недописанная последняя строка (сбой во время записи) пропускается.
+     *
+     * @param collection коллекция, загруженная из снимка
+     * @return количество примененных записей
+     * @throws IOException если журнал не удалось прочитать или он поврежден
+     */
+    public int replay(StudyGroupCollection collection) throws IOException {
+        // Монитор журнала здесь не захватывается: изменения коллекции берут ее блокировку
+        // записи, а под ней коллекция вызывает append, которому нужен монитор журнала.
+        // Блокировки всегда берутся в порядке «коллекция, затем журнал».
+        int applied = 0;
+        final int covered = coveredLines();
+        if (covered == Integer.MAX_VALUE) {
+            // Снимок записан целиком, не успели только удалить старый журнал
+            Files.delete(oldJournalPath);
+        } else {
+            applied += replay(oldJournalPath, covered, collection);
+        }
+        applied += replay(journalPath, 0, collection);
+        synchronized (this) {
+            records = applied;
+        }
+        return applied;
+    }
+
+    /**
+     * Начинает запись изменений коллекции в журнал.
+     *
+     * @param collection коллекция, изменения которой записываются
+     * @throws IOException если файл журнала не удалось открыть
+     */
+    public void attach(StudyGroupCollection collection) throws IOException {
+        synchronized (this) {
+            open();
+        }
+        collection.setListener(this);
+        attached = true;
+    }
+
+    /**
+     * Удаляет журналы, например, если пользователь отказался от поврежденной коллекции.
+     * Файл коллекции тогда тоже не соответствует коллекции, поэтому следующее
+     * сохранение записывает полный снимок.
+     *
+     * @throws IOException если файлы не удалось удалить
+     */
+    public synchronized void discard() throws IOException {
+        closeWriter();
+        Files.deleteIfExists(oldJournalPath);
+        Files.deleteIfExists(journalPath);
+        records = 0;
+        snapshotDiscarded = true;
+    }
+
+    /**
+     * Возвращает количество записей в журнале после последнего снимка.
+     *
+     * @return количество записей
+     */
+    public synchronized long getRecords() {
+        return records;
+    }
+
+    /**
+     * Проверяет, стоит ли уплотнить журнал: применять его при запуске уже
+     * дороже, чем заново записать снимок. Если журнал не подключен к коллекции,
+     * изменения не записываются, и сохранять нужно всегда полный снимок.
+     *
+     * @param collectionSize текущий размер коллекции
+     * @return true, если журнал пора уплотнить
+     */
+    public synchronized boolean needsCompaction(int collectionSize) {
+        return !attached || snapshotDiscarded
+                || records >= Math.max(MIN_COMPACTION_RECORDS, collectionSize);
+    }
+
+    /**
+     * Сбрасывает журнал на диск.
+     *
+     * @throws IOException если произошла ошибка при записи
+     */
+    public synchronized void sync() throws IOException {
+        if (writer != null) {
+            writer.flush();
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Уплотняет журнал: записывает снимок коллекции в JSON-файл и удаляет
+     * примененные к нему записи журнала.
+     *
+     * @param collection коллекция
+     * @param fileManager менеджер файлов для записи снимка
+     * @return файл снимка
+     * @throws IOException если произошла ошибка при записи
+     */
+    public File compact(StudyGroupCollection collection, FileManager fileManager)
+            throws IOException {
+        synchronized (compactionLock) {
+            final List<StudyGroup> snapshot;
+            try {
+                snapshot = collection.checkpoint(() -> rotate(collection.getHighestId()));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            final File file = fileManager.saveCollection(fileName, snapshot, this::markSnapshot);
+            Files.deleteIfExists(oldJournalPath);
+            return file;
+        }
+    }
+
+    /**
+     * Дописывает в старый журнал отпечаток записанного снимка, пока тот еще
+     * не заменил файл коллекции. Запись сбрасывается на диск до замены файла.
+     *
+     * @param temporary временный файл снимка
+     * @throws IOException если произошла ошибка при чтении снимка или записи журнала
+     */
+    private synchronized void markSnapshot(Path temporary) throws IOException {
+        if (!Files.exists(oldJournalPath)) {
+            return;
+        }
+        final JsonObject record = fingerprint(temporary);
+        try (FileChannel file = FileChannel.open(oldJournalPath, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND)) {
+            final ByteBuffer bytes = ByteBuffer.wrap(
+                    (gson.toJson(record) + "\n").getBytes(StandardCharsets.UTF_8));
+            while (bytes.hasRemaining()) {
+                file.write(bytes);
+            }
+            file.force(false);
+        }
+    }
+
+    /**
+     * Вычисляет отпечаток файла снимка: запись журнала с его размером и CRC32C.
+     *
+     * @param path файл снимка
+     * @return служебная запись snapshot
+     * @throws IOException если файл не удалось прочитать
+     */
+    private static JsonObject fingerprint(Path path) throws IOException {
+        final CRC32C crc = new CRC32C();
+        long size = 0;
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+            final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            while (file.read(buffer) >= 0) {
+                buffer.flip();
+                size += buffer.remaining();
+                crc.update(buffer);
+                buffer.clear();
+            }
+        }
+        final JsonObject record = record("snapshot");
+        record.addProperty("size", size);
+        record.addProperty("crc", crc.getValue());
+        return record;
+    }
+
+    /**
+     * Находит в старом журнале последнюю запись snapshot, отпечаток которой совпадает
+     * с текущим файлом коллекции: записи до нее уже содержатся в снимке.
+     *
+     * @return номер строки этой записи, {@link Integer#MAX_VALUE}, если после нее
+     *     записей нет, или 0, если снимок не покрывает старый журнал
+     * @throws IOException если журнал не удалось прочитать
+     */
+    private int coveredLines() throws IOException {
+        if (!Files.exists(oldJournalPath) || !Files.isRegularFile(Path.of(fileName))) {
+            return 0;
+        }
+        JsonObject current = null;
+        int covered = 0;
+        int lineNumber = 0;
+        int lastRecord = 0;
+        try (BufferedReader reader = Files.newBufferedReader(oldJournalPath,
+                StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                lastRecord = lineNumber;
+                if (!line.contains("\"snapshot\"")) {
+                    continue;
+                }
+                final JsonObject record;
+                try {
+                    record = JsonParser.parseString(line).getAsJsonObject();
+                } catch (RuntimeException e) {
+                    // Недописанную запись разберет replay
+                    continue;
+                }
+                if (!"snapshot".equals(record.get("op").getAsString())) {
+                    continue;
+                }
+                if (current == null) {
+                    current = fingerprint(Path.of(fileName));
+                }
+                if (current.equals(record)) {
+                    covered = lineNumber;
+                }
+            }
+        }
+        return covered > 0 && covered == lastRecord ? Integer.MAX_VALUE : covered;
+    }
+
+    @Override
+    public void inserted(int index, StudyGroup group) {
+        append("insert", "index", index, group);
+    }
+
+    @Override
+    public void updated(long id, StudyGroup group) {
+        append("update", "id", id, group);
+    }
+
+    @Override
+    public void replaced(int index, StudyGroup group) {
+        append("set", "index", index, group);
+    }
+
+    @Override
+    public void removed(long id) {
+        append("remove", "id", id, null);
+    }
+
+    @Override
+    public void cleared() {
+        append("clear", null, 0, null);
+    }
+
+    @Override
+    public synchronized void batchStarted() {
+        batch = true;
+    }
+
+    @Override
+    public synchronized void batchFinished() {
+        batch = false;
+        if (writer != null) {
+            try {
+                writer.flush();
+                flushedSize = channel.size();
+            } catch (IOException e) {
+                abandonWrite();
+                throw new UncheckedIOException("Ошибка записи в журнал: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private static JsonObject record(String operation) {
+        final JsonObject record = new JsonObject();
+        record.addProperty("op", operation);
+        return record;
+    }
+
+    /**
+     * Дописывает запись в журнал. Запись попадает в файл сразу, без ожидания команды save,
+     * а запись пакета изменений — в конце пакета. Группа записывается адаптером прямо
+     * в текст записи, без промежуточного дерева JSON.
+     *
+     * @param operation операция
+     * @param key имя числового поля записи или null
+     * @param value значение числового поля
+     * @param group группа или null
+     * @throws UncheckedIOException если запись не удалась
+     */
+    private synchronized void append(String operation, String key, long value,
+            StudyGroup group) {
+        try {
+            if (writer == null) {
+                open();
+            }
+            line.setLength(0);
+            final JsonWriter json = gson.newJsonWriter(lineWriter);
+            json.beginObject().name("op").value(operation);
+            if (key != null) {
+                json.name(key).value(value);
+            }
+            if (group != null) {
+                json.name("group");
+                adapter.write(json, group);
+            }
+            json.endObject();
+            writeLine();
+            records++;
+        } catch (IOException e) {
+            abandonWrite();
+            throw new UncheckedIOException("Ошибка записи в журнал: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Отбрасывает записи, которые не попали в файл целиком: буфер не сбрасывается,
+     * а файл обрезается до последней целой записи. Следующая запись откроет журнал
+     * заново. Если обрезать файл не удалось, в нем может остаться запись отмененного
+     * изменения, поэтому следующее сохранение запишет полный снимок.
+     */
+    private void abandonWrite() {
+        final FileChannel failed = channel;
+        writer = null;
+        channel = null;
+        if (failed == null) {
+            return;
+        }
+        try (FileChannel closing = failed) {
+            closing.truncate(flushedSize);
+        } catch (IOException e) {
+            snapshotDiscarded = true;
+        }
+    }
+
+    private void write(JsonObject record) throws IOException {
+        line.setLength(0);
+        gson.toJson(record, gson.newJsonWriter(lineWriter));
+        writeLine();
+    }
+
+    private void writeLine() throws IOException {
+        line.append('\n');
+        writer.append(line);
+        if (!batch) {
+            writer.flush();
+            flushedSize = channel.size();
+        }
+    }
+
+    /**
+     * Закрывает текущий журнал и начинает новый. Вызывается в момент снимка коллекции.
+     * Новый журнал начинается с отметки наибольшего выданного ID: формат снимка может
+     * не хранить ее, а ID удаленных групп не должны выдаваться повторно.
+     *
+     * @param highestId наибольший ID коллекции на момент снимка
+     */
+    private synchronized void rotate(long highestId) {
+        try {
+            closeWriter();
+            if (Files.exists(journalPath)) {
+                if (Files.exists(oldJournalPath)) {
+                    // Предыдущее уплотнение не завершилось: сохраняем оба журнала
+                    Files.write(oldJournalPath, Files.readAllBytes(journalPath),
+                            StandardOpenOption.APPEND);
+                    Files.delete(journalPath);
+                } else {
+                    Files.move(journalPath, oldJournalPath, StandardCopyOption.ATOMIC_MOVE);
+                }
+            }
+            records = 0;
+            snapshotDiscarded = false;
+            open();
+            if (highestId > 0) {
+                final JsonObject record = record("ids");
+                record.addProperty("highest", highestId);
+                write(record);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void open() throws IOException {
+        final File parent = journalPath.toAbsolutePath().getParent().toFile();
+        parent.mkdirs();
+        channel = FileChannel.open(journalPath, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        flushedSize = channel.size();
+        writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8),
+                BUFFER_SIZE);
+    }
+
+    private void closeWriter() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+            channel = null;
+        }
+    }
+
+    private int replay(Path path, int covered, StudyGroupCollection collection)
+            throws IOException {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        int applied = 0;
+        int lineNumber = 0;
+        int tornBytes = 0;
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            while (line != null) {
+                lineNumber++;
+                final String next = reader.readLine();
+                if (lineNumber > covered && !line.isBlank()) {
+                    try {
+                        if (apply(JsonParser.parseString(line).getAsJsonObject(), collection)) {
+                            applied++;
+                        }
+                    } catch (RuntimeException e) {
+                        // Недописанной может быть только последняя строка без перевода строки
+                        if (next != null || endsWithNewline(path)) {
+                            throw new IOException("Ошибка парсинга журнала " + path
+                                    + ": строка " + lineNumber + " повреждена", e);
+                        }
+                        tornBytes = line.getBytes(StandardCharsets.UTF_8).length;
+                    }
+                }
+                line = next;
+            }
+        }
+        if (tornBytes > 0) {
+            // Обрезаем недописанную запись, чтобы новые записи начинались с новой строки
+            try (FileChannel file = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                file.truncate(file.size() - tornBytes);
+            }
+        }
+        return applied;
+    }
+
+    private static boolean endsWithNewline(Path path) throws IOException {
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+            final ByteBuffer last = ByteBuffer.allocate(1);
+            return file.size() > 0 && file.read(last, file.size() - 1) == 1
+                    && last.get(0) == '\n';
+        }
+    }
+
+    /**
+     * Применяет запись журнала к коллекции.
+     *
+     * @return true, если запись изменила коллекцию, false для служебной записи
+     */
+    private boolean apply(JsonObject record, StudyGroupCollection collection) {
+        final String operation = record.get("op").getAsString();
+        switch (operation) {
+            case "ids":
+                collection.reserveIds(record.get("highest").getAsLong());
+                return false;
+            case "snapshot":
+                // Отпечаток снимка, который не заменил файл коллекции
+                return false;
+            case "insert":
+                collection.insertAt(record.get("index").getAsInt(), group(record));
+                break;
+            case "update":
+                collection.update(record.get("id").getAsLong(), group(record));
+                break;
+            case "set":
+                collection.set(record.get("index").getAsInt(), group(record));
+                break;
+            case "remove":
+                // ID удаленной группы остается занятым
+                collection.reserveIds(record.get("id").getAsLong());
+                collection.removeById(record.get("id").getAsLong());
+                break;
+            case "clear":
+                collection.clear();
+                break;
+            default:
+                throw new JsonParseException("Неизвестная операция: " + operation);
+        }
+        return true;
+    }
+
+    private StudyGroup group(JsonObject record) {
+        return adapter.fromJsonTree(record.get("group"));
+    }
+
+    /**
+     * Writer в буфер текста записи. В отличие от {@link java.io.StringWriter}
+     * не синхронизирован: JSON пишется множеством коротких вызовов.
+     */
+    private final class LineWriter extends Writer {
+
+        @Override
+        public void write(char[] buffer, int offset, int length) {
+            line.append(buffer, offset, length);
+        }
+
+        @Override
+        public void write(String text, int offset, int length) {
+            line.append(text, offset, offset + length);
+        }
+
+        @Override
+        public void write(int c) {
+            line.append((char) c);
+        }
+
+        @Override
+        public Writer append(CharSequence text) {
+            line.append(text);
+            return this;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -1,17 +1,29 @@
 package util;
 
+import com.google.gson.JsonSyntaxException;
 import com.google.gson.TypeAdapter;
 import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import com.google.gson.stream.JsonWriter;
 import java.io.IOException;
+import java.time.DateTimeException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 
 /**
  * Адаптер для сериализации.
+ *
+ * <p>Формат совпадает с {@link DateTimeFormatter#ISO_LOCAL_DATE_TIME}: секунды выводятся
+ * всегда, дробная часть — без завершающих нулей. Для годов от 0 до 9999 дата
+ * записывается и разбирается по фиксированным позициям без общего форматтера,
+ * остальные значения обрабатываются форматтером.
  */
 public class LocalDateTimeAdapter extends TypeAdapter<LocalDateTime> {
 
+    private static final int MAX_FAST_YEAR = 9999;
+    private static final int FAST_LENGTH = "yyyy-MM-ddTHH:mm:ss".length();
+    private static final int NANO_DIGITS = 9;
+
     private final DateTimeFormatter formatter = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
 
     /**
@@ -26,7 +38,7 @@ public class LocalDateTimeAdapter extends TypeAdapter<LocalDateTime> {
         if (value == null) {
             out.nullValue();
         } else {
-            out.value(formatter.format(value));
+            out.value(format(value));
         }
     }
 
@@ -36,14 +48,114 @@ public class LocalDateTimeAdapter extends TypeAdapter<LocalDateTime> {
      * @param in JsonReader для чтения JSON
      * @return десериализованный объект LocalDateTime
      * @throws IOException если произошла ошибка при чтении
+     * @throws JsonSyntaxException если строка не является датой и временем
      */
     @Override
     public LocalDateTime read(JsonReader in) throws IOException {
-        if (in.peek() == com.google.gson.stream.JsonToken.NULL) {
+        if (in.peek() == JsonToken.NULL) {
             in.nextNull();
             return null;
         }
         final String date = in.nextString();
-        return LocalDateTime.parse(date, formatter);
+        try {
+            return parse(date);
+        } catch (DateTimeException e) {
+            throw new JsonSyntaxException("Некорректная дата: " + date, e);
+        }
+    }
+
+    /**
+     * Форматирует дату и время.
+     *
+     * @param value дата и время
+     * @return строка в формате ISO_LOCAL_DATE_TIME
+     */
+    String format(LocalDateTime value) {
+        final int year = value.getYear();
+        if (year < 0 || year > MAX_FAST_YEAR) {
+            return formatter.format(value);
+        }
+        final char[] chars = new char[FAST_LENGTH + 1 + NANO_DIGITS];
+        putDigits(chars, 0, year, 4);
+        chars[4] = '-';
+        putDigits(chars, 5, value.getMonthValue(), 2);
+        chars[7] = '-';
+        putDigits(chars, 8, value.getDayOfMonth(), 2);
+        chars[10] = 'T';
+        putDigits(chars, 11, value.getHour(), 2);
+        chars[13] = ':';
+        putDigits(chars, 14, value.getMinute(), 2);
+        chars[16] = ':';
+        putDigits(chars, 17, value.getSecond(), 2);
+        int nano = value.getNano();
+        if (nano == 0) {
+            return new String(chars, 0, FAST_LENGTH);
+        }
+        int digits = NANO_DIGITS;
+        while (nano % 10 == 0) {
+            nano /= 10;
+            digits--;
+        }
+        chars[FAST_LENGTH] = '.';
+        putDigits(chars, FAST_LENGTH + 1, nano, digits);
+        return new String(chars, 0, FAST_LENGTH + 1 + digits);
+    }
+
+    /**
+     * Разбирает дату и время.
+     *
+     * @param text строка в формате ISO_LOCAL_DATE_TIME
+     * @return дата и время
+     * @throws DateTimeException если строка имеет неверный формат или задает несуществующую дату
+     */
+    LocalDateTime parse(String text) {
+        final int length = text.length();
+        if (length < FAST_LENGTH || length == FAST_LENGTH + 1
+                || length > FAST_LENGTH + 1 + NANO_DIGITS
+                || text.charAt(4) != '-' || text.charAt(7) != '-' || text.charAt(10) != 'T'
+                || text.charAt(13) != ':' || text.charAt(16) != ':'
+                || (length > FAST_LENGTH && text.charAt(FAST_LENGTH) != '.')) {
+            return LocalDateTime.parse(text, formatter);
+        }
+        final int year = digits(text, 0, 4);
+        final int month = digits(text, 5, 2);
+        final int day = digits(text, 8, 2);
+        final int hour = digits(text, 11, 2);
+        final int minute = digits(text, 14, 2);
+        final int second = digits(text, 17, 2);
+        int nano = 0;
+        if (length > FAST_LENGTH) {
+            final int fractionDigits = length - FAST_LENGTH - 1;
+            nano = digits(text, FAST_LENGTH + 1, fractionDigits);
+            for (int i = fractionDigits; i < NANO_DIGITS; i++) {
+                nano *= 10;
+            }
+        }
+        if ((year | month | day | hour | minute | second | nano) < 0) {
+            return LocalDateTime.parse(text, formatter);
+        }
+        return LocalDateTime.of(year, month, day, hour, minute, second, nano);
+    }
+
+    private static void putDigits(char[] chars, int offset, int value, int count) {
+        for (int i = offset + count - 1; i >= offset; i--) {
+            chars[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    /**
+     * Возвращает число из count десятичных цифр или -1, если встретилась не цифра.
+     */
+    private static int digits(String text, int offset, int count) {
+        int value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            final int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
     }
 }
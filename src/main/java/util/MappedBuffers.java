@@ -0,0 +1,58 @@
+package util;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+
+/**
+ * Освобождение отображений файлов в память.
+ *
+ * <p>Отображение, полученное через {@link java.nio.channels.FileChannel#map}, по умолчанию
+ * освобождается только сборщиком мусора. Пока оно живо, Windows не дает заменить или удалить
+ * файл, поэтому сохранение коллекции поверх только что загруженного файла завершилось бы
+ * ошибкой. Загрузчики освобождают окна отображения сразу после чтения.
+ */
+final class MappedBuffers {
+
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            final Class<?> type = Class.forName("sun.misc.Unsafe");
+            final Field field = type.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = type.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Без sun.misc.Unsafe отображения освобождает сборщик мусора
+            unsafe = null;
+            invokeCleaner = null;
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    private MappedBuffers() {
+    }
+
+    /**
+     * Освобождает отображение. После вызова к буферу и его представлениям
+     * обращаться нельзя.
+     *
+     * @param buffer буфер, полученный от {@link java.nio.channels.FileChannel#map},
+     *     или null
+     */
+    static void unmap(ByteBuffer buffer) {
+        if (buffer == null || !buffer.isDirect() || INVOKE_CLEANER == null) {
+            return;
+        }
+        try {
+            INVOKE_CLEANER.invoke(UNSAFE, buffer);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Отображение освободит сборщик мусора
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package util;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import java.io.CharArrayReader;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import model.StudyGroup;
+
+/**
+ * Параллельная загрузка большого JSON-массива групп.
+ *
+ * <p>Файл просматривается побайтно (с учетом строк и вложенности), и массив режется
+ * на куски по запятым между элементами верхнего уровня. Каждый кусок разбирается
+ * отдельной задачей пула, как только найдена его граница, поэтому разбор идет
+ * параллельно с поиском границ. Группы выдаются в порядке файла, кусок за куском.
+ *
+ * <p>Поиск границ понимает только строгий JSON. Если в файле встречается нестрогий
+ * синтаксис (строки в одинарных кавычках, комментарии, разделители ';' и '='),
+ * загрузчик отказывается от файла, и его читает обычный последовательный разбор.
+ */
+final class ParallelJsonLoader {
+
+    /** Файлы меньшего размера разбираются последовательно. */
+    static final long MIN_PARALLEL_BYTES = 1L << 24;
+
+    private static final long MIN_CHUNK_BYTES = 1L << 22;
+    private static final long MAX_CHUNK_BYTES = 1L << 26;
+    /** Сколько кусков приходится на поток пула, чтобы потоки не простаивали в конце. */
+    private static final int CHUNKS_PER_THREAD = 4;
+    /** Максимальный размер одного окна отображения при поиске границ. */
+    private static final long WINDOW_BYTES = 1L << 28;
+
+    private ParallelJsonLoader() {
+    }
+
+    /**
+     * Проверяет, стоит ли загружать файл параллельно.
+     *
+     * @param size размер файла в байтах
+     * @param parallelism количество потоков пула
+     * @return true, если файл достаточно большой и потоков больше одного
+     */
+    static boolean isWorthwhile(long size, int parallelism) {
+        return parallelism > 1 && size >= MIN_PARALLEL_BYTES;
+    }
+
+    /**
+     * Начинает параллельный разбор JSON-массива групп.
+     * Ошибки разбора сообщаются во время обхода итератора так же, как при
+     * последовательной загрузке: {@link com.google.gson.JsonParseException},
+     * {@link IllegalStateException} или {@link JsonIOException}.
+     *
+     * @param channel канал файла
+     * @param gson объект Gson для разбора
+     * @param pool пул для разбора кусков
+     * @return группы в порядке файла или null, если файл нужно читать последовательно
+     * @throws IOException если файл не удалось прочитать или массив не закрыт
+     */
+    static Iterator<StudyGroup> read(FileChannel channel, Gson gson, ForkJoinPool pool)
+            throws IOException {
+        final long chunkBytes = Math.min(MAX_CHUNK_BYTES, Math.max(MIN_CHUNK_BYTES,
+                channel.size() / ((long) pool.getParallelism() * CHUNKS_PER_THREAD)));
+        return read(channel, gson, pool, chunkBytes);
+    }
+
+    /**
+     * Начинает параллельный разбор, разрезая массив на куски не меньше заданного размера.
+     *
+     * @param channel канал файла
+     * @param gson объект Gson для разбора
+     * @param pool пул для разбора кусков
+     * @param chunkBytes минимальный размер куска в байтах
+     * @return группы в порядке файла или null, если файл нужно читать последовательно
+     * @throws IOException если файл не удалось прочитать или массив не закрыт
+     */
+    static Iterator<StudyGroup> read(FileChannel channel, Gson gson, ForkJoinPool pool,
+            long chunkBytes) throws IOException {
+        final TypeAdapter<StudyGroup> adapter = gson.getAdapter(StudyGroup.class);
+        final long size = channel.size();
+        final Deque<Future<List<StudyGroup>>> chunks = new ArrayDeque<>();
+        boolean completed = false;
+        try {
+            int depth = 0;
+            boolean inString = false;
+            boolean escaped = false;
+            long chunkStart = -1;
+            for (long windowStart = 0; windowStart < size; windowStart += WINDOW_BYTES) {
+                final int length = (int) Math.min(WINDOW_BYTES, size - windowStart);
+                final ByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY,
+                        windowStart, length);
+                try {
+                    for (int i = 0; i < length; i++) {
+                        final byte b = window.get(i);
+                        if (inString) {
+                            if (escaped) {
+                                escaped = false;
+                            } else if (b == '\\') {
+                                escaped = true;
+                            } else if (b == '"') {
+                                inString = false;
+                            }
+                            continue;
+                        }
+                        final long position = windowStart + i;
+                        switch (b) {
+                            case '"':
+                                inString = true;
+                                break;
+                            case '[':
+                            case '{':
+                                if (depth == 0) {
+                                    if (b != '[') {
+                                        return null;
+                                    }
+                                    chunkStart = position + 1;
+                                }
+                                depth++;
+                                break;
+                            case ']':
+                            case '}':
+                                if (depth == 0) {
+                                    return null;
+                                }
+                                depth--;
+                                if (depth == 0) {
+                                    chunks.add(submit(pool, channel, gson, adapter,
+                                            chunkStart, position));
+                                    completed = true;
+                                    return new ChunkIterator(chunks);
+                                }
+                                break;
+                            case ',':
+                                if (depth == 1 && position - chunkStart >= chunkBytes) {
+                                    chunks.add(submit(pool, channel, gson, adapter,
+                                            chunkStart, position));
+                                    chunkStart = position + 1;
+                                }
+                                break;
+                            case '\'':
+                            case '/':
+                            case '#':
+                            case ';':
+                            case '=':
+                                return null;
+                            default:
+                                if (depth == 0 && !isWhitespace(b)) {
+                                    return null;
+                                }
+                        }
+                    }
+                } finally {
+                    MappedBuffers.unmap(window);
+                }
+            }
+            // Массив не закрыт: файл обрезан
+            throw new EOFException();
+        } finally {
+            if (!completed) {
+                for (Future<List<StudyGroup>> chunk : chunks) {
+                    chunk.cancel(true);
+                }
+            }
+        }
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    private static Future<List<StudyGroup>> submit(ForkJoinPool pool, FileChannel channel,
+            Gson gson, TypeAdapter<StudyGroup> adapter, long start, long end) {
+        return pool.submit(() -> parse(channel, gson, adapter, start, end));
+    }
+
+    /**
+     * Разбирает кусок массива: элементы между позициями start и end, разделенные запятыми.
+     */
+    private static List<StudyGroup> parse(FileChannel channel, Gson gson,
+            TypeAdapter<StudyGroup> adapter, long start, long end) throws IOException {
+        if (end - start > Integer.MAX_VALUE - 2) {
+            throw new IOException("Элемент JSON больше 2 ГБ");
+        }
+        final ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        // Границы кусков проходят по запятым, поэтому многобайтные символы не разрезаются
+        final CharBuffer chars = CharBuffer.allocate((int) (end - start) + 2);
+        chars.put('[');
+        try {
+            final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder();
+            CoderResult result = decoder.decode(bytes, chars, true);
+            if (!result.isUnderflow()) {
+                result.throwException();
+            }
+            result = decoder.flush(chars);
+            if (!result.isUnderflow()) {
+                result.throwException();
+            }
+        } finally {
+            // Дальше разбирается копия в куче, а отображение не дает заменить файл
+            MappedBuffers.unmap(bytes);
+        }
+        chars.put(']');
+        chars.flip();
+        final List<StudyGroup> groups = new ArrayList<>();
+        try (JsonReader reader = gson.newJsonReader(
+                new CharArrayReader(chars.array(), 0, chars.limit()))) {
+            // Как и при последовательной загрузке, допускаем нестрогий JSON
+            reader.setLenient(true);
+            reader.beginArray();
+            while (reader.hasNext()) {
+                groups.add(adapter.read(reader));
+            }
+            reader.endArray();
+        }
+        return groups;
+    }
+
+    /**
+     * Итератор, выдающий группы кусков по порядку по мере готовности их разбора.
+     */
+    private static final class ChunkIterator implements Iterator<StudyGroup> {
+        private final Deque<Future<List<StudyGroup>>> chunks;
+        private Iterator<StudyGroup> current = Collections.emptyIterator();
+
+        ChunkIterator(Deque<Future<List<StudyGroup>>> chunks) {
+            this.chunks = chunks;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext() && !chunks.isEmpty()) {
+                current = join(chunks.poll()).iterator();
+            }
+            return current.hasNext();
+        }
+
+        @Override
+        public StudyGroup next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+
+        private List<StudyGroup> join(Future<List<StudyGroup>> chunk) {
+            try {
+                return chunk.get();
+            } catch (ExecutionException e) {
+                for (Future<List<StudyGroup>> rest : chunks) {
+                    rest.cancel(true);
+                }
+                final Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new JsonIOException(cause);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new JsonIOException("Загрузка прервана", e);
+            } catch (CancellationException e) {
+                throw new JsonIOException("Загрузка прервана", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package util;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import model.Color;
+import model.Person;
+
+/**
+ * Адаптер для сериализации человека без рефлексии.
+ */
+public class PersonAdapter extends TypeAdapter<Person> {
+
+    private final DateAdapter dateAdapter;
+
+    /**
+     * Конструктор адаптера.
+     *
+     * @param dateAdapter адаптер для даты рождения
+     */
+    public PersonAdapter(DateAdapter dateAdapter) {
+        this.dateAdapter = dateAdapter;
+    }
+
+    /**
+     * Сериализует человека в JSON. Поля со значением null не записываются.
+     *
+     * @param out JsonWriter для записи JSON
+     * @param value человек
+     * @throws IOException если произошла ошибка при записи
+     */
+    @Override
+    public void write(JsonWriter out, Person value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("name").value(value.getName());
+        out.name("birthday");
+        dateAdapter.write(out, value.getBirthday());
+        out.name("height").value((Number) value.getHeight());
+        out.name("passportId").value(value.getPassportId());
+        out.name("eyeColor").value(value.getEyeColor() == null ? null : value.getEyeColor().name());
+        out.endObject();
+    }
+
+    /**
+     * Десериализует JSON в человека. Неизвестные поля и значения null пропускаются,
+     * неизвестный цвет глаз считается отсутствующим.
+     *
+     * @param in JsonReader для чтения JSON
+     * @return человек или null
+     * @throws IOException если произошла ошибка при чтении
+     * @throws JsonSyntaxException если значение поля некорректно
+     */
+    @Override
+    public Person read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        final Person person = new Person();
+        in.beginObject();
+        while (in.hasNext()) {
+            final String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            try {
+                switch (name) {
+                    case "name":
+                        person.setName(in.nextString());
+                        break;
+                    case "birthday":
+                        person.setBirthday(dateAdapter.read(in));
+                        break;
+                    case "height":
+                        person.setHeight((float) in.nextDouble());
+                        break;
+                    case "passportId":
+                        person.setPassportId(in.nextString());
+                        break;
+                    case "eyeColor":
+                        final Color color = StudyGroupAdapter.constant(Color.class,
+                                in.nextString());
+                        if (color != null) {
+                            person.setEyeColor(color);
+                        }
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            } catch (IllegalArgumentException e) {
+                throw new JsonSyntaxException(e.getMessage() + " " + in.getPath(), e);
+            }
+        }
+        in.endObject();
+        return person;
+    }
+}
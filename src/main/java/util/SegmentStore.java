@@ -0,0 +1,518 @@
+package util;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import model.CollectionSnapshot;
+import model.StudyGroup;
+import model.StudyGroupCollection;
+
+/**
+ * Хранение коллекции сегментами по диапазонам ID.
+ *
+ * <p>Файл коллекции содержит небольшой манифест (JSON-объект), а группы лежат в каталоге
+ * {@code <имя файла>.segments}: каждый сегмент — двоичный снимок версии 3
+ * (см. {@link BinarySnapshot}) с группами, ID которых попадают в диапазон сегмента,
+ * вместе с метками их позиций. При загрузке сегменты читаются параллельно и сливаются
+ * по меткам, поэтому порядок коллекции восстанавливается.
+ *
+ * <p>При сохранении с последним записанным снимком сравнивается текущий
+ * (см. {@link CollectionSnapshot#forEachChange}), и перезаписываются только сегменты
+ * с изменившимися группами. Новые сегменты пишутся в новые файлы, после чего манифест
+ * атомарно заменяется, поэтому сбой на любом шаге оставляет прежнюю версию целой.
+ */
+final class SegmentStore {
+
+    /** Значение поля format манифеста. */
+    static final String FORMAT = "segments";
+    /** Версия манифеста. */
+    static final int VERSION = 1;
+    /** Количество ID в одном сегменте для новых манифестов. */
+    static final long DEFAULT_SPAN = 1L << 14;
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Последний сохраненный или загруженный снимок для каждого манифеста.
+     * Снимок позволяет при следующем сохранении найти изменившиеся сегменты.
+     */
+    private static final Map<Path, Baseline> BASELINES = new ConcurrentHashMap<>();
+
+    private final Path manifestPath;
+    private final Path directory;
+    private final Gson gson;
+
+    /**
+     * Конструктор хранилища.
+     *
+     * @param fileName имя файла манифеста
+     * @param gson объект Gson для чтения и записи манифеста
+     */
+    SegmentStore(String fileName, Gson gson) {
+        this.manifestPath = Path.of(fileName).toAbsolutePath().normalize();
+        this.directory = Path.of(manifestPath + ".segments");
+        this.gson = gson;
+    }
+
+    /**
+     * Проверяет, содержит ли файл манифест сегментов: в отличие от JSON-массива
+     * групп, манифест является JSON-объектом.
+     *
+     * @param fileName имя файла
+     * @return true, если первый значимый символ файла — '{'
+     * @throws IOException если файл не удалось прочитать
+     */
+    static boolean isManifest(String fileName) throws IOException {
+        final File file = new File(fileName);
+        if (!file.isFile()) {
+            return false;
+        }
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            int c = in.read();
+            while (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+                c = in.read();
+            }
+            return c == '{';
+        }
+    }
+
+    /**
+     * Загружает коллекцию из сегментов, заменяя ее содержимое. Сегменты
+     * читаются параллельно.
+     *
+     * @param collection коллекция
+     * @return количество загруженных групп
+     * @throws IOException если манифест или сегмент поврежден или не читается
+     * @throws IllegalArgumentException если в сегментах найдены дублирующиеся ID
+     */
+    int load(StudyGroupCollection collection) throws IOException {
+        final Manifest manifest = readManifest();
+        final int parallelism = Runtime.getRuntime().availableProcessors();
+        final ForkJoinPool pool = new ForkJoinPool(parallelism);
+        final List<Loaded> loaded = new ArrayList<>();
+        try {
+            final List<Future<Loaded>> tasks = new ArrayList<>();
+            for (Segment segment : manifest.segments) {
+                tasks.add(pool.submit(() -> {
+                    try {
+                        return readSegment(segment, manifest.span);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }));
+            }
+            for (Future<Loaded> task : tasks) {
+                loaded.add(task.get());
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Загрузка прервана", e);
+        } finally {
+            pool.shutdownNow();
+        }
+        final Merge merge = new Merge(loaded);
+        collection.loadFrom(merge, merge.labels());
+        collection.reserveIds(manifest.highestId);
+        BASELINES.put(manifestPath, new Baseline(manifest.generation, collection.getCollection()));
+        return collection.size();
+    }
+
+    /**
+     * Сохраняет коллекцию. Если группы переданы снимком коллекции, а манифест не менялся
+     * с последнего сохранения или загрузки в этом процессе, перезаписываются только
+     * сегменты с изменившимися группами, иначе — все сегменты.
+     *
+     * @param groups группы в порядке позиций
+     * @return файл манифеста
+     * @throws IOException если произошла ошибка при записи
+     */
+    File save(List<StudyGroup> groups) throws IOException {
+        return save(groups, temporary -> { });
+    }
+
+    /**
+     * Сохраняет коллекцию так же, как {@link #save(List)}, но перед атомарной заменой
+     * манифеста передает записанный временный манифест действию.
+     *
+     * @param groups группы в порядке позиций
+     * @param beforeReplace действие над временным манифестом перед заменой
+     * @return файл манифеста
+     * @throws IOException если произошла ошибка при записи или в действии
+     */
+    File save(List<StudyGroup> groups, FileManager.BeforeReplace beforeReplace)
+            throws IOException {
+        final Manifest previous = isManifest(manifestPath.toString()) ? readManifest() : null;
+        final CollectionSnapshot snapshot = groups instanceof CollectionSnapshot
+                ? (CollectionSnapshot) groups : null;
+        final Baseline baseline = BASELINES.get(manifestPath);
+        final boolean incremental = previous != null && snapshot != null && baseline != null
+                && baseline.generation == previous.generation;
+
+        final Manifest manifest = new Manifest();
+        manifest.format = FORMAT;
+        manifest.version = VERSION;
+        manifest.generation = previous == null ? 1 : previous.generation + 1;
+        manifest.span = incremental ? previous.span : DEFAULT_SPAN;
+        manifest.highestId = snapshot != null ? snapshot.getHighestId() : 0;
+
+        final TreeMap<Long, Changes> changes = new TreeMap<>();
+        if (snapshot != null) {
+            snapshot.forEachChange(incremental ? baseline.snapshot : null,
+                    new CollectionSnapshot.ChangeVisitor() {
+                        @Override
+                        public void removed(long label, StudyGroup group) {
+                            changes(changes, group, manifest.span).removed.add(label);
+                        }
+
+                        @Override
+                        public void added(long label, StudyGroup group) {
+                            final Changes segment = changes(changes, group, manifest.span);
+                            segment.labels.add(label);
+                            segment.groups.add(group);
+                        }
+                    });
+        } else {
+            // Список без меток: метки назначаются по порядку, как при загрузке
+            long label = 0;
+            for (StudyGroup group : groups) {
+                manifest.highestId = Math.max(manifest.highestId, group.getId());
+                final Changes segment = changes(changes, group, manifest.span);
+                segment.labels.add(label++);
+                segment.groups.add(group);
+            }
+        }
+
+        final Map<Long, Segment> segments = new TreeMap<>();
+        if (incremental) {
+            for (Segment segment : previous.segments) {
+                segments.put(segment.key, segment);
+            }
+        }
+        Files.createDirectories(directory);
+        for (Map.Entry<Long, Changes> entry : changes.entrySet()) {
+            final long key = entry.getKey();
+            final Segment old = segments.remove(key);
+            final Changes segmentChanges = entry.getValue();
+            final List<StudyGroup> content = new ArrayList<>();
+            final long[] labels = merge(old == null ? null : readSegment(old, manifest.span),
+                    segmentChanges, content);
+            if (!content.isEmpty()) {
+                final Segment segment = new Segment();
+                segment.key = key;
+                segment.file = key + "." + manifest.generation + SEGMENT_SUFFIX;
+                segment.count = content.size();
+                writeSegment(directory.resolve(segment.file), content, labels);
+                segments.put(key, segment);
+            }
+        }
+        manifest.segments = new ArrayList<>(segments.values());
+        writeManifest(manifest, beforeReplace);
+
+        if (snapshot != null) {
+            BASELINES.put(manifestPath, new Baseline(manifest.generation, snapshot));
+        } else {
+            BASELINES.remove(manifestPath);
+        }
+        deleteUnreferenced(manifest);
+        return manifestPath.toFile();
+    }
+
+    private static Changes changes(Map<Long, Changes> changes, StudyGroup group, long span) {
+        return changes.computeIfAbsent(Math.floorDiv(group.getId(), span), key -> new Changes());
+    }
+
+    /**
+     * Сливает прежнее содержимое сегмента с изменениями в порядке меток.
+     *
+     * @param old прежнее содержимое или null
+     * @param changes удаленные и добавленные группы сегмента
+     * @param content список, в который добавляются группы нового содержимого
+     * @return метки групп нового содержимого
+     */
+    private static long[] merge(Loaded old, Changes changes, List<StudyGroup> content) {
+        final int oldCount = old == null ? 0 : old.labels.length;
+        final long[] labels = new long[oldCount + changes.labels.size()];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < oldCount || j < changes.labels.size()) {
+            if (j == changes.labels.size()
+                    || (i < oldCount && old.labels[i] < changes.labels.get(j))) {
+                if (!changes.removed.contains(old.labels[i])) {
+                    labels[count++] = old.labels[i];
+                    content.add(old.groups[i]);
+                }
+                i++;
+            } else {
+                if (i < oldCount && old.labels[i] == changes.labels.get(j)) {
+                    // Группа на этой позиции заменена
+                    i++;
+                }
+                labels[count++] = changes.labels.get(j);
+                content.add(changes.groups.get(j));
+                j++;
+            }
+        }
+        return Arrays.copyOf(labels, count);
+    }
+
+    private Manifest readManifest() throws IOException {
+        final Manifest manifest;
+        try (Reader reader = Files.newBufferedReader(manifestPath, StandardCharsets.UTF_8)) {
+            manifest = gson.fromJson(reader, Manifest.class);
+        } catch (JsonParseException e) {
+            throw new IOException("Ошибка парсинга манифеста сегментов: " + e.getMessage(), e);
+        }
+        if (manifest == null || !FORMAT.equals(manifest.format)) {
+            throw new IOException("Ошибка парсинга манифеста сегментов: неизвестный формат");
+        }
+        if (manifest.version != VERSION) {
+            throw new IOException("Неподдерживаемая версия манифеста сегментов: "
+                    + manifest.version);
+        }
+        if (manifest.span <= 0 || manifest.segments == null) {
+            throw new IOException("Ошибка парсинга манифеста сегментов: нет списка сегментов");
+        }
+        final Set<Long> keys = new HashSet<>();
+        for (Segment segment : manifest.segments) {
+            if (segment == null || segment.file == null || !keys.add(segment.key)
+                    || segment.file.contains("/") || segment.file.contains("\\")) {
+                throw new IOException(
+                        "Ошибка парсинга манифеста сегментов: некорректный сегмент");
+            }
+        }
+        return manifest;
+    }
+
+    private void writeManifest(Manifest manifest, FileManager.BeforeReplace beforeReplace)
+            throws IOException {
+        final Path temporary = Path.of(manifestPath + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            final Writer writer = Channels.newWriter(channel, StandardCharsets.UTF_8);
+            gson.toJson(manifest, writer);
+            writer.flush();
+            channel.force(true);
+        }
+        beforeReplace.accept(temporary);
+        Files.move(temporary, manifestPath, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Читает сегмент целиком и проверяет его согласованность с манифестом.
+     */
+    private Loaded readSegment(Segment segment, long span) throws IOException {
+        final Path path = directory.resolve(segment.file);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long[] labels = BinarySnapshot.readLabels(channel);
+            if (labels.length != segment.count) {
+                throw new IOException("количество групп не совпадает с манифестом");
+            }
+            final StudyGroup[] groups = new StudyGroup[labels.length];
+            try (BinarySnapshot.Records records = BinarySnapshot.read(channel)) {
+                for (int i = 0; i < groups.length; i++) {
+                    groups[i] = records.next();
+                    if (Math.floorDiv(groups[i].getId(), span) != segment.key
+                            || (i > 0 && labels[i] <= labels[i - 1])) {
+                        throw new IOException("группа " + groups[i].getId()
+                                + " не соответствует сегменту");
+                    }
+                }
+            }
+            return new Loaded(labels, groups);
+        } catch (IOException | IllegalStateException e) {
+            final String reason = e instanceof EOFException || e.getCause() instanceof EOFException
+                    ? "файл обрезан" : e.getMessage();
+            throw new IOException("Ошибка парсинга сегмента " + path + ": " + reason, e);
+        }
+    }
+
+    private static void writeSegment(Path path, List<StudyGroup> groups, long[] labels)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            final OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel),
+                    BUFFER_SIZE);
+            BinarySnapshot.write(out, groups, labels);
+            out.flush();
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Удаляет файлы сегментов, на которые не ссылается манифест: замененные
+     * при этом сохранении и оставшиеся после прерванных сохранений.
+     */
+    private void deleteUnreferenced(Manifest manifest) throws IOException {
+        final Set<String> referenced = new HashSet<>();
+        for (Segment segment : manifest.segments) {
+            referenced.add(segment.file);
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+                "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                if (!referenced.contains(file.getFileName().toString())) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Манифест: список сегментов текущей версии.
+     */
+    private static final class Manifest {
+        String format;
+        int version;
+        long generation;
+        long span;
+        /** Наибольший выданный ID: ID удаленных групп не выдаются повторно. */
+        long highestId;
+        List<Segment> segments;
+    }
+
+    /**
+     * Описание сегмента в манифесте.
+     */
+    private static final class Segment {
+        long key;
+        String file;
+        int count;
+    }
+
+    /**
+     * Снимок коллекции, соответствующий версии манифеста.
+     */
+    private static final class Baseline {
+        final long generation;
+        final CollectionSnapshot snapshot;
+
+        Baseline(long generation, CollectionSnapshot snapshot) {
+            this.generation = generation;
+            this.snapshot = snapshot;
+        }
+    }
+
+    /**
+     * Изменения одного сегмента: метки удаленных групп и добавленные группы по возрастанию меток.
+     */
+    private static final class Changes {
+        final Set<Long> removed = new HashSet<>();
+        final List<Long> labels = new ArrayList<>();
+        final List<StudyGroup> groups = new ArrayList<>();
+    }
+
+    /**
+     * Прочитанное содержимое сегмента.
+     */
+    private static final class Loaded {
+        final long[] labels;
+        final StudyGroup[] groups;
+
+        Loaded(long[] labels, StudyGroup[] groups) {
+            this.labels = labels;
+            this.groups = groups;
+        }
+    }
+
+    /**
+     * Слияние прочитанных сегментов в порядке меток.
+     */
+    private static final class Merge implements Iterator<StudyGroup> {
+        private final PriorityQueue<int[]> heads;
+        private final List<Loaded> segments;
+        private long label;
+
+        Merge(List<Loaded> segments) {
+            this.segments = segments;
+            // Элемент очереди: номер сегмента и позиция в нем
+            this.heads = new PriorityQueue<>(Math.max(1, segments.size()), (a, b) -> Long.compare(
+                    segments.get(a[0]).labels[a[1]], segments.get(b[0]).labels[b[1]]));
+            for (int i = 0; i < segments.size(); i++) {
+                if (segments.get(i).labels.length > 0) {
+                    heads.add(new int[] {i, 0});
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !heads.isEmpty();
+        }
+
+        @Override
+        public StudyGroup next() {
+            final int[] head = heads.poll();
+            if (head == null) {
+                throw new NoSuchElementException();
+            }
+            final Loaded segment = segments.get(head[0]);
+            label = segment.labels[head[1]];
+            final StudyGroup group = segment.groups[head[1]];
+            if (++head[1] < segment.labels.length) {
+                heads.add(head);
+            }
+            return group;
+        }
+
+        /**
+         * Возвращает метки групп, выданных итератором: метка запрашивается после группы.
+         */
+        PrimitiveIterator.OfLong labels() {
+            return new PrimitiveIterator.OfLong() {
+                @Override
+                public boolean hasNext() {
+                    return true;
+                }
+
+                @Override
+                public long nextLong() {
+                    return label;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package util;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import model.FormOfEducation;
+import model.StudyGroup;
+
+/**
+ * Адаптер для сериализации учебной группы без рефлексии.
+ *
+ * <p>Поля записываются в том же порядке и с теми же именами, что и при сериализации
+ * Gson по умолчанию, поэтому формат файла не меняется. При чтении значения проходят
+ * через сеттеры модели, и некорректная группа сообщается как ошибка разбора JSON.
+ */
+public class StudyGroupAdapter extends TypeAdapter<StudyGroup> {
+
+    private final CoordinatesAdapter coordinatesAdapter;
+    private final LocalDateTimeAdapter dateTimeAdapter;
+    private final PersonAdapter personAdapter;
+
+    /**
+     * Конструктор адаптера.
+     *
+     * @param coordinatesAdapter адаптер координат
+     * @param dateTimeAdapter адаптер даты создания
+     * @param personAdapter адаптер администратора группы
+     */
+    public StudyGroupAdapter(CoordinatesAdapter coordinatesAdapter,
+                             LocalDateTimeAdapter dateTimeAdapter, PersonAdapter personAdapter) {
+        this.coordinatesAdapter = coordinatesAdapter;
+        this.dateTimeAdapter = dateTimeAdapter;
+        this.personAdapter = personAdapter;
+    }
+
+    /**
+     * Сериализует учебную группу в JSON. Поля со значением null не записываются.
+     *
+     * @param out JsonWriter для записи JSON
+     * @param value учебная группа
+     * @throws IOException если произошла ошибка при записи
+     */
+    @Override
+    public void write(JsonWriter out, StudyGroup value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("id").value(value.getId());
+        out.name("name").value(value.getName());
+        out.name("coordinates");
+        coordinatesAdapter.write(out, value.getCoordinates());
+        out.name("creationDate");
+        dateTimeAdapter.write(out, value.getCreationDate());
+        out.name("studentsCount").value(value.getStudentsCount());
+        out.name("shouldBeExpelled").value(value.getShouldBeExpelled());
+        out.name("averageMark").value((Number) value.getAverageMark());
+        final FormOfEducation form = value.getFormOfEducation();
+        out.name("formOfEducation").value(form == null ? null : form.name());
+        out.name("groupAdmin");
+        personAdapter.write(out, value.getGroupAdmin());
+        out.endObject();
+    }
+
+    /**
+     * Десериализует JSON в учебную группу. Неизвестные поля и значения null пропускаются,
+     * неизвестная форма обучения считается отсутствующей.
+     *
+     * @param in JsonReader для чтения JSON
+     * @return учебная группа или null
+     * @throws IOException если произошла ошибка при чтении
+     * @throws JsonSyntaxException если значение поля некорректно
+     */
+    @Override
+    public StudyGroup read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        final StudyGroup group = new StudyGroup();
+        in.beginObject();
+        while (in.hasNext()) {
+            final String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            try {
+                switch (name) {
+                    case "id":
+                        group.setId(in.nextLong());
+                        break;
+                    case "name":
+                        group.setName(in.nextString());
+                        break;
+                    case "coordinates":
+                        group.setCoordinates(coordinatesAdapter.read(in));
+                        break;
+                    case "creationDate":
+                        group.setCreationDate(dateTimeAdapter.read(in));
+                        break;
+                    case "studentsCount":
+                        group.setStudentsCount(in.nextInt());
+                        break;
+                    case "shouldBeExpelled":
+                        group.setShouldBeExpelled(in.nextLong());
+                        break;
+                    case "averageMark":
+                        group.setAverageMark((float) in.nextDouble());
+                        break;
+                    case "formOfEducation":
+                        final FormOfEducation form = constant(FormOfEducation.class,
+                                in.nextString());
+                        if (form != null) {
+                            group.setFormOfEducation(form);
+                        }
+                        break;
+                    case "groupAdmin":
+                        group.setGroupAdmin(personAdapter.read(in));
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            } catch (IllegalArgumentException e) {
+                throw new JsonSyntaxException(e.getMessage() + " " + in.getPath(), e);
+            }
+        }
+        in.endObject();
+        return group;
+    }
+
+    /**
+     * Возвращает константу перечисления по имени.
+     *
+     * @param type класс перечисления
+     * @param name имя константы
+     * @param <E> тип перечисления
+     * @return константа или null, если имя неизвестно
+     */
+    static <E extends Enum<E>> E constant(Class<E> type, String name) {
+        try {
+            return Enum.valueOf(type, name);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -1,6 +1,14 @@
 package util;
 
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
 import java.util.Date;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.Scanner;
 import model.Color;
 import model.Coordinates;
@@ -10,11 +18,36 @@ import model.StudyGroup;
 
 /**
  * Класс для интерактивного ввода данных StudyGroup.
+ *
+ * <p>Во время выполнения скрипта значения полей читаются из строк скрипта, следующих
+ * за командой (см. {@link #pushScript(Iterator)}): приглашения не выводятся, а
+ * некорректное значение прерывает команду вместо повторного запроса. Кроме того,
+ * элемент можно задать одной строкой JSON после аргументов команды
+ * (см. {@link #setInlineRecord(String)}), например {@code add {"name": ...}}.
+ *
+ * <p>Элемент в строках скрипта занимает восемь строк: семь полей группы и строку
+ * администратора, а если она не пуста — еще пять строк полей администратора. Если команда
+ * прервана или не стала читать элемент, оставшиеся строки элемента пропускаются
+ * (см. {@link #expectRecord()}), чтобы они не выполнялись как команды.
  */
 public class StudyGroupInputHandler {
 
     private final Scanner scanner;
     private final IdGenerator idGenerator;
+    private final TypeAdapter<StudyGroup> recordAdapter;
+    /** Строк элемента в скрипте без полей администратора, включая строку администратора. */
+    private static final int GROUP_LINES = 8;
+    /** Строк полей администратора в скрипте. */
+    private static final int ADMIN_LINES = 5;
+
+    private final Deque<Iterator<String>> scripts = new ArrayDeque<>();
+    private String inlineRecord;
+    /** Команда скрипта ожидает элемент в следующих строках, и он еще не прочитан. */
+    private boolean recordExpected;
+    /** Прочитано строк текущего элемента скрипта. */
+    private int recordLines;
+    /** Строка администратора текущего элемента не пуста. */
+    private boolean recordHasAdmin;
 
     /**
      * Конструктор класса StudyGroupInputHandler.
@@ -23,43 +56,279 @@ public class StudyGroupInputHandler {
      * @param idGenerator генератор уникальных ID
      */
     public StudyGroupInputHandler(Scanner scanner, IdGenerator idGenerator) {
+        this(scanner, idGenerator, null);
+    }
+
+    /**
+     * Конструктор обработчика ввода, принимающего элементы в виде JSON.
+     *
+     * @param scanner     объект Scanner для чтения ввода
+     * @param idGenerator генератор уникальных ID
+     * @param gson        объект Gson для разбора элементов, заданных строкой JSON, или null
+     */
+    public StudyGroupInputHandler(Scanner scanner, IdGenerator idGenerator, Gson gson) {
         this.scanner = scanner;
         this.idGenerator = idGenerator;
+        this.recordAdapter = gson != null ? gson.getAdapter(StudyGroup.class) : null;
+    }
+
+    /**
+     * Начинает чтение значений полей из строк скрипта. Вложенные скрипты
+     * читают свои строки, пока не вызван {@link #popScript()}.
+     *
+     * @param lines оставшиеся строки скрипта
+     */
+    public void pushScript(Iterator<String> lines) {
+        scripts.push(lines);
+    }
+
+    /**
+     * Возвращает чтение к предыдущему скрипту или к консоли.
+     */
+    public void popScript() {
+        scripts.pop();
+    }
+
+    /**
+     * Задает элемент для следующего {@link #readStudyGroup()} строкой JSON.
+     * Запись используется один раз.
+     *
+     * @param record JSON-объект элемента или null, чтобы отменить запись
+     */
+    public void setInlineRecord(String record) {
+        this.inlineRecord = record;
+    }
+
+    /**
+     * Отмечает, что значения полей элемента для следующей команды скрипта записаны
+     * в следующих строках. Если команда их не прочитает, {@link #skipRecord()}
+     * пропустит их.
+     */
+    public void expectRecord() {
+        recordExpected = !scripts.isEmpty();
+        recordLines = 0;
+        recordHasAdmin = false;
     }
 
     /**
-     * Читает данные StudyGroup с консоли.
+     * Пропускает строки скрипта с элементом, который ожидался после команды
+     * (см. {@link #expectRecord()}), но не был прочитан, например, потому что
+     * элемент с указанным ID не найден.
+     */
+    public void skipRecord() {
+        if (recordExpected) {
+            recordExpected = false;
+            skipRestOfRecord();
+        }
+    }
+
+    /**
+     * Читает данные StudyGroup с консоли, из скрипта или из заданной строки JSON.
+     * ID выдается генератором после того, как все поля прочитаны.
      *
      * @return новый объект StudyGroup с введенными данными
+     * @throws IllegalArgumentException если в скрипте или строке JSON задано
+     *     некорректное значение
      */
     public StudyGroup readStudyGroup() {
-        final StudyGroup group = new StudyGroup();
+        final StudyGroup group = read();
         group.setId(idGenerator.getNextId());
+        return group;
+    }
+
+    /**
+     * Читает новую версию существующего элемента: данные читаются так же, как в
+     * {@link #readStudyGroup()}, но элемент получает заданный ID, а не новый.
+     *
+     * @param id ID обновляемого элемента
+     * @return новый объект StudyGroup с введенными данными
+     * @throws IllegalArgumentException если в скрипте или строке JSON задано
+     *     некорректное значение
+     */
+    public StudyGroup readStudyGroup(long id) {
+        final StudyGroup group = read();
+        group.setId(id);
+        return group;
+    }
+
+    private StudyGroup read() {
+        final String record = inlineRecord;
+        if (record != null) {
+            inlineRecord = null;
+            final StudyGroup group = parseRecord(record);
+            group.setCreationDate(LocalDateTime.now());
+            return group;
+        }
+        if (scripts.isEmpty()) {
+            return readFields();
+        }
+        recordExpected = false;
+        recordLines = 0;
+        recordHasAdmin = false;
+        try {
+            return readFields();
+        } catch (IllegalArgumentException e) {
+            // Команда прервана: остаток элемента не должен выполняться как команды
+            skipRestOfRecord();
+            throw e;
+        }
+    }
+
+    /**
+     * Читает значения полей элемента по одному.
+     *
+     * @return элемент без ID
+     */
+    private StudyGroup readFields() {
+        final StudyGroup group = new StudyGroup();
 
-        System.out.print("Введите название группы: ");
+        prompt("Введите название группы: ");
         group.setName(readString());
 
-        System.out.print("Введите координаты (Число):\n");
+        prompt("Введите координаты (Число):\n");
         group.setCoordinates(readCoordinates());
 
-        System.out.print("Введите количество студентов (больше нуля): ");
+        prompt("Введите количество студентов (больше нуля): ");
         final int studentsCount = readPositiveInt();
         group.setStudentsCount(studentsCount);
 
         group.setShouldBeExpelled(readShouldBeExpelled(studentsCount));
 
-        System.out.print("Введите среднюю оценку (больше нуля): ");
+        prompt("Введите среднюю оценку (больше нуля): ");
         group.setAverageMark(readPositiveFloat());
 
-        System.out.print("Выберите форму обучения: ");
+        prompt("Выберите форму обучения: ");
         group.setFormOfEducation(readFormOfEducation());
 
-        System.out.print("Введите данные администратора группы (оставьте пустым для пропуска): ");
+        prompt("Введите данные администратора группы (оставьте пустым для пропуска): ");
         group.setGroupAdmin(readPerson());
 
         return group;
     }
 
+    /**
+     * Разбирает элемент, заданный строкой JSON, и проверяет обязательные поля.
+     *
+     * @param record JSON-объект элемента
+     * @return элемент без ID
+     * @throws IllegalArgumentException если запись некорректна
+     */
+    private StudyGroup parseRecord(String record) {
+        if (recordAdapter == null) {
+            throw new IllegalArgumentException("Ввод элемента строкой JSON не поддерживается");
+        }
+        final StudyGroup group;
+        try {
+            group = recordAdapter.fromJson(record);
+        } catch (IOException | JsonParseException e) {
+            throw new IllegalArgumentException("Некорректная запись элемента: " + e.getMessage(), e);
+        }
+        if (group == null || group.getName() == null || group.getCoordinates() == null
+                || group.getFormOfEducation() == null) {
+            throw new IllegalArgumentException("В записи элемента должны быть заданы name, "
+                    + "coordinates, studentsCount, shouldBeExpelled, averageMark и formOfEducation");
+        }
+        if (group.getStudentsCount() <= 0 || group.getShouldBeExpelled() <= 0
+                || group.getAverageMark() <= 0) {
+            throw new IllegalArgumentException("Поля studentsCount, shouldBeExpelled и "
+                    + "averageMark должны быть больше нуля");
+        }
+        if (group.getShouldBeExpelled() > group.getStudentsCount()) {
+            throw new IllegalArgumentException("Количество отчисляемых не может быть больше "
+                    + "количества студентов в группе");
+        }
+        final Person admin = group.getGroupAdmin();
+        if (admin != null && (admin.getName() == null || admin.getHeight() <= 0
+                || admin.getPassportId() == null)) {
+            throw new IllegalArgumentException(
+                    "У администратора должны быть заданы name, height и passportId");
+        }
+        return group;
+    }
+
+    /**
+     * Пропускает непрочитанные строки текущего элемента скрипта.
+     */
+    private void skipRestOfRecord() {
+        final Iterator<String> script = scripts.peek();
+        if (script == null) {
+            return;
+        }
+        while (recordLines < GROUP_LINES && script.hasNext()) {
+            final String line = script.next();
+            recordLines++;
+            if (recordLines == GROUP_LINES) {
+                recordHasAdmin = !line.trim().isEmpty();
+            }
+        }
+        final int total = recordHasAdmin ? GROUP_LINES + ADMIN_LINES : GROUP_LINES;
+        while (recordLines < total && script.hasNext()) {
+            script.next();
+            recordLines++;
+        }
+    }
+
+    /**
+     * Читает следующую строку из скрипта или с консоли.
+     *
+     * @return строка без начальных и конечных пробелов
+     * @throws IllegalArgumentException если скрипт закончился
+     */
+    private String nextLine() {
+        final Iterator<String> script = scripts.peek();
+        if (script == null) {
+            return scanner.nextLine().trim();
+        }
+        if (!script.hasNext()) {
+            throw new IllegalArgumentException("Скрипт закончился до конца ввода элемента");
+        }
+        recordLines++;
+        return script.next().trim();
+    }
+
+    /**
+     * Выводит приглашение к вводу. При выполнении скрипта приглашения не выводятся.
+     */
+    private void prompt(String text) {
+        if (scripts.isEmpty()) {
+            System.out.print(text);
+        }
+    }
+
+    /**
+     * Выводит строку меню выбора. При выполнении скрипта меню не выводится.
+     */
+    private void menu(String text) {
+        if (scripts.isEmpty()) {
+            System.out.println(text);
+        }
+    }
+
+    /**
+     * Просит повторить ввод. В скрипте повторить ввод нельзя, поэтому команда прерывается.
+     *
+     * @throws IllegalArgumentException при выполнении скрипта
+     */
+    private void retry(String text) {
+        if (!scripts.isEmpty()) {
+            throw new IllegalArgumentException("Некорректное значение в скрипте. "
+                    + text.trim().replaceFirst(":$", ""));
+        }
+        System.out.print(text);
+    }
+
+    /**
+     * Сообщает об ошибке ввода. В скрипте команда прерывается.
+     *
+     * @throws IllegalArgumentException при выполнении скрипта
+     */
+    private void error(String text) {
+        if (!scripts.isEmpty()) {
+            throw new IllegalArgumentException(text.replaceFirst("^Ошибка: ", ""));
+        }
+        System.out.println(text);
+    }
+
     /**
      * Читает координаты с консоли.
      *
@@ -67,9 +336,9 @@ public class StudyGroupInputHandler {
      */
     private Coordinates readCoordinates() {
         final Coordinates coordinates = new Coordinates();
-        System.out.print("Введите координату X: ");
+        prompt("Введите координату X: ");
         coordinates.setX1(readDouble());
-        System.out.print("Введите координату Y: ");
+        prompt("Введите координату Y: ");
         coordinates.setY1(readDouble());
         return coordinates;
     }
@@ -80,25 +349,26 @@ public class StudyGroupInputHandler {
      * @return новый объект Person с введенными данными или null, если ввод пустой
      */
     private Person readPerson() {
-        final String input = scanner.nextLine().trim();
+        final String input = nextLine();
         if (input.isEmpty()) {
             return null;
         }
+        recordHasAdmin = true;
 
         final Person person = new Person();
-        System.out.print("Введите им: ");
+        prompt("Введите им: ");
         person.setName(readString());
 
-        System.out.print("Введите дату рождения (yyyy-MM-dd) или оставьте пустым: ");
+        prompt("Введите дату рождения (yyyy-MM-dd) или оставьте пустым: ");
         person.setBirthday(readDate());
 
-        System.out.print("Введите рост: ");
+        prompt("Введите рост: ");
         person.setHeight(readPositiveFloat());
 
-        System.out.print("Введите номер паспорта: ");
+        prompt("Введите номер паспорта: ");
         person.setPassportId(readString());
 
-        System.out.print("Выберите цвет глаз: ");
+        prompt("Выберите цвет глаз: ");
         person.setEyeColor(readColor());
 
         return person;
@@ -112,9 +382,9 @@ public class StudyGroupInputHandler {
     private String readString() {
         String input;
         do {
-            input = scanner.nextLine().trim();
+            input = nextLine();
             if (input.isEmpty()) {
-                System.out.print("Значение не может быть пустым. Повторите ввод: ");
+                retry("Значение не может быть пустым. Повторите ввод: ");
             }
         } while (input.isEmpty());
         return input;
@@ -138,10 +408,10 @@ public class StudyGroupInputHandler {
     private long readShouldBeExpelled(int studentsCount) {
         long shouldBeExpelled;
         do {
-            System.out.print("Введите количество отчисляемых (минимум 1): ");
+            prompt("Введите количество отчисляемых (минимум 1): ");
             shouldBeExpelled = readPositiveLong();
             if (shouldBeExpelled > studentsCount) {
-                System.out.println("Ошибка: Количество отчисляемых не может быть больше "
+                error("Ошибка: Количество отчисляемых не может быть больше "
                         + "количества студентов в группе");
             }
         } while (shouldBeExpelled > studentsCount);
@@ -156,13 +426,13 @@ public class StudyGroupInputHandler {
     private long readPositiveLong() {
         while (true) {
             try {
-                final long value = Long.parseLong(scanner.nextLine().trim());
+                final long value = Long.parseLong(nextLine());
                 if (value < 0) {
                     throw new NumberFormatException();
                 }
                 return value;
             } catch (NumberFormatException e) {
-                System.out.print("Введите положительное целое число и не ноль: ");
+                retry("Введите положительное целое число и не ноль: ");
             }
         }
     }
@@ -188,13 +458,13 @@ public class StudyGroupInputHandler {
                                                     java.util.function.Function<String, T> parser) {
         while (true) {
             try {
-                final T value = parser.apply(scanner.nextLine().trim());
+                final T value = parser.apply(nextLine());
                 if (value.doubleValue() <= 0) {
                     throw new NumberFormatException();
                 }
                 return value;
             } catch (NumberFormatException e) {
-                System.out.print("Введите положительное " + typeName + ": ");
+                retry("Введите положительное " + typeName + ": ");
             }
         }
     }
@@ -207,9 +477,9 @@ public class StudyGroupInputHandler {
     private double readDouble() {
         while (true) {
             try {
-                return Double.parseDouble(scanner.nextLine().trim());
+                return Double.parseDouble(nextLine());
             } catch (NumberFormatException e) {
-                System.out.print("Введите число: ");
+                retry("Введите число: ");
             }
         }
     }
@@ -221,18 +491,18 @@ public class StudyGroupInputHandler {
      */
     private FormOfEducation readFormOfEducation() {
         while (true) {
-            System.out.println("Выберите форму обучения:");
+            menu("Выберите форму обучения:");
             final FormOfEducation[] forms = FormOfEducation.values();
             for (int i = 0; i < forms.length; i++) {
-                System.out.println((i + 1) + ". " + forms[i].name());
+                menu((i + 1) + ". " + forms[i].name());
             }
-            System.out.print("Введите номер (1-" + forms.length + ") или название формы обуч.: ");
+            prompt("Введите номер (1-" + forms.length + ") или название формы обуч.: ");
 
-            final String input = scanner.nextLine().trim();
+            final String input = nextLine();
 
             // Проверка на пустой ввод
             if (input.isEmpty()) {
-                System.out.println("Ошибка: Ввод не может быть пустым");
+                error("Ошибка: Ввод не может быть пустым");
                 continue;
             }
 
@@ -243,7 +513,7 @@ public class StudyGroupInputHandler {
                 if (index < forms.length) {
                     return forms[index];
                 }
-                System.out.println("Ошибка: Номер должен быть от 1 до " + forms.length);
+                error("Ошибка: Номер должен быть от 1 до " + forms.length);
                 continue;
             }
 
@@ -256,7 +526,7 @@ public class StudyGroupInputHandler {
                 }
             }
 
-            System.out.println("Ошибка: Неверный формат ввода. "
+            error("Ошибка: Неверный формат ввода. "
                     + "Пожалуйста, введите номер (1-" + forms.length + ")"
                     + " или название формы обучения");
         }
@@ -269,18 +539,18 @@ public class StudyGroupInputHandler {
      */
     private Color readColor() {
         while (true) {
-            System.out.println("Выберите цвет глаз:");
+            menu("Выберите цвет глаз:");
             final Color[] colors = Color.values();
             for (int i = 0; i < colors.length; i++) {
-                System.out.println((i + 1) + ". " + colors[i].name());
+                menu((i + 1) + ". " + colors[i].name());
             }
-            System.out.print("Введите номер (1-" + colors.length + ") или название цвета: ");
+            prompt("Введите номер (1-" + colors.length + ") или название цвета: ");
             
-            final String input = scanner.nextLine().trim();
+            final String input = nextLine();
             
             // Проверка на пустой ввод
             if (input.isEmpty()) {
-                System.out.println("Ошибка: Ввод не может быть пустым");
+                error("Ошибка: Ввод не может быть пустым");
                 continue;
             }
 
@@ -290,7 +560,7 @@ public class StudyGroupInputHandler {
                 if (userChoice >= 1 && userChoice <= colors.length) {
                     return colors[userChoice - 1];
                 }
-                System.out.println("Ошибка: Номер должен быть от 1 до " + colors.length);
+                error("Ошибка: Номер должен быть от 1 до " + colors.length);
                 continue;
             }
 
@@ -303,7 +573,7 @@ public class StudyGroupInputHandler {
                 }
             }
 
-            System.out.println("Ошибка: Неверный формат ввода. "
+            error("Ошибка: Неверный формат ввода. "
                     + "Пожалуйста, введите номер (1-" + colors.length + ") или название цвета");
         }
     }
@@ -314,7 +584,7 @@ public class StudyGroupInputHandler {
      * @return введенная дата или null, если ввод пустой
      */
     private Date readDate() {
-        String input = scanner.nextLine().trim();
+        String input = nextLine();
         if (input.isEmpty()) {
             return null;
         }
@@ -322,9 +592,9 @@ public class StudyGroupInputHandler {
             try {
                 return java.sql.Date.valueOf(input);
             } catch (IllegalArgumentException e) {
-                System.out.print("Ошибка: Неверный формат даты. Введите дату в формате yyyy-MM-dd"
+                retry("Ошибка: Неверный формат даты. Введите дату в формате yyyy-MM-dd"
                         + " или оставьте пустым: ");
-                input = scanner.nextLine().trim();
+                input = nextLine();
                 if (input.isEmpty()) {
                     return null;
                 }
@@ -0,0 +1,129 @@
+package benchmark;
+
+import java.util.Random;
+import java.util.Vector;
+import model.Coordinates;
+import model.FormOfEducation;
+import model.StudyGroup;
+import model.StudyGroupCollection;
+
+/**
+ * Замер операций по ID: индекс коллекции против линейного обхода вектора,
+ * которым эти операции выполнялись раньше.
+ *
+ * <p>Запуск: {@code gradle benchmarkCollection --args="<размер коллекции>"}.
+ */
+public final class CollectionBenchmark {
+
+    private static final int DEFAULT_SIZE = 1_000_000;
+    /** Обход вектора на порядки медленнее, поэтому для него хватает меньшего числа операций. */
+    private static final int SCAN_OPERATIONS = 200;
+    private static final int INDEX_OPERATIONS = 200_000;
+    /**
+     * Общий источник ID для всех замеров: при одинаковой последовательности обход
+     * находил бы группы, которые предыдущий замер перенес в начало вектора.
+     */
+    private static final Random RANDOM = new Random(42);
+
+    private CollectionBenchmark() {
+    }
+
+    /**
+     * Точка входа.
+     *
+     * @param args размер коллекции (необязательно)
+     */
+    public static void main(String[] args) {
+        final int size = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_SIZE;
+        final StudyGroupCollection collection = new StudyGroupCollection();
+        final Vector<StudyGroup> vector = new Vector<>(size);
+        for (long id = 1; id <= size; id++) {
+            final StudyGroup group = group(id);
+            collection.add(group);
+            vector.add(group);
+        }
+        System.out.printf("Размер коллекции: %d%n", size);
+
+        for (int round = 0; round < 2; round++) {
+            // Первый проход прогревает JIT, выводится второй
+            final boolean print = round == 1;
+            report(print, "findById, индекс", INDEX_OPERATIONS,
+                    measure(INDEX_OPERATIONS, size, id -> collection.findById(id)));
+            report(print, "findById, обход", SCAN_OPERATIONS,
+                    measure(SCAN_OPERATIONS, size, id -> scanFind(vector, id)));
+            report(print, "update, индекс", INDEX_OPERATIONS,
+                    measure(INDEX_OPERATIONS, size, id -> collection.update(id, group(id))));
+            report(print, "update, обход", SCAN_OPERATIONS,
+                    measure(SCAN_OPERATIONS, size, id -> scanUpdate(vector, id)));
+            // Удаление и вставка сдвигают позиции остальных групп, поэтому
+            // число операций для них такое же, как для обхода
+            report(print, "removeById + add, индекс", SCAN_OPERATIONS,
+                    measure(SCAN_OPERATIONS, size, id -> {
+                        collection.removeById(id);
+                        collection.insertAt(0, group(id));
+                    }));
+            report(print, "removeById + add, обход", SCAN_OPERATIONS,
+                    measure(SCAN_OPERATIONS, size, id -> {
+                        vector.removeIf(group -> group.getId() == id);
+                        vector.add(0, group(id));
+                    }));
+        }
+    }
+
+    private static StudyGroup group(long id) {
+        final StudyGroup group = new StudyGroup();
+        group.setId(id);
+        group.setName("group-" + id);
+        final Coordinates coordinates = new Coordinates();
+        coordinates.setX1(1.0 * id);
+        coordinates.setY1(2);
+        group.setCoordinates(coordinates);
+        group.setStudentsCount(1 + (int) (id % 50));
+        group.setShouldBeExpelled(1);
+        group.setAverageMark(4f);
+        group.setFormOfEducation(FormOfEducation.EVENING_CLASSES);
+        return group;
+    }
+
+    private static StudyGroup scanFind(Vector<StudyGroup> vector, long id) {
+        for (StudyGroup group : vector) {
+            if (group.getId() == id) {
+                return group;
+            }
+        }
+        return null;
+    }
+
+    private static void scanUpdate(Vector<StudyGroup> vector, long id) {
+        for (int i = 0; i < vector.size(); i++) {
+            if (vector.get(i).getId() == id) {
+                vector.set(i, group(id));
+                return;
+            }
+        }
+    }
+
+    /**
+     * Выполняет операцию для случайных существующих ID.
+     *
+     * @return затраченное время в наносекундах
+     */
+    private static long measure(int operations, int size, Operation operation) {
+        final long start = System.nanoTime();
+        for (int i = 0; i < operations; i++) {
+            operation.run(1 + RANDOM.nextInt(size));
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static void report(boolean print, String name, int operations, long nanos) {
+        if (print) {
+            System.out.printf("%-28s %12.1f нс/операцию%n", name, (double) nanos / operations);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Operation {
+        void run(long id);
+    }
+}
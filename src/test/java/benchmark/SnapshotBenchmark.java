@@ -0,0 +1,170 @@
+package benchmark;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Stream;
+import model.Coordinates;
+import model.FormOfEducation;
+import model.Person;
+import model.StudyGroup;
+import model.StudyGroupCollection;
+import util.CoordinatesAdapter;
+import util.DateAdapter;
+import util.FileManager;
+import util.LocalDateTimeAdapter;
+import util.PersonAdapter;
+import util.StudyGroupAdapter;
+
+/**
+ * Замер сохранения и загрузки коллекции в JSON, двоичном и сегментированном форматах.
+ *
+ * <p>Запуск: {@code gradle benchmarkSnapshot --args="<размер коллекции>"}.
+ */
+public final class SnapshotBenchmark {
+
+    private static final int DEFAULT_SIZE = 500_000;
+    private static final int ROUNDS = 3;
+    private static final String[] FORMATS = {"json", "binary", "segments"};
+
+    private SnapshotBenchmark() {
+    }
+
+    /**
+     * Точка входа.
+     *
+     * @param args размер коллекции (необязательно)
+     * @throws IOException если произошла ошибка при работе с файлами
+     */
+    public static void main(String[] args) throws IOException {
+        final int size = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_SIZE;
+        final FileManager fileManager = new FileManager(gson());
+        final List<StudyGroup> groups = new ArrayList<>(size);
+        for (long id = 1; id <= size; id++) {
+            groups.add(group(id));
+        }
+        System.out.printf("Размер коллекции: %d%n", size);
+
+        // Построение коллекции входит в загрузку любого формата, поэтому
+        // время разбора файла — разница между загрузкой и этой строкой
+        long build = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            final StudyGroupCollection collection = new StudyGroupCollection(true);
+            final long start = System.nanoTime();
+            collection.loadFrom(groups.iterator());
+            build = Math.min(build, System.nanoTime() - start);
+        }
+        System.out.printf("построение коллекции без файла %8.1f мс%n", build / 1e6);
+
+        final Path directory = Files.createTempDirectory("snapshot-benchmark");
+        try {
+            for (String format : FORMATS) {
+                final String fileName = directory.resolve(format).toString();
+                long save = Long.MAX_VALUE;
+                long load = Long.MAX_VALUE;
+                // Лучший из нескольких проходов: первые включают прогрев JIT
+                for (int round = 0; round < ROUNDS; round++) {
+                    long start = System.nanoTime();
+                    save(fileManager, format, fileName, groups);
+                    save = Math.min(save, System.nanoTime() - start);
+
+                    final StudyGroupCollection collection = new StudyGroupCollection(true);
+                    start = System.nanoTime();
+                    fileManager.loadCollection(fileName, collection);
+                    load = Math.min(load, System.nanoTime() - start);
+                    if (collection.size() != size) {
+                        throw new IllegalStateException("Загружено " + collection.size()
+                                + " групп вместо " + size);
+                    }
+                }
+                System.out.printf("%-9s сохранение %8.1f мс, загрузка %8.1f мс, %10d байт%n",
+                        format, save / 1e6, load / 1e6, sizeOf(directory, format));
+            }
+        } finally {
+            // Сначала файлы, затем каталоги, в которых они лежат
+            try (Stream<Path> files = Files.walk(directory).sorted(Comparator.reverseOrder())) {
+                for (Path path : (Iterable<Path>) files::iterator) {
+                    Files.delete(path);
+                }
+            }
+        }
+    }
+
+    private static void save(FileManager fileManager, String format, String fileName,
+            List<StudyGroup> groups) throws IOException {
+        switch (format) {
+            case "binary":
+                fileManager.saveBinary(fileName, groups);
+                break;
+            case "segments":
+                fileManager.saveSegments(fileName, groups);
+                break;
+            default:
+                fileManager.saveJson(fileName, groups);
+                break;
+        }
+    }
+
+    /**
+     * Суммарный размер файлов формата, включая файлы сегментов.
+     */
+    private static long sizeOf(Path directory, String format) throws IOException {
+        long total = 0;
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) files::iterator) {
+                if (Files.isRegularFile(path)
+                        && directory.relativize(path).toString().startsWith(format)) {
+                    total += Files.size(path);
+                }
+            }
+        }
+        return total;
+    }
+
+    private static Gson gson() {
+        final LocalDateTimeAdapter localDateTimeAdapter = new LocalDateTimeAdapter();
+        final DateAdapter dateAdapter = new DateAdapter();
+        final CoordinatesAdapter coordinatesAdapter = new CoordinatesAdapter();
+        final PersonAdapter personAdapter = new PersonAdapter(dateAdapter);
+        return new GsonBuilder()
+                .registerTypeAdapter(LocalDateTime.class, localDateTimeAdapter)
+                .registerTypeHierarchyAdapter(Date.class, dateAdapter)
+                .registerTypeAdapter(Coordinates.class, coordinatesAdapter)
+                .registerTypeAdapter(Person.class, personAdapter)
+                .registerTypeAdapter(StudyGroup.class, new StudyGroupAdapter(
+                        coordinatesAdapter, localDateTimeAdapter, personAdapter))
+                .create();
+    }
+
+    private static StudyGroup group(long id) {
+        final StudyGroup group = new StudyGroup();
+        group.setId(id);
+        group.setName("group-" + id);
+        final Coordinates coordinates = new Coordinates();
+        coordinates.setX1(1.0 * id);
+        coordinates.setY1((int) (id % 100));
+        group.setCoordinates(coordinates);
+        group.setStudentsCount(1 + (int) (id % 50));
+        group.setShouldBeExpelled(1 + (int) (id % 5));
+        group.setAverageMark(3f + (id % 20) / 10f);
+        group.setFormOfEducation(FormOfEducation.values()[(int) (id % 3)]);
+        group.setCreationDate(LocalDateTime.now().minusMinutes(id));
+        if (id % 3 != 0) {
+            // Администраторы повторяются, как у групп одного потока
+            final Person admin = new Person();
+            admin.setName("admin-" + id % 1000);
+            admin.setHeight(150f + id % 50);
+            admin.setPassportId("passport-" + id);
+            admin.setBirthday(new Date(id * 86_400_000L % 1_000_000_000_000L));
+            group.setGroupAdmin(admin);
+        }
+        return group;
+    }
+}
@@ -0,0 +1,258 @@
+package command;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.List;
+import java.util.Scanner;
+import model.Color;
+import model.Coordinates;
+import model.FormOfEducation;
+import model.Person;
+import model.StudyGroup;
+import model.StudyGroupCollection;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import util.AutoSaver;
+import util.BackgroundSaver;
+import util.CommandManager;
+import util.CoordinatesAdapter;
+import util.DateAdapter;
+import util.FileManager;
+import util.IdGenerator;
+import util.LocalDateTimeAdapter;
+import util.PersonAdapter;
+import util.StudyGroupAdapter;
+import util.StudyGroupInputHandler;
+
+/**
+ * Тесты ввода элементов из строк скрипта и строкой JSON.
+ */
+class ExecuteScriptCommandTest {
+
+    private static final String RECORD = "{\"id\":999,\"name\":\"json\","
+            + "\"coordinates\":{\"x1\":1.5,\"y1\":2.0},\"studentsCount\":5,"
+            + "\"shouldBeExpelled\":1,\"averageMark\":4.5,\"formOfEducation\":\"EVENING_CLASSES\"}";
+
+    @TempDir
+    Path directory;
+
+    private final StudyGroupCollection collection = new StudyGroupCollection(true);
+    private CommandManager commandManager;
+
+    private static Gson gson() {
+        final LocalDateTimeAdapter localDateTimeAdapter = new LocalDateTimeAdapter();
+        final DateAdapter dateAdapter = new DateAdapter();
+        final CoordinatesAdapter coordinatesAdapter = new CoordinatesAdapter();
+        final PersonAdapter personAdapter = new PersonAdapter(dateAdapter);
+        return new GsonBuilder()
+                .registerTypeAdapter(LocalDateTime.class, localDateTimeAdapter)
+                .registerTypeHierarchyAdapter(Date.class, dateAdapter)
+                .registerTypeAdapter(Coordinates.class, coordinatesAdapter)
+                .registerTypeAdapter(Person.class, personAdapter)
+                .registerTypeAdapter(StudyGroup.class, new StudyGroupAdapter(
+                        coordinatesAdapter, localDateTimeAdapter, personAdapter))
+                .create();
+    }
+
+    /**
+     * Записывает скрипт и выполняет его, как команду execute_script из консоли.
+     *
+     * @return результаты команд скрипта и итог выполнения
+     */
+    private String run(String name, String... lines) throws IOException {
+        return execute(write(name, lines).toString());
+    }
+
+    /**
+     * Записывает скрипт и выполняет его атомарно.
+     */
+    private String runAtomic(String name, String... lines) throws IOException {
+        return execute(ExecuteScriptCommand.ATOMIC_OPTION, write(name, lines).toString());
+    }
+
+    private Path write(String name, String... lines) throws IOException {
+        final Path script = directory.resolve(name);
+        Files.write(script, List.of(lines), StandardCharsets.UTF_8);
+        return script;
+    }
+
+    private String execute(String... args) throws IOException {
+        if (commandManager == null) {
+            createCommandManager();
+        }
+        final StringBuilder output = new StringBuilder();
+        commandManager.executeCommand("execute_script", args, output);
+        return output.toString();
+    }
+
+    private void createCommandManager() {
+        final Gson gson = gson();
+        final BackgroundSaver saver = new BackgroundSaver(
+                directory.resolve("collection.json").toString(), collection,
+                new FileManager(gson), null);
+        // Консоль пуста: попытка читать из нее вместо скрипта завершит тест ошибкой
+        final StudyGroupInputHandler inputHandler = new StudyGroupInputHandler(
+                new Scanner(""), new IdGenerator(collection), gson);
+        commandManager = new CommandManager(collection, gson, inputHandler, null, saver,
+                new AutoSaver(collection, saver, 0, Duration.ZERO));
+    }
+
+    @Test
+    void fieldValuesAreReadFromFollowingLines() throws IOException {
+        final String output = run("script.txt",
+                "# группа без администратора",
+                "add",
+                "P3112", "1.5", "-2", "25", "3", "4.5", "2", "",
+                "add",
+                "P3113", "0", "0", "10", "10", "5", "evening classes",
+                "да", "Иван", "2000-01-02", "180", "passport-1", "BROWN",
+                "count_by_students_count 25");
+        assertFalse(output.contains("Введите"), output);
+        assertTrue(output.contains("Количество групп с 25 студентами: 1\n"), output);
+        assertTrue(output.endsWith("выполнен, команд: 3\n"), output);
+
+        assertEquals(2, collection.size());
+        final StudyGroup first = collection.get(0);
+        assertEquals("P3112", first.getName());
+        assertEquals(-2.0, first.getCoordinates().getY1());
+        assertEquals(25, first.getStudentsCount());
+        assertEquals(FormOfEducation.FULL_TIME_EDUCATION, first.getFormOfEducation());
+        assertEquals(null, first.getGroupAdmin());
+        final Person admin = collection.get(1).getGroupAdmin();
+        assertEquals(FormOfEducation.EVENING_CLASSES, collection.get(1).getFormOfEducation());
+        assertEquals("Иван", admin.getName());
+        assertEquals(java.sql.Date.valueOf("2000-01-02"), admin.getBirthday());
+        assertEquals(Color.BROWN, admin.getEyeColor());
+    }
+
+    @Test
+    void inlineRecordGetsNewIdAndCreationDate() throws IOException {
+        run("script.txt", "add " + RECORD, "add " + RECORD);
+        assertEquals(2, collection.size());
+        final StudyGroup group = collection.get(0);
+        assertEquals("json", group.getName());
+        assertEquals(4.5f, group.getAverageMark());
+        assertTrue(group.getId() != 999 && group.getId() != collection.get(1).getId());
+        assertTrue(group.getCreationDate() != null);
+    }
+
+    @Test
+    void invalidRecordFailsOnlyItsCommand() throws IOException {
+        final String output = run("script.txt",
+                "add {\"name\":\"x\"}",
+                "add " + RECORD.replace("\"shouldBeExpelled\":1", "\"shouldBeExpelled\":6"),
+                "add {not json",
+                "add " + RECORD);
+        assertEquals(3, output.split("Ошибка при выполнении команды add").length - 1, output);
+        assertEquals(1, collection.size());
+    }
+
+    @Test
+    void scriptEndingInsideElementIsReported() throws IOException {
+        final String output = run("script.txt", "add", "P3112", "1.5");
+        assertTrue(output.contains("Скрипт закончился до конца ввода элемента"), output);
+        assertEquals(0, collection.size());
+    }
+
+    @Test
+    void cycleIsFoundBeforeFirstCommand() throws IOException {
+        final Path other = directory.resolve("other.txt");
+        Files.write(other, List.of("execute_script " + directory.resolve("script.txt")),
+                StandardCharsets.UTF_8);
+        final String output = run("script.txt", "add " + RECORD, "execute_script " + other);
+        assertTrue(output.startsWith("Обнаружен циклический вызов скриптов"), output);
+        assertEquals(0, collection.size());
+    }
+
+    @Test
+    void changedScriptIsCompiledAgain() throws IOException {
+        run("script.txt", "add " + RECORD);
+        run("script.txt", "add " + RECORD, "add " + RECORD.replace("json", "второй"));
+        assertEquals(3, collection.size());
+        assertEquals("второй", collection.get(2).getName());
+    }
+
+    @Test
+    void nestedScriptReadsItsOwnLines() throws IOException {
+        final Path inner = directory.resolve("inner.txt");
+        Files.write(inner, List.of("add", "inner", "1", "1", "5", "1", "4", "1", ""),
+                StandardCharsets.UTF_8);
+        run("outer.txt",
+                "execute_script " + inner,
+                "add",
+                "outer", "2", "2", "7", "2", "3", "3", "");
+        assertEquals(2, collection.size());
+        assertEquals("inner", collection.get(0).getName());
+        assertEquals("outer", collection.get(1).getName());
+    }
+
+    @Test
+    void atomicScriptIsUndoneAfterFailedStep() throws IOException {
+        final String output = runAtomic("script.txt",
+                "add " + RECORD,
+                "add " + RECORD,
+                "add {not json",
+                "add " + RECORD);
+        assertTrue(output.contains("Ошибка при выполнении команды add"), output);
+        assertTrue(output.endsWith("остановлен из-за ошибки ('"
+                + directory.resolve("script.txt") + "', строка 3), отменено изменений: 2\n"),
+                output);
+        assertEquals(0, collection.size());
+        assertFalse(collection.inBatch());
+    }
+
+    @Test
+    void atomicScriptCommitsAllSteps() throws IOException {
+        final String output = runAtomic("script.txt",
+                "add " + RECORD, "add " + RECORD, "count_by_students_count 5");
+        assertTrue(output.contains("Количество групп с 5 студентами: 2\n"), output);
+        assertTrue(output.endsWith("выполнен атомарно, команд: 3, изменений: 2\n"), output);
+        assertEquals(2, collection.size());
+        assertFalse(collection.inBatch());
+    }
+
+    @Test
+    void failureWithoutErrorPrefixStopsAtomicScript() throws IOException {
+        final String output = runAtomic("script.txt",
+                "add " + RECORD,
+                "remove_by_id 12345",
+                "add " + RECORD);
+        assertTrue(output.contains("Элемент с ID 12345 не найден"), output);
+        assertTrue(output.endsWith("строка 2), отменено изменений: 1\n"), output);
+        assertEquals(0, collection.size());
+
+        final String topK = runAtomic("other.txt", "add " + RECORD, "top_k 0");
+        assertTrue(topK.endsWith("строка 2), отменено изменений: 1\n"), topK);
+        assertEquals(0, collection.size());
+    }
+
+    @Test
+    void unreadElementLinesAreNotRunAsCommands() throws IOException {
+        final String output = run("script.txt",
+                "update 777",
+                "show", "1", "1", "5", "1", "4", "1", "",
+                "insert_at -1",
+                "clear", "1", "1", "5", "1", "4", "1",
+                "да", "Иван", "2000-01-02", "180", "passport-1", "BROWN",
+                "add",
+                "bad", "не число", "show", "5", "1", "4", "1", "",
+                "add " + RECORD);
+        assertFalse(output.contains("Неизвестная команда"), output);
+        assertFalse(output.contains("Коллекция пуста"), output);
+        assertTrue(output.endsWith("выполнен, команд: 4\n"), output);
+        assertEquals(1, collection.size());
+        // Неудачный ввод не расходует ID
+        assertEquals(1L, collection.get(0).getId());
+    }
+}
@@ -0,0 +1,65 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Тесты хеш-таблицы long -> long, на которой построен индекс ID коллекции.
+ */
+class LongHashMapTest {
+
+    @Test
+    void matchesHashMapAfterRandomOperations() {
+        final LongHashMap map = new LongHashMap();
+        final Map<Long, Long> expected = new HashMap<>();
+        final Random random = new Random(1);
+        for (int i = 0; i < 100_000; i++) {
+            // Узкий диапазон ключей дает длинные цепочки проб и частые удаления
+            final long key = random.nextInt(2_000) * 1024L;
+            final long value = random.nextInt(1_000_000);
+            final long previous = expected.getOrDefault(key, -1L);
+            switch (random.nextInt(3)) {
+                case 0:
+                    assertEquals(previous, map.put(key, value));
+                    expected.put(key, value);
+                    break;
+                case 1:
+                    assertEquals(previous, map.putIfAbsent(key, value));
+                    expected.putIfAbsent(key, value);
+                    break;
+                default:
+                    assertEquals(previous, map.remove(key));
+                    expected.remove(key);
+                    break;
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        for (long key = 0; key < 2_000 * 1024L; key += 1024) {
+            assertEquals((long) expected.getOrDefault(key, -1L), map.get(key));
+            assertEquals(expected.containsKey(key), map.containsKey(key));
+        }
+    }
+
+    @Test
+    void growsAndClears() {
+        final LongHashMap map = new LongHashMap(4);
+        for (long key = 1; key <= 10_000; key++) {
+            map.put(key, key * 2);
+        }
+        assertEquals(10_000, map.size());
+        assertEquals(20_000, map.get(10_000));
+        assertEquals(-1, map.get(10_001));
+
+        map.clear();
+        assertEquals(0, map.size());
+        assertFalse(map.containsKey(1));
+        map.put(1, 0);
+        assertTrue(map.containsKey(1));
+    }
+}
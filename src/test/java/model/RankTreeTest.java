@@ -0,0 +1,138 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Тесты дерева порядковых статистик: позиции элементов и перенумерация меток.
+ */
+class RankTreeTest {
+
+    private static StudyGroup group(long id) {
+        final StudyGroup group = new StudyGroup();
+        group.setId(id);
+        group.setName("group-" + id);
+        return group;
+    }
+
+    /**
+     * Вставляет элемент так же, как коллекция: при нехватке места освобождает метку
+     * и запоминает новые метки перенумерованных элементов.
+     */
+    private static long insert(RankTree tree, int rank, StudyGroup value, Map<Long, Long> labels) {
+        long label = tree.labelForInsert(rank);
+        if (label < 0) {
+            label = tree.spread(rank, (from, to, moved) -> {
+                assertEquals(from, (long) labels.get(moved.getId()), "прежняя метка");
+                labels.put(moved.getId(), to);
+            });
+        }
+        tree.insert(label, value);
+        labels.put(value.getId(), label);
+        return label;
+    }
+
+    private static void assertLabelsIncrease(RankTree tree) {
+        for (int i = 1; i < tree.size(); i++) {
+            assertTrue(tree.labelAt(i - 1) < tree.labelAt(i), "метки должны возрастать");
+        }
+    }
+
+    @Test
+    void positionsMatchListAfterRandomInsertsAndRemovals() {
+        final RankTree tree = new RankTree();
+        final List<StudyGroup> expected = new ArrayList<>();
+        final Map<Long, Long> labels = new HashMap<>();
+        final Random random = new Random(42);
+        for (long id = 1; id <= 5000; id++) {
+            if (!expected.isEmpty() && random.nextInt(4) == 0) {
+                final StudyGroup removed = expected.remove(random.nextInt(expected.size()));
+                assertSame(removed, tree.remove(labels.remove(removed.getId())));
+                continue;
+            }
+            final int rank = random.nextInt(expected.size() + 1);
+            final StudyGroup value = group(id);
+            insert(tree, rank, value, labels);
+            expected.add(rank, value);
+        }
+        assertEquals(expected.size(), tree.size());
+        for (int i = 0; i < expected.size(); i++) {
+            final StudyGroup value = expected.get(i);
+            assertSame(value, tree.get(i));
+            assertEquals(i, tree.rankOf(labels.get(value.getId())));
+            assertSame(value, tree.valueOf(labels.get(value.getId())));
+        }
+        assertLabelsIncrease(tree);
+    }
+
+    @Test
+    void repeatedInsertsAtOnePositionRelabelLocally() {
+        final RankTree tree = new RankTree();
+        final List<StudyGroup> expected = new ArrayList<>();
+        final Map<Long, Long> labels = new HashMap<>();
+        for (long id = 1; id <= 1000; id++) {
+            final StudyGroup value = group(id);
+            insert(tree, expected.size(), value, labels);
+            expected.add(value);
+        }
+        final long firstLabel = tree.labelAt(0);
+        final long lastLabel = tree.labelAt(tree.size() - 1);
+        // Вставки в одно место быстро исчерпывают промежуток между соседями
+        for (long id = 1001; id <= 3000; id++) {
+            final StudyGroup value = group(id);
+            insert(tree, 500, value, labels);
+            expected.add(500, value);
+        }
+        for (int i = 0; i < expected.size(); i++) {
+            assertSame(expected.get(i), tree.get(i));
+            assertEquals((long) labels.get(expected.get(i).getId()), tree.labelAt(i));
+        }
+        assertLabelsIncrease(tree);
+        // Элементы вдали от места вставки не перенумерованы
+        assertEquals(firstLabel, tree.labelAt(0));
+        assertEquals(lastLabel, tree.labelAt(tree.size() - 1));
+    }
+
+    @Test
+    void insertsAtFrontAndBackFindLabels() {
+        final RankTree tree = new RankTree();
+        final Map<Long, Long> labels = new HashMap<>();
+        for (long id = 1; id <= 200; id++) {
+            insert(tree, 0, group(id), labels);
+        }
+        for (long id = 201; id <= 400; id++) {
+            insert(tree, tree.size(), group(id), labels);
+        }
+        assertEquals(400, tree.size());
+        assertEquals(200L, tree.get(0).getId());
+        assertEquals(1L, tree.get(199).getId());
+        assertEquals(400L, tree.get(399).getId());
+        assertLabelsIncrease(tree);
+    }
+
+    @Test
+    void publishedRootIsAnUnchangedSnapshot() {
+        final RankTree tree = new RankTree();
+        final Map<Long, Long> labels = new HashMap<>();
+        for (long id = 1; id <= 100; id++) {
+            insert(tree, tree.size(), group(id), labels);
+        }
+        final RankTree.Node snapshot = tree.root();
+        for (long id = 101; id <= 300; id++) {
+            insert(tree, 50, group(id), labels);
+        }
+        tree.remove(labels.get(1L));
+        assertEquals(100, RankTree.size(snapshot));
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i + 1L, RankTree.nodeAt(snapshot, i).value.getId());
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Тесты гистограммы количества студентов: счетчики и суммы по диапазонам
+ * совпадают с подсчетом по списку значений.
+ */
+class StudentsCountHistogramTest {
+
+    private static int countBetween(List<Integer> values, long min, long max) {
+        int count = 0;
+        for (int value : values) {
+            if (value >= min && value <= max) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Значение из небольшого диапазона, за пределами начальной емкости дерева
+     * или за пределами дерева Фенвика.
+     */
+    private static int value(Random random) {
+        switch (random.nextInt(10)) {
+            case 0:
+                return (1 << 20) + 1 + random.nextInt(1000);
+            case 1:
+                return 1 + random.nextInt(100_000);
+            default:
+                return 1 + random.nextInt(50);
+        }
+    }
+
+    private static long bound(Random random) {
+        switch (random.nextInt(6)) {
+            case 0:
+                return Integer.MIN_VALUE;
+            case 1:
+                return Integer.MAX_VALUE;
+            case 2:
+                return (1 << 20) - 5 + random.nextInt(2000);
+            case 3:
+                return -random.nextInt(10);
+            default:
+                return random.nextInt(200);
+        }
+    }
+
+    @Test
+    void rangeCountsMatchValuesAfterRandomChanges() {
+        final Random random = new Random(3);
+        final StudentsCountHistogram histogram = new StudentsCountHistogram();
+        final List<Integer> values = new ArrayList<>();
+        for (int step = 0; step < 20_000; step++) {
+            if (values.isEmpty() || random.nextInt(3) != 0) {
+                final int value = value(random);
+                histogram.add(value);
+                values.add(value);
+            } else {
+                histogram.remove(values.remove(random.nextInt(values.size())));
+            }
+            if (step % 50 == 0) {
+                final long min = bound(random);
+                final long max = random.nextBoolean() ? bound(random) : min + random.nextInt(100);
+                assertEquals(countBetween(values, min, max), histogram.countBetween(min, max),
+                        "[" + min + ", " + max + "]");
+                final int probe = values.get(random.nextInt(values.size()));
+                assertEquals(countBetween(values, probe, probe), histogram.count(probe));
+            }
+        }
+    }
+
+    @Test
+    void removingAbsentValueChangesNothing() {
+        final StudentsCountHistogram histogram = new StudentsCountHistogram();
+        histogram.add(5);
+        histogram.remove(6);
+        histogram.remove(5);
+        histogram.remove(5);
+        assertEquals(0, histogram.countBetween(Integer.MIN_VALUE, Integer.MAX_VALUE));
+        histogram.add(5);
+        assertEquals(1, histogram.countBetween(1, 5));
+
+        histogram.clear();
+        assertEquals(0, histogram.count(5));
+        assertEquals(0, histogram.countBetween(1, 100));
+    }
+
+    @Test
+    void boundsOutsideIntRangeAreClamped() {
+        final StudentsCountHistogram histogram = new StudentsCountHistogram();
+        final List<Integer> values = List.of(Integer.MIN_VALUE, -1, 0, 7, (1 << 20) + 1,
+                Integer.MAX_VALUE);
+        for (int value : values) {
+            histogram.add(value);
+        }
+        final long[] bounds = {Long.MIN_VALUE, Integer.MIN_VALUE - 1L, Integer.MIN_VALUE, -1, 0,
+            7, Integer.MAX_VALUE, Integer.MAX_VALUE + 1L, Long.MAX_VALUE};
+        for (long min : bounds) {
+            for (long max : bounds) {
+                assertEquals(countBetween(values, min, max), histogram.countBetween(min, max),
+                        "[" + min + ", " + max + "]");
+            }
+        }
+    }
+}
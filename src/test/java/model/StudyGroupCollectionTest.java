@@ -0,0 +1,582 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Тесты индексов коллекции: после любой последовательности изменений ответы
+ * совпадают с обходом списка-образца. Пакеты изменений применяются и отменяются целиком.
+ */
+class StudyGroupCollectionTest {
+
+    private static StudyGroup group(long id, int studentsCount) {
+        final StudyGroup group = new StudyGroup();
+        group.setId(id);
+        group.setName("group-" + id);
+        final Coordinates coordinates = new Coordinates();
+        coordinates.setX1(1.0);
+        coordinates.setY1(2);
+        group.setCoordinates(coordinates);
+        group.setStudentsCount(studentsCount);
+        group.setShouldBeExpelled(1);
+        group.setAverageMark(4f);
+        group.setFormOfEducation(FormOfEducation.FULL_TIME_EDUCATION);
+        if (id % 2 == 0) {
+            final Person admin = new Person();
+            admin.setName("admin-" + id);
+            admin.setHeight(170f);
+            admin.setPassportId("passport-" + id);
+            group.setGroupAdmin(admin);
+        }
+        return group;
+    }
+
+    private static StudyGroupCollection collection(boolean concurrent, int size) {
+        final StudyGroupCollection collection = new StudyGroupCollection(concurrent);
+        for (long id = 1; id <= size; id++) {
+            collection.add(group(id, (int) (id % 7) + 1));
+        }
+        return collection;
+    }
+
+    /**
+     * Состояние коллекции, доступное через позиционное чтение и индексы.
+     */
+    private static String state(StudyGroupCollection collection) {
+        final List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < collection.size(); i++) {
+            ids.add(collection.get(i).getId());
+        }
+        final StudyGroup min = collection.findMin();
+        return ids
+                + " min=" + (min == null ? null : min.getId())
+                + " lowest=" + collection.getLowest(5).map(StudyGroup::getId)
+                        .collect(Collectors.toList())
+                + " count3=" + collection.countByStudentsCount(3)
+                + " between=" + collection.countByStudentsCountBetween(2, 5)
+                + " admins=" + collection.groupCountingByGroupAdmin().size()
+                + " findById2=" + (collection.findById(2) == null ? null : 2);
+    }
+
+    private static StudyGroup group(long id, Random random) {
+        final StudyGroup group = new StudyGroup();
+        group.setId(id);
+        group.setName("group-" + random.nextInt(1000) + "-" + id);
+        final Coordinates coordinates = new Coordinates();
+        coordinates.setX1(1.0);
+        coordinates.setY1(2);
+        group.setCoordinates(coordinates);
+        group.setStudentsCount(1 + random.nextInt(20));
+        group.setShouldBeExpelled(1 + random.nextInt(3));
+        group.setAverageMark(4f);
+        group.setFormOfEducation(FormOfEducation.FULL_TIME_EDUCATION);
+        if (random.nextInt(3) != 0) {
+            // Небольшой набор имен, чтобы у администраторов были повторы
+            final Person admin = new Person();
+            admin.setName("admin-" + random.nextInt(10));
+            admin.setHeight(150f + random.nextInt(5));
+            admin.setPassportId("passport-" + id);
+            group.setGroupAdmin(admin);
+        }
+        return group;
+    }
+
+    private static List<Long> ids(List<StudyGroup> groups) {
+        return ids(groups.stream());
+    }
+
+    private static List<Long> ids(Stream<StudyGroup> groups) {
+        return groups.map(StudyGroup::getId).collect(Collectors.toList());
+    }
+
+    /**
+     * Выполняет случайное изменение одновременно над коллекцией и списком-образцом.
+     */
+    private static void mutate(StudyGroupCollection collection, List<StudyGroup> expected,
+            Random random, long[] nextId) {
+        final int operation = random.nextInt(100);
+        if (operation == 0) {
+            collection.clear();
+            expected.clear();
+        } else if (operation < 35 || expected.isEmpty()) {
+            final StudyGroup group = group(nextId[0]++, random);
+            collection.add(group);
+            expected.add(group);
+        } else if (operation < 55) {
+            final int index = random.nextInt(expected.size() + 1);
+            final StudyGroup group = group(nextId[0]++, random);
+            collection.insertAt(index, group);
+            expected.add(index, group);
+        } else if (operation < 65) {
+            final int index = random.nextInt(expected.size());
+            final StudyGroup group = group(nextId[0]++, random);
+            collection.set(index, group);
+            expected.set(index, group);
+        } else if (operation < 80) {
+            final int index = random.nextInt(expected.size());
+            final StudyGroup group = group(expected.get(index).getId(), random);
+            collection.update(group.getId(), group);
+            expected.set(index, group);
+        } else {
+            final int index = random.nextInt(expected.size());
+            collection.removeById(expected.remove(index).getId());
+        }
+    }
+
+    private static List<StudyGroup> sorted(List<StudyGroup> groups) {
+        final List<StudyGroup> result = new ArrayList<>(groups);
+        result.sort(Comparator.naturalOrder());
+        return result;
+    }
+
+    @Test
+    void naturalOrderQueriesMatchSortedList() {
+        final Random random = new Random(2);
+        final StudyGroupCollection collection = new StudyGroupCollection();
+        final List<StudyGroup> expected = new ArrayList<>();
+        final long[] nextId = {1};
+        for (int step = 0; step < 3000; step++) {
+            mutate(collection, expected, random, nextId);
+            if (step % 10 != 0) {
+                continue;
+            }
+            final List<StudyGroup> ascending = sorted(expected);
+            final List<StudyGroup> descending = new ArrayList<>(ascending);
+            Collections.reverse(descending);
+            if (ascending.isEmpty()) {
+                assertNull(collection.findMin());
+            } else {
+                assertEquals(ascending.get(0).getId(), collection.findMin().getId());
+            }
+            final int limit = random.nextInt(30);
+            assertEquals(ids(ascending.subList(0, Math.min(limit, ascending.size()))),
+                    ids(collection.getLowest(limit)));
+            assertEquals(ids(descending.subList(0, Math.min(limit, descending.size()))),
+                    ids(collection.getHighest(limit)));
+
+            final int min = random.nextInt(22);
+            final int max = random.nextInt(22);
+            assertEquals(ids(ascending.stream()
+                            .filter(group -> group.getStudentsCount() >= min
+                                    && group.getStudentsCount() <= max)
+                            .collect(Collectors.toList())),
+                    ids(collection.getByStudentsCountBetween(min, max)));
+        }
+    }
+
+    @Test
+    void studentsCountQueriesMatchList() {
+        final Random random = new Random(4);
+        final StudyGroupCollection collection = new StudyGroupCollection();
+        final List<StudyGroup> expected = new ArrayList<>();
+        final long[] nextId = {1};
+        for (int step = 0; step < 3000; step++) {
+            mutate(collection, expected, random, nextId);
+            final int min = random.nextInt(22);
+            final int max = min + random.nextInt(10) - 2;
+            assertEquals(expected.stream()
+                            .filter(group -> group.getStudentsCount() == min)
+                            .count(),
+                    collection.countByStudentsCount(min));
+            assertEquals(expected.stream()
+                            .filter(group -> group.getStudentsCount() >= min
+                                    && group.getStudentsCount() <= max)
+                            .count(),
+                    collection.countByStudentsCountBetween(min, max));
+        }
+    }
+
+    @Test
+    void groupAdminCountsMatchList() {
+        final Random random = new Random(5);
+        final StudyGroupCollection collection = new StudyGroupCollection();
+        final List<StudyGroup> expected = new ArrayList<>();
+        final long[] nextId = {1};
+        for (int step = 0; step < 3000; step++) {
+            mutate(collection, expected, random, nextId);
+            assertEquals(expected.stream()
+                            .filter(group -> group.getGroupAdmin() != null)
+                            .collect(Collectors.groupingBy(
+                                    group -> group.getGroupAdmin().getName(),
+                                    Collectors.counting())),
+                    collection.groupCountingByGroupAdmin());
+        }
+    }
+
+    @Test
+    void groupAdminsAscendingMatchSortedList() {
+        final Random random = new Random(6);
+        final StudyGroupCollection collection = new StudyGroupCollection();
+        final List<StudyGroup> expected = new ArrayList<>();
+        final long[] nextId = {1};
+        for (int step = 0; step < 2000; step++) {
+            mutate(collection, expected, random, nextId);
+            if (step % 10 != 0) {
+                continue;
+            }
+            final List<String> admins = expected.stream()
+                    .filter(group -> group.getGroupAdmin() != null)
+                    .map(group -> group.getGroupAdmin().toString())
+                    .sorted()
+                    .collect(Collectors.toList());
+            assertEquals(String.join("\n", admins), collection.getGroupAdminFieldAscending());
+
+            final int offset = random.nextInt(admins.size() + 2);
+            final int limit = random.nextInt(10);
+            assertEquals(admins.subList(Math.min(offset, admins.size()),
+                            Math.min(offset + limit, admins.size())),
+                    collection.getGroupAdminFieldAscending(offset, limit)
+                            .collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    void readersSeeConsistentSnapshotsWhileWriterChangesCollection() throws Exception {
+        final StudyGroupCollection collection = new StudyGroupCollection(true);
+        final List<StudyGroup> expected = new ArrayList<>();
+        final AtomicBoolean writing = new AtomicBoolean(true);
+        final ExecutorService readers = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<Integer>> snapshots = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                snapshots.add(readers.submit(() -> {
+                    int checked = 0;
+                    while (writing.get()) {
+                        final List<StudyGroup> snapshot = collection.getCollection();
+                        final int size = snapshot.size();
+                        final Set<Long> ids = new HashSet<>();
+                        for (StudyGroup group : snapshot) {
+                            assertTrue(ids.add(group.getId()), "ID повторяется в снимке");
+                        }
+                        assertEquals(size, ids.size());
+                        collection.findMin();
+                        collection.getLowest(5);
+                        collection.countByStudentsCountBetween(1, 10);
+                        collection.groupCountingByGroupAdmin().size();
+                        checked++;
+                    }
+                    return checked;
+                }));
+            }
+            final Random random = new Random(7);
+            final long[] nextId = {1};
+            for (int step = 0; step < 20_000; step++) {
+                mutate(collection, expected, random, nextId);
+            }
+            writing.set(false);
+            for (Future<Integer> snapshot : snapshots) {
+                assertTrue(snapshot.get() > 0);
+            }
+        } finally {
+            writing.set(false);
+            readers.shutdownNow();
+        }
+        assertEquals(ids(expected), ids(collection.getCollection()));
+    }
+
+    @Test
+    void streamsContinueAfterChangesBehindAndAhead() {
+        final Random random = new Random(4);
+        final StudyGroupCollection collection = new StudyGroupCollection(true);
+        for (long id = 1; id <= 3000; id++) {
+            collection.add(group(id, random));
+        }
+        final List<StudyGroup> ascending = sorted(collection.getCollection());
+        final Iterator<StudyGroup> lowest = collection.getLowest(Integer.MAX_VALUE).iterator();
+        final List<StudyGroup> seen = new ArrayList<>();
+        for (int i = 0; i < 1500; i++) {
+            seen.add(lowest.next());
+        }
+        // Поток не держит блокировку: изменения во время обхода не ждут его окончания
+        final StudyGroup passed = ascending.get(10);
+        final StudyGroup ahead = ascending.get(2900);
+        collection.removeById(passed.getId());
+        collection.removeById(ahead.getId());
+        lowest.forEachRemaining(seen::add);
+
+        assertEquals(sorted(seen), seen);
+        assertEquals(seen.size(), new HashSet<>(ids(seen)).size());
+        final List<StudyGroup> expected = new ArrayList<>(ascending);
+        expected.remove(2900);
+        assertEquals(ids(expected), ids(seen));
+        assertEquals(ascending.size() - 2, ids(collection.getLowest(Integer.MAX_VALUE)).size());
+    }
+
+    @Test
+    void equalGroupsAreRemovedByIdentity() {
+        final Random random = new Random(3);
+        final StudyGroupCollection collection = new StudyGroupCollection();
+        final StudyGroup first = group(1, random);
+        final StudyGroup second = group(2, random);
+        second.setName(first.getName());
+        second.setStudentsCount(first.getStudentsCount());
+        second.setShouldBeExpelled(first.getShouldBeExpelled());
+        collection.add(first);
+        collection.add(second);
+
+        collection.removeById(1);
+        assertEquals(2L, collection.findMin().getId());
+        assertEquals(List.of(2L), ids(collection.getLowest(10)));
+    }
+
+    @Test
+    void rollbackRestoresPositionsAndIndexes() {
+        for (boolean concurrent : new boolean[] {false, true}) {
+            final StudyGroupCollection collection = collection(concurrent, 50);
+            final String before = state(collection);
+            final long modifications = collection.getModificationCount();
+
+            collection.begin();
+            collection.removeById(2);
+            collection.insertAt(0, group(100, 3));
+            collection.update(5, group(5, 6));
+            collection.set(10, group(101, 1));
+            collection.add(group(102, 4));
+            assertEquals(5, collection.rollback());
+
+            assertEquals(before, state(collection));
+            assertEquals(modifications, collection.getModificationCount());
+            assertFalse(collection.inBatch());
+            // ID, выданные в пакете, остаются занятыми
+            assertTrue(collection.getHighestId() >= 102);
+        }
+    }
+
+    @Test
+    void rollbackAfterClearRebuildsIndexes() {
+        final StudyGroupCollection collection = collection(true, 30);
+        final String before = state(collection);
+        collection.begin();
+        collection.add(group(40, 2));
+        collection.clear();
+        collection.add(group(41, 3));
+        collection.rollback();
+        assertEquals(before, state(collection));
+    }
+
+    @Test
+    void commitNotifiesListenerInOrder() {
+        final StudyGroupCollection collection = collection(true, 10);
+        final List<String> events = new ArrayList<>();
+        collection.setListener(new CollectionListener() {
+            @Override
+            public void inserted(int index, StudyGroup group) {
+                events.add("inserted " + index + " " + group.getId());
+            }
+
+            @Override
+            public void updated(long id, StudyGroup group) {
+                events.add("updated " + id);
+            }
+
+            @Override
+            public void replaced(int index, StudyGroup group) {
+                events.add("replaced " + index);
+            }
+
+            @Override
+            public void removed(long id) {
+                events.add("removed " + id);
+            }
+
+            @Override
+            public void cleared() {
+                events.add("cleared");
+            }
+
+            @Override
+            public void batchStarted() {
+                events.add("started");
+            }
+
+            @Override
+            public void batchFinished() {
+                events.add("finished");
+            }
+        });
+        collection.begin();
+        collection.add(group(11, 1));
+        collection.removeById(3);
+        assertTrue(events.isEmpty(), "уведомления откладываются до применения пакета");
+        assertEquals(2, collection.commit());
+        assertEquals(List.of("started", "inserted 10 11", "removed 3", "finished"), events);
+    }
+
+    /**
+     * Слушатель, который отказывается принимать уведомления, как журнал при ошибке записи.
+     */
+    private static final class FailingListener implements CollectionListener {
+        int calls;
+
+        private void fail() {
+            calls++;
+            throw new IllegalStateException("запись не удалась");
+        }
+
+        @Override
+        public void inserted(int index, StudyGroup group) {
+            fail();
+        }
+
+        @Override
+        public void updated(long id, StudyGroup group) {
+            fail();
+        }
+
+        @Override
+        public void replaced(int index, StudyGroup group) {
+            fail();
+        }
+
+        @Override
+        public void removed(long id) {
+            fail();
+        }
+
+        @Override
+        public void cleared() {
+            fail();
+        }
+    }
+
+    @Test
+    void changeRejectedByListenerIsUndone() {
+        for (boolean concurrent : new boolean[] {false, true}) {
+            final StudyGroupCollection collection = collection(concurrent, 20);
+            final String before = state(collection);
+            final long modifications = collection.getModificationCount();
+            final FailingListener listener = new FailingListener();
+            collection.setListener(listener);
+            final List<Runnable> changes = List.of(
+                () -> collection.add(group(30, 3)),
+                () -> collection.insertAt(0, group(31, 2)),
+                () -> collection.removeById(2),
+                () -> collection.update(5, group(5, 6)),
+                () -> collection.set(3, group(32, 1)),
+                collection::clear);
+            for (Runnable change : changes) {
+                assertThrows(IllegalStateException.class, change::run);
+                assertEquals(before, state(collection));
+                assertEquals(modifications, collection.getModificationCount());
+                assertFalse(collection.inBatch());
+            }
+            assertEquals(changes.size(), listener.calls);
+
+            collection.begin();
+            collection.removeById(4);
+            collection.add(group(33, 5));
+            assertThrows(IllegalStateException.class, collection::commit);
+            assertEquals(before, state(collection));
+            assertEquals(modifications, collection.getModificationCount());
+            assertFalse(collection.inBatch());
+
+            // Без слушателя изменения проходят как обычно
+            collection.setListener(null);
+            collection.removeById(2);
+            assertEquals(modifications + 1, collection.getModificationCount());
+        }
+    }
+
+    @Test
+    void otherThreadsSeeCommittedState() throws Exception {
+        final StudyGroupCollection collection = collection(true, 20);
+        final String before = state(collection);
+        final ExecutorService other = Executors.newSingleThreadExecutor();
+        try {
+            collection.begin();
+            collection.removeById(2);
+            collection.insertAt(0, group(50, 3));
+            collection.add(group(51, 1));
+            assertEquals(21, collection.size());
+            assertEquals(before, other.submit(() -> state(collection)).get());
+            assertEquals(20, (int) other.submit(collection::size).get());
+            assertEquals(20, (int) other.submit(() -> collection.getCollection().size()).get());
+
+            collection.commit();
+            assertEquals(state(collection), other.submit(() -> state(collection)).get());
+            assertNull(other.submit(() -> collection.findById(2)).get());
+        } finally {
+            other.shutdownNow();
+        }
+    }
+
+    @Test
+    void otherThreadsWaitForBatchToFinish() throws Exception {
+        final StudyGroupCollection collection = collection(true, 10);
+        final ExecutorService other = Executors.newSingleThreadExecutor();
+        try {
+            collection.begin();
+            collection.add(group(20, 1));
+            final Future<?> add = other.submit(() -> collection.add(group(21, 2)));
+            final Future<?> begin = other.submit(collection::begin);
+            Thread.sleep(50);
+            assertFalse(add.isDone(), "изменение другого потока ждет окончания пакета");
+
+            // Отмена пакета не затрагивает изменение, сделанное другим потоком после нее
+            assertEquals(1, collection.rollback());
+            add.get();
+            begin.get();
+            assertNull(collection.findById(20));
+            assertEquals(21L, collection.findById(21).getId());
+            // Теперь пакет открыт другим потоком, и ждать приходится этому
+            assertTrue(collection.inBatch());
+            final Future<Long> commit = other.submit(() -> {
+                Thread.sleep(50);
+                return collection.commit();
+            });
+            collection.add(group(22, 3));
+            assertFalse(collection.inBatch());
+            assertEquals(0, (long) commit.get());
+            assertEquals(22L, collection.findById(22).getId());
+        } finally {
+            other.shutdownNow();
+        }
+
+        final StudyGroupCollection single = collection(false, 3);
+        single.begin();
+        final ExecutorService another = Executors.newSingleThreadExecutor();
+        try {
+            final Future<?> add = another.submit(() -> single.add(group(4, 1)));
+            final Exception error = assertThrows(Exception.class, add::get);
+            assertTrue(error.getCause() instanceof IllegalArgumentException, error.toString());
+        } finally {
+            another.shutdownNow();
+        }
+        assertEquals(3, single.size());
+    }
+
+    @Test
+    void duplicateIdsAreRejectedWithoutChanges() {
+        final StudyGroupCollection collection = collection(false, 5);
+        final String before = state(collection);
+        assertThrows(IllegalArgumentException.class, () -> collection.add(group(3, 1)));
+        assertThrows(IllegalArgumentException.class, () -> collection.insertAt(0, group(4, 1)));
+        assertThrows(IllegalArgumentException.class, () -> collection.update(1, group(2, 1)));
+        assertThrows(IllegalArgumentException.class, () -> collection.set(0, group(5, 1)));
+        assertEquals(before, state(collection));
+
+        final StudyGroup replacement = group(1, 7);
+        assertTrue(collection.update(1, replacement));
+        assertSame(replacement, collection.findById(1));
+    }
+}
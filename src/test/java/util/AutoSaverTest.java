@@ -0,0 +1,166 @@
+package util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.List;
+import model.Coordinates;
+import model.FormOfEducation;
+import model.Person;
+import model.StudyGroup;
+import model.StudyGroupCollection;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Тесты автосохранения: пороги по количеству изменений и по времени, пауза после ошибки.
+ */
+class AutoSaverTest {
+
+    @TempDir
+    Path directory;
+
+    private final Gson gson = gson();
+
+    private static Gson gson() {
+        final LocalDateTimeAdapter localDateTimeAdapter = new LocalDateTimeAdapter();
+        final DateAdapter dateAdapter = new DateAdapter();
+        final CoordinatesAdapter coordinatesAdapter = new CoordinatesAdapter();
+        final PersonAdapter personAdapter = new PersonAdapter(dateAdapter);
+        return new GsonBuilder()
+                .registerTypeAdapter(LocalDateTime.class, localDateTimeAdapter)
+                .registerTypeHierarchyAdapter(Date.class, dateAdapter)
+                .registerTypeAdapter(Coordinates.class, coordinatesAdapter)
+                .registerTypeAdapter(Person.class, personAdapter)
+                .registerTypeAdapter(StudyGroup.class, new StudyGroupAdapter(
+                        coordinatesAdapter, localDateTimeAdapter, personAdapter))
+                .create();
+    }
+
+    private static StudyGroup group(long id) {
+        final StudyGroup group = new StudyGroup();
+        group.setId(id);
+        group.setName("group-" + id);
+        final Coordinates coordinates = new Coordinates();
+        coordinates.setX1(1.0 * id);
+        coordinates.setY1(2);
+        group.setCoordinates(coordinates);
+        group.setStudentsCount(1 + (int) (id % 50));
+        group.setShouldBeExpelled(1);
+        group.setAverageMark(4f);
+        group.setFormOfEducation(FormOfEducation.EVENING_CLASSES);
+        return group;
+    }
+
+    private String file() {
+        return directory.resolve("collection.json").toString();
+    }
+
+    private static void awaitIdle(BackgroundSaver saver) throws InterruptedException {
+        while (saver.isBusy()) {
+            Thread.sleep(5);
+        }
+    }
+
+    private static long unsaved(StudyGroupCollection collection, BackgroundSaver saver) {
+        return collection.getModificationCount() - saver.getSavedModificationCount();
+    }
+
+    @Test
+    void mutationThresholdStartsOneSave() throws Exception {
+        final StudyGroupCollection collection = new StudyGroupCollection(true);
+        final BackgroundSaver saver =
+                new BackgroundSaver(file(), collection, new FileManager(gson), null);
+        final AutoSaver autoSaver = new AutoSaver(collection, saver, 5, Duration.ZERO);
+        for (long id = 1; id <= 4; id++) {
+            collection.add(group(id));
+            autoSaver.check();
+        }
+        assertFalse(saver.isBusy());
+        assertEquals(4, unsaved(collection, saver));
+
+        collection.add(group(5));
+        autoSaver.check();
+        awaitIdle(saver);
+        assertEquals(0, unsaved(collection, saver));
+        autoSaver.check();
+        assertTrue(autoSaver.getMetrics().contains("Автосохранений: 1 (по количеству изменений: 1, "
+                + "по времени: 0)"), autoSaver.getMetrics());
+    }
+
+    @Test
+    void intervalSavesSingleOldChange() throws Exception {
+        final StudyGroupCollection collection = new StudyGroupCollection(true);
+        final BackgroundSaver saver =
+                new BackgroundSaver(file(), collection, new FileManager(gson), null);
+        final AutoSaver autoSaver = new AutoSaver(collection, saver, 0, Duration.ofMillis(50));
+        collection.add(group(1));
+        autoSaver.check();
+        assertFalse(saver.isBusy());
+
+        Thread.sleep(60);
+        autoSaver.check();
+        awaitIdle(saver);
+        assertEquals(0, unsaved(collection, saver));
+        assertTrue(autoSaver.getMetrics().contains("по времени: 1"), autoSaver.getMetrics());
+    }
+
+    @Test
+    void bulkLoadIsNotAnUnsavedChange() {
+        final StudyGroupCollection collection = new StudyGroupCollection(true);
+        collection.loadFrom(List.of(group(1), group(2)).iterator());
+        assertEquals(0, collection.getModificationCount());
+        collection.removeById(1);
+        collection.clear();
+        assertEquals(2, collection.getModificationCount());
+    }
+
+    @Test
+    void failedSaveBacksOff() throws Exception {
+        final StudyGroupCollection collection = new StudyGroupCollection(true);
+        final FileManager failing = new FileManager(gson) {
+            @Override
+            public File saveCollection(String fileName, List<StudyGroup> groups)
+                    throws IOException {
+                throw new IOException("диск заполнен");
+            }
+        };
+        final BackgroundSaver saver = new BackgroundSaver(file(), collection, failing, null);
+        final AutoSaver autoSaver = new AutoSaver(collection, saver, 1, Duration.ZERO);
+        collection.add(group(1));
+        autoSaver.check();
+        awaitIdle(saver);
+        assertTrue(saver.hasFailed());
+        // Ошибка доходит до автосохранения после того, как сохранение завершилось
+        while (!autoSaver.getMetrics().contains("неудачных: 1")) {
+            Thread.sleep(5);
+        }
+
+        collection.add(group(2));
+        autoSaver.check();
+        assertFalse(saver.isBusy());
+        assertTrue(autoSaver.getMetrics().contains("Автосохранений: 1"), autoSaver.getMetrics());
+    }
+
+    @Test
+    void negativeThresholdsAreRejected() {
+        final StudyGroupCollection collection = new StudyGroupCollection(true);
+        final BackgroundSaver saver =
+                new BackgroundSaver(file(), collection, new FileManager(gson), null);
+        assertThrows(IllegalArgumentException.class,
+                () -> new AutoSaver(collection, saver, -1, Duration.ZERO));
+        assertThrows(IllegalArgumentException.class,
+                () -> new AutoSaver(collection, saver, 0, Duration.ofSeconds(-1)));
+        assertFalse(new AutoSaver(collection, saver, 0, Duration.ZERO).isEnabled());
+    }
+}
@@ -0,0 +1,194 @@
+package util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import command.ImportCommand;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import model.Coordinates;
+import model.FormOfEducation;
+import model.Person;
+import model.StudyGroup;
+import model.StudyGroupCollection;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Тесты фонового сохранения: снимок на момент начала записи и объединение запросов.
+ */
+class BackgroundSaverTest {
+
+    @TempDir
+    Path directory;
+
+    private final Gson gson = gson();
+
+    private static Gson gson() {
+        final LocalDateTimeAdapter localDateTimeAdapter = new LocalDateTimeAdapter();
+        final DateAdapter dateAdapter = new DateAdapter();
+        final CoordinatesAdapter coordinatesAdapter = new CoordinatesAdapter();
+        final PersonAdapter personAdapter = new PersonAdapter(dateAdapter);
+        return new GsonBuilder()
+                .registerTypeAdapter(LocalDateTime.class, localDateTimeAdapter)
+                .registerTypeHierarchyAdapter(Date.class, dateAdapter)
+                .registerTypeAdapter(Coordinates.class, coordinatesAdapter)
+                .registerTypeAdapter(Person.class, personAdapter)
+                .registerTypeAdapter(StudyGroup.class, new StudyGroupAdapter(
+                        coordinatesAdapter, localDateTimeAdapter, personAdapter))
+                .create();
+    }
+
+    private static StudyGroup group(long id) {
+        final StudyGroup group = new StudyGroup();
+        group.setId(id);
+        group.setName("group-" + id);
+        final Coordinates coordinates = new Coordinates();
+        coordinates.setX1(1.0 * id);
+        coordinates.setY1(2);
+        group.setCoordinates(coordinates);
+        group.setStudentsCount(1 + (int) (id % 50));
+        group.setShouldBeExpelled(1);
+        group.setAverageMark(4f);
+        group.setFormOfEducation(FormOfEducation.EVENING_CLASSES);
+        return group;
+    }
+
+    private static List<Long> ids(List<StudyGroup> groups) {
+        final List<Long> ids = new ArrayList<>();
+        for (StudyGroup group : groups) {
+            ids.add(group.getId());
+        }
+        return ids;
+    }
+
+    private String file() {
+        return directory.resolve("collection.json").toString();
+    }
+
+    private List<Long> saved() throws IOException {
+        final StudyGroupCollection loaded = new StudyGroupCollection();
+        new FileManager(gson).loadCollection(file(), loaded);
+        return ids(loaded.getCollection());
+    }
+
+    /**
+     * Менеджер файлов, который начинает запись и ждет разрешения ее продолжить.
+     */
+    private final class BlockingFileManager extends FileManager {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        BlockingFileManager() {
+            super(gson);
+        }
+
+        @Override
+        public File saveCollection(String fileName, List<StudyGroup> groups) throws IOException {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            return super.saveCollection(fileName, groups);
+        }
+    }
+
+    @Test
+    void changesDuringWriteDoNotLeakIntoFile() throws Exception {
+        final StudyGroupCollection collection = new StudyGroupCollection(true);
+        for (long id = 1; id <= 3; id++) {
+            collection.add(group(id));
+        }
+        final BlockingFileManager fileManager = new BlockingFileManager();
+        final BackgroundSaver saver = new BackgroundSaver(file(), collection, fileManager, null);
+        final CompletableFuture<String> first = saver.requestSave();
+        fileManager.started.await();
+        assertTrue(saver.isBusy());
+
+        // Изменения во время записи не ждут ее окончания
+        collection.add(group(4));
+        collection.removeById(1);
+        fileManager.release.countDown();
+        first.join();
+        assertEquals(List.of(1L, 2L, 3L), saved());
+
+        saver.saveAndWait();
+        assertEquals(List.of(2L, 3L, 4L), saved());
+        assertFalse(saver.isBusy());
+    }
+
+    @Test
+    void requestsWhileQueuedJoinOneSave() throws Exception {
+        final StudyGroupCollection collection = new StudyGroupCollection(true);
+        collection.add(group(1));
+        final BlockingFileManager fileManager = new BlockingFileManager();
+        final BackgroundSaver saver = new BackgroundSaver(file(), collection, fileManager, null);
+        final CompletableFuture<String> running = saver.requestSave();
+        fileManager.started.await();
+
+        final CompletableFuture<String> queued = saver.requestSave();
+        collection.add(group(2));
+        assertSame(queued, saver.requestSave());
+        fileManager.release.countDown();
+        running.join();
+        queued.join();
+
+        assertEquals(List.of(1L, 2L), saved());
+        final String status = saver.getStatus();
+        assertTrue(status.contains("Запросов: 3, объединено с ожидающими: 1, "
+                + "выполнено сохранений: 2"), status);
+    }
+
+    @Test
+    void writeErrorIsReportedToWaitingCaller() {
+        final StudyGroupCollection collection = new StudyGroupCollection(true);
+        final FileManager failing = new FileManager(gson) {
+            @Override
+            public File saveCollection(String fileName, List<StudyGroup> groups)
+                    throws IOException {
+                throw new IOException("диск заполнен");
+            }
+        };
+        final BackgroundSaver saver = new BackgroundSaver(file(), collection, failing, null);
+        final IOException error = assertThrows(IOException.class, saver::saveAndWait);
+        assertEquals("диск заполнен", error.getMessage());
+        assertTrue(saver.getStatus().contains("ошибка: диск заполнен"));
+    }
+
+    @Test
+    void importIsCompactedBySaver() throws Exception {
+        final FileManager fileManager = new FileManager(gson);
+        final String imported = directory.resolve("import.json").toString();
+        fileManager.saveJson(imported, List.of(group(1), group(2), group(3)));
+        fileManager.saveJson(file(), new ArrayList<>());
+        final Journal journal = new Journal(file(), gson);
+        final StudyGroupCollection collection = new StudyGroupCollection(true);
+        journal.attach(collection);
+        collection.add(group(7));
+        final BackgroundSaver saver = new BackgroundSaver(file(), collection, fileManager, journal);
+        assertTrue(saver.saveAndWait().startsWith("Изменения сохранены в журнал"));
+
+        final ImportCommand command = new ImportCommand(gson, journal, saver);
+        command.setCollection(collection);
+        final String result = command.execute(new String[] {imported});
+        assertTrue(result.contains("Коллекция успешно сохранена в файл"), result);
+        assertEquals(0, journal.getRecords());
+        assertEquals(collection.getModificationCount(), saver.getSavedModificationCount());
+        assertEquals(List.of(1L, 2L, 3L), saved());
+        assertTrue(saver.getStatus().contains("выполнено сохранений: 2"), saver.getStatus());
+    }
+}
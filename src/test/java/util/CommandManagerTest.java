@@ -0,0 +1,131 @@
+package util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.gson.Gson;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Scanner;
+import model.Coordinates;
+import model.FormOfEducation;
+import model.Person;
+import model.StudyGroup;
+import model.StudyGroupCollection;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Тесты диспетчера команд.
+ */
+class CommandManagerTest {
+
+    private static StudyGroup group(long id) {
+        final StudyGroup group = new StudyGroup();
+        group.setId(id);
+        group.setName("group-" + id);
+        final Coordinates coordinates = new Coordinates();
+        coordinates.setX1(1.0 * id);
+        coordinates.setY1(2);
+        group.setCoordinates(coordinates);
+        group.setStudentsCount(1 + (int) (id % 7));
+        group.setShouldBeExpelled(1);
+        group.setAverageMark(4f);
+        group.setFormOfEducation(FormOfEducation.EVENING_CLASSES);
+        if (id % 2 == 0) {
+            final Person admin = new Person();
+            admin.setName("admin-" + id % 3);
+            admin.setHeight(170f);
+            admin.setPassportId("passport-" + id);
+            group.setGroupAdmin(admin);
+        }
+        return group;
+    }
+
+    private static CommandManager commandManager(StudyGroupCollection collection) {
+        final Gson gson = new Gson();
+        final BackgroundSaver saver =
+                new BackgroundSaver("collection.json", collection, new FileManager(gson), null);
+        return new CommandManager(collection, gson,
+                new StudyGroupInputHandler(new Scanner(""), new IdGenerator()), null, saver,
+                new AutoSaver(collection, saver, 0, Duration.ZERO));
+    }
+
+    /**
+     * Приемник, который запоминает каждый записанный фрагмент отдельно.
+     */
+    private static final class RecordingOutput implements Appendable {
+        final List<String> parts = new ArrayList<>();
+
+        @Override
+        public Appendable append(CharSequence text) {
+            parts.add(String.valueOf(text));
+            return this;
+        }
+
+        @Override
+        public Appendable append(CharSequence text, int start, int end) {
+            return append(String.valueOf(text).subSequence(start, end));
+        }
+
+        @Override
+        public Appendable append(char c) {
+            return append(String.valueOf(c));
+        }
+
+        String text() {
+            return String.join("", parts);
+        }
+    }
+
+    @Test
+    void onlyCollectionCommandsWaitForLoad() {
+        final CommandManager commandManager = commandManager(new StudyGroupCollection(true));
+        for (String command : new String[] {"help", "welcome", "exit", "save_status", "нет"}) {
+            assertFalse(commandManager.requiresCollection(command), command);
+        }
+        for (String command : new String[] {"info", "show", "add", "save", "execute_script"}) {
+            assertTrue(commandManager.requiresCollection(command), command);
+        }
+    }
+
+    @Test
+    void streamedOutputMatchesStringResult() throws IOException {
+        final StudyGroupCollection collection = new StudyGroupCollection(true);
+        final CommandManager commandManager = commandManager(collection);
+        final String[][] commands = {
+            {"show"}, {"top_k", "3"}, {"bottom_k", "3"}, {"top_k", "x"},
+            {"filter_students_count_between", "2", "5"}, {"print_field_ascending_group_admin"},
+            {"group_counting_by_group_admin"}, {"help"}, {"info"}, {"нет"},
+        };
+        for (int size : new int[] {0, 10}) {
+            for (long id = 1; id <= size; id++) {
+                collection.add(group(id));
+            }
+            for (String[] command : commands) {
+                final String[] args = Arrays.copyOfRange(command, 1, command.length);
+                final RecordingOutput output = new RecordingOutput();
+                commandManager.executeCommand(command[0], args, output);
+                assertEquals(commandManager.executeCommand(command[0], args) + "\n",
+                        output.text(), command[0]);
+            }
+        }
+    }
+
+    @Test
+    void showWritesGroupsOneByOne() throws IOException {
+        final StudyGroupCollection collection = new StudyGroupCollection(true);
+        for (long id = 1; id <= 20; id++) {
+            collection.add(group(id));
+        }
+        final RecordingOutput output = new RecordingOutput();
+        commandManager(collection).executeCommand("show", new String[0], output);
+        for (String part : output.parts) {
+            assertTrue(part.indexOf("group-") == part.lastIndexOf("group-"), part);
+        }
+        assertEquals(20, output.text().split("\n").length);
+    }
+}
@@ -0,0 +1,246 @@
+package util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import model.Coordinates;
+import model.FormOfEducation;
+import model.Person;
+import model.StudyGroup;
+import model.StudyGroupCollection;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Тесты чтения и записи файла коллекции.
+ */
+class FileManagerTest {
+
+    @TempDir
+    Path directory;
+
+    private final Gson gson = gson();
+
+    private static Gson gson() {
+        final LocalDateTimeAdapter localDateTimeAdapter = new LocalDateTimeAdapter();
+        final DateAdapter dateAdapter = new DateAdapter();
+        final CoordinatesAdapter coordinatesAdapter = new CoordinatesAdapter();
+        final PersonAdapter personAdapter = new PersonAdapter(dateAdapter);
+        return new GsonBuilder()
+                .registerTypeAdapter(LocalDateTime.class, localDateTimeAdapter)
+                .registerTypeHierarchyAdapter(Date.class, dateAdapter)
+                .registerTypeAdapter(Coordinates.class, coordinatesAdapter)
+                .registerTypeAdapter(Person.class, personAdapter)
+                .registerTypeAdapter(StudyGroup.class, new StudyGroupAdapter(
+                        coordinatesAdapter, localDateTimeAdapter, personAdapter))
+                .create();
+    }
+
+    private static StudyGroup group(long id, Random random) {
+        final StudyGroup group = new StudyGroup();
+        group.setId(id);
+        group.setName("group \"" + id + "\" <группа>");
+        final Coordinates coordinates = new Coordinates();
+        coordinates.setX1(random.nextDouble() * 100);
+        coordinates.setY1(random.nextInt(100));
+        group.setCoordinates(coordinates);
+        group.setStudentsCount(1 + random.nextInt(30));
+        group.setShouldBeExpelled(1 + random.nextInt(5));
+        group.setAverageMark(1f + random.nextInt(40) / 10f);
+        group.setFormOfEducation(FormOfEducation.values()[random.nextInt(3)]);
+        group.setCreationDate(LocalDateTime.of(2020, 1, 1, 0, 0).plusNanos(random.nextLong()
+                & 0xFFFF_FFFF_FFFFL));
+        if (random.nextBoolean()) {
+            final Person admin = new Person();
+            admin.setName("admin-" + random.nextInt(10));
+            admin.setHeight(150f + random.nextInt(50));
+            admin.setPassportId("passport-" + id);
+            admin.setBirthday(new Date(random.nextInt(1000) * 86_400_000L));
+            group.setGroupAdmin(admin);
+        }
+        return group;
+    }
+
+    private static List<StudyGroup> groups(int count) {
+        final Random random = new Random(count);
+        final List<StudyGroup> groups = new ArrayList<>();
+        for (long id = 1; id <= count; id++) {
+            groups.add(group(id, random));
+        }
+        return groups;
+    }
+
+    private String file() {
+        return directory.resolve("collection.json").toString();
+    }
+
+    private List<String> json(List<StudyGroup> groups) {
+        final List<String> result = new ArrayList<>();
+        for (StudyGroup group : groups) {
+            result.add(gson.toJson(group));
+        }
+        return result;
+    }
+
+    @Test
+    void savedCollectionLoadsBackInOrder() throws IOException {
+        final FileManager fileManager = new FileManager(gson);
+        final List<StudyGroup> groups = groups(500);
+        fileManager.saveCollection(file(), groups);
+
+        final StudyGroupCollection collection = new StudyGroupCollection();
+        assertEquals(500, fileManager.loadCollection(file(), collection));
+        assertEquals(json(groups), json(collection.getCollection()));
+    }
+
+    @Test
+    void savedFileMatchesGsonOutput() throws IOException {
+        final FileManager fileManager = new FileManager(gson);
+        for (int count : new int[] {0, 1, 300}) {
+            final List<StudyGroup> groups = groups(count);
+            fileManager.saveCollection(file(), groups);
+            final Type type = new TypeToken<List<StudyGroup>>() { }.getType();
+            assertEquals(gson.toJson(groups, type),
+                    Files.readString(Path.of(file()), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void binarySnapshotLoadsBackIdenticalGroups() throws IOException {
+        final FileManager fileManager = new FileManager(gson);
+        final List<StudyGroup> groups = groups(500);
+        fileManager.saveBinary(file(), groups);
+        assertTrue(fileManager.isBinarySnapshot(file()));
+
+        final StudyGroupCollection collection = new StudyGroupCollection();
+        assertEquals(500, fileManager.loadCollection(file(), collection));
+        assertEquals(json(groups), json(collection.getCollection()));
+
+        // Файл сохраняет свой формат, а экспорт в JSON дает исходный текст
+        fileManager.saveCollection(file(), collection.getCollection());
+        assertTrue(fileManager.isBinarySnapshot(file()));
+        final String jsonFile = directory.resolve("export.json").toString();
+        fileManager.saveJson(jsonFile, collection.getCollection());
+        final Type type = new TypeToken<List<StudyGroup>>() { }.getType();
+        assertEquals(gson.toJson(groups, type),
+                Files.readString(Path.of(jsonFile), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void truncatedBinarySnapshotIsReported() throws IOException {
+        final FileManager fileManager = new FileManager(gson);
+        fileManager.saveBinary(file(), groups(20));
+        final byte[] content = Files.readAllBytes(Path.of(file()));
+        Files.write(Path.of(file()), Arrays.copyOf(content, content.length - 7));
+
+        final StudyGroupCollection collection = new StudyGroupCollection();
+        assertThrows(IOException.class, () -> fileManager.loadCollection(file(), collection));
+        assertEquals(0, collection.size());
+    }
+
+    @Test
+    void damagedOffsetTableIsReportedBeforeLoading() throws IOException {
+        final FileManager fileManager = new FileManager(gson);
+        fileManager.saveBinary(file(), groups(20));
+        final byte[] content = Files.readAllBytes(Path.of(file()));
+        // Третья запись таблицы смещений указывает за пределы записей
+        final int tableOffset = (int) ByteBuffer.wrap(content, content.length - 12, 8).getLong();
+        ByteBuffer.wrap(content).putLong(tableOffset + 2 * Long.BYTES, content.length);
+        Files.write(Path.of(file()), content);
+
+        final StudyGroupCollection collection = new StudyGroupCollection();
+        assertThrows(IOException.class, () -> fileManager.loadCollection(file(), collection));
+        assertEquals(0, collection.size());
+    }
+
+    @Test
+    void versionOneSnapshotIsStillReadable() throws IOException {
+        final FileManager fileManager = new FileManager(gson);
+        final List<StudyGroup> groups = groups(50);
+        fileManager.saveBinary(file(), groups);
+        final byte[] content = Files.readAllBytes(Path.of(file()));
+        // Версия 1 отличается номером версии и отсутствием таблицы смещений и концевика
+        final int tableOffset = (int) ByteBuffer.wrap(content, content.length - 12, 8).getLong();
+        final byte[] versionOne = Arrays.copyOf(content, tableOffset);
+        ByteBuffer.wrap(versionOne).putInt(Integer.BYTES, 1);
+        Files.write(Path.of(file()), versionOne);
+
+        final StudyGroupCollection collection = new StudyGroupCollection();
+        assertEquals(50, fileManager.loadCollection(file(), collection));
+        assertEquals(json(groups), json(collection.getCollection()));
+    }
+
+    @Test
+    void emptyOrNullFileGivesEmptyCollection() throws IOException {
+        final FileManager fileManager = new FileManager(gson);
+        for (String content : new String[] {"", "null", "[]"}) {
+            Files.writeString(Path.of(file()), content, StandardCharsets.UTF_8);
+            final StudyGroupCollection collection = new StudyGroupCollection();
+            collection.add(groups(1).get(0));
+            assertEquals(0, fileManager.loadCollection(file(), collection));
+            assertEquals(0, collection.size());
+        }
+    }
+
+    @Test
+    void damagedFileIsReportedAndLeavesCollectionEmpty() throws IOException {
+        final FileManager fileManager = new FileManager(gson);
+        fileManager.saveCollection(file(), groups(20));
+        final byte[] content = Files.readAllBytes(Path.of(file()));
+        Files.write(Path.of(file()), Arrays.copyOf(content, content.length / 2));
+
+        final StudyGroupCollection collection = new StudyGroupCollection();
+        assertThrows(IOException.class, () -> fileManager.loadCollection(file(), collection));
+        assertEquals(0, collection.size());
+    }
+
+    @Test
+    void duplicateIdsAreRejected() throws IOException {
+        final FileManager fileManager = new FileManager(gson);
+        final List<StudyGroup> groups = groups(3);
+        groups.add(groups.get(0));
+        fileManager.saveCollection(file(), groups);
+        assertThrows(IllegalArgumentException.class,
+                () -> fileManager.loadCollection(file(), new StudyGroupCollection()));
+    }
+
+    @Test
+    void loadedFileCanBeReplacedRightAway() throws IOException {
+        final FileManager fileManager = new FileManager(gson);
+        for (String format : new String[] {"json", "binary", "segments"}) {
+            final String fileName = directory.resolve(format).toString();
+            final List<StudyGroup> expected = groups(300);
+            if ("binary".equals(format)) {
+                fileManager.saveBinary(fileName, expected);
+            } else if ("segments".equals(format)) {
+                fileManager.saveSegments(fileName, expected);
+            } else {
+                fileManager.saveJson(fileName, expected);
+            }
+            // Загрузка освобождает отображения файла, поэтому его сразу можно заменить
+            for (int round = 0; round < 3; round++) {
+                final StudyGroupCollection collection = new StudyGroupCollection(true);
+                fileManager.loadCollection(fileName, collection);
+                assertEquals(json(expected), json(collection.getCollection()), format);
+                collection.removeById(expected.remove(0).getId());
+                fileManager.saveCollection(fileName, collection.getCollection());
+            }
+        }
+    }
+}
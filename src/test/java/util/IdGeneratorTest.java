@@ -0,0 +1,126 @@
+package util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import model.StudyGroup;
+import model.StudyGroupCollection;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Тесты генератора ID: уникальность при конкурентной выдаче и учет чужих ID.
+ */
+class IdGeneratorTest {
+
+    private static final int THREADS = 8;
+    private static final int IDS_PER_THREAD = 20_000;
+
+    private static StudyGroup group(long id) {
+        final StudyGroup group = new StudyGroup();
+        group.setId(id);
+        group.setName("group-" + id);
+        group.setStudentsCount((int) (id % 10) + 1);
+        return group;
+    }
+
+    @Test
+    void concurrentIdsAreUniqueAndAccepted() throws Exception {
+        final StudyGroupCollection collection = new StudyGroupCollection(true);
+        final IdGenerator generator = new IdGenerator(collection);
+        final Set<Long> ids = ConcurrentHashMap.newKeySet();
+        final CountDownLatch start = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < IDS_PER_THREAD; i++) {
+                        final long id = generator.getNextId();
+                        assertTrue(ids.add(id), "ID " + id + " выдан повторно");
+                        // Повторный ID коллекция отклонила бы исключением
+                        collection.add(group(id));
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(THREADS * IDS_PER_THREAD, ids.size());
+        assertEquals(ids.size(), collection.size());
+        for (long id : ids) {
+            assertEquals(id, collection.findById(id).getId());
+        }
+        // Каждый поток теряет не больше одного неизрасходованного блока
+        final long highest = collection.getHighestId();
+        assertTrue(highest - ids.size() <= (long) THREADS * IdGenerator.BLOCK_SIZE,
+                "слишком много пропущенных ID: " + (highest - ids.size()));
+    }
+
+    @Test
+    void leaseIsDroppedAfterReservedIds() {
+        final StudyGroupCollection collection = new StudyGroupCollection(false);
+        final IdGenerator generator = new IdGenerator(collection);
+        final long first = generator.getNextId();
+        collection.add(group(first));
+
+        // Группа с чужим ID внутри арендованного блока, как при воспроизведении журнала
+        collection.reserveIds(first + 2);
+        collection.add(group(first + 2));
+        final Set<Long> issued = new HashSet<>();
+        for (int i = 0; i < IdGenerator.BLOCK_SIZE * 3; i++) {
+            final long id = generator.getNextId();
+            assertTrue(id > first + 2, "ID " + id + " не больше импортированного");
+            assertTrue(issued.add(id));
+            collection.add(group(id));
+        }
+
+        final List<StudyGroup> loaded = new ArrayList<>();
+        loaded.add(group(10_000));
+        collection.loadFrom(loaded.iterator());
+        assertTrue(generator.getNextId() > 10_000);
+    }
+
+    @Test
+    void removedIdsAreNotReused() {
+        final StudyGroupCollection collection = new StudyGroupCollection(false);
+        final IdGenerator generator = new IdGenerator(collection);
+        final long id = generator.getNextId();
+        collection.add(group(id));
+        collection.removeById(id);
+
+        final IdGenerator restarted = new IdGenerator(collection);
+        assertTrue(restarted.getNextId() > id);
+    }
+
+    @Test
+    void generatorRequiresCollection() {
+        assertThrows(IllegalStateException.class, () -> new IdGenerator().getNextId());
+    }
+
+    @Test
+    void initializedGeneratorContinuesAfterHighestId() {
+        final StudyGroupCollection collection = new StudyGroupCollection(true);
+        collection.add(group(9));
+        collection.add(group(5));
+        final IdGenerator generator = new IdGenerator();
+        generator.initialize(collection);
+        assertEquals(10, generator.getNextId());
+        assertEquals(11, generator.getNextId());
+    }
+}
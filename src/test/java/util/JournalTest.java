@@ -0,0 +1,334 @@
+package util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import model.Coordinates;
+import model.FormOfEducation;
+import model.Person;
+import model.StudyGroup;
+import model.StudyGroupCollection;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Тесты журнала изменений: воспроизведение, уплотнение и сбои во время уплотнения.
+ */
+class JournalTest {
+
+    @TempDir
+    Path directory;
+
+    private final Gson gson = gson();
+
+    private static Gson gson() {
+        final LocalDateTimeAdapter localDateTimeAdapter = new LocalDateTimeAdapter();
+        final DateAdapter dateAdapter = new DateAdapter();
+        final CoordinatesAdapter coordinatesAdapter = new CoordinatesAdapter();
+        final PersonAdapter personAdapter = new PersonAdapter(dateAdapter);
+        return new GsonBuilder()
+                .registerTypeAdapter(LocalDateTime.class, localDateTimeAdapter)
+                .registerTypeHierarchyAdapter(Date.class, dateAdapter)
+                .registerTypeAdapter(Coordinates.class, coordinatesAdapter)
+                .registerTypeAdapter(Person.class, personAdapter)
+                .registerTypeAdapter(StudyGroup.class, new StudyGroupAdapter(
+                        coordinatesAdapter, localDateTimeAdapter, personAdapter))
+                .create();
+    }
+
+    private static StudyGroup group(long id) {
+        final StudyGroup group = new StudyGroup();
+        group.setId(id);
+        group.setName("group-" + id);
+        final Coordinates coordinates = new Coordinates();
+        coordinates.setX1(1.0 * id);
+        coordinates.setY1(2);
+        group.setCoordinates(coordinates);
+        group.setStudentsCount(1 + (int) (id % 50));
+        group.setShouldBeExpelled(1);
+        group.setAverageMark(4f);
+        group.setFormOfEducation(FormOfEducation.EVENING_CLASSES);
+        group.setCreationDate(LocalDateTime.now());
+        return group;
+    }
+
+    private static List<Long> ids(StudyGroupCollection collection) {
+        final List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < collection.size(); i++) {
+            ids.add(collection.get(i).getId());
+        }
+        return ids;
+    }
+
+    private String file() {
+        return directory.resolve("collection.json").toString();
+    }
+
+    /**
+     * Загружает коллекцию так же, как при запуске: снимок, затем журнал.
+     */
+    private StudyGroupCollection load() throws IOException {
+        final StudyGroupCollection collection = new StudyGroupCollection(true);
+        new FileManager(gson).loadCollection(file(), collection);
+        new Journal(file(), gson).replay(collection);
+        return collection;
+    }
+
+    private StudyGroupCollection open(Journal journal) throws IOException {
+        final StudyGroupCollection collection = new StudyGroupCollection(true);
+        new FileManager(gson).loadCollection(file(), collection);
+        journal.replay(collection);
+        journal.attach(collection);
+        return collection;
+    }
+
+    @Test
+    void replayRestoresEveryOperation() throws IOException {
+        new FileManager(gson).saveJson(file(), new ArrayList<>());
+        final Journal journal = new Journal(file(), gson);
+        final StudyGroupCollection collection = open(journal);
+        for (long id = 1; id <= 5; id++) {
+            collection.add(group(id));
+        }
+        collection.insertAt(0, group(6));
+        collection.update(3, group(3));
+        collection.set(2, group(7));
+        collection.removeById(4);
+        collection.begin();
+        collection.add(group(8));
+        collection.removeById(1);
+        collection.commit();
+        journal.sync();
+
+        final StudyGroupCollection restored = load();
+        assertEquals(ids(collection), ids(restored));
+        assertEquals(collection.getHighestId(), restored.getHighestId());
+
+        collection.clear();
+        journal.sync();
+        final StudyGroupCollection cleared = load();
+        assertEquals(0, cleared.size());
+        // ID удаленных групп остаются занятыми
+        assertEquals(8, cleared.getHighestId());
+    }
+
+    @Test
+    void compactionWritesSnapshotAndEmptiesJournal() throws IOException {
+        for (String format : new String[] {"json", "binary", "segments"}) {
+            final FileManager fileManager = new FileManager(gson);
+            save(fileManager, format);
+            final Journal journal = new Journal(file(), gson);
+            final StudyGroupCollection collection = open(journal);
+            for (long id = 1; id <= 10; id++) {
+                collection.add(group(id));
+            }
+            journal.compact(collection, fileManager);
+            assertEquals(0, journal.getRecords());
+            assertFalse(Files.exists(Path.of(file() + ".journal.old")));
+
+            collection.removeById(5);
+            collection.add(group(11));
+            journal.sync();
+            assertEquals(2, journal.getRecords());
+
+            final StudyGroupCollection restored = new StudyGroupCollection(true);
+            fileManager.loadCollection(file(), restored);
+            assertEquals(10, restored.size(), format);
+            assertEquals(2, new Journal(file(), gson).replay(restored), format);
+            assertEquals(ids(collection), ids(restored), format);
+            journal.discard();
+        }
+    }
+
+    @Test
+    void highestIdSurvivesCompaction() throws IOException {
+        final FileManager fileManager = new FileManager(gson);
+        fileManager.saveCollection(file(), new ArrayList<>());
+        final Journal journal = new Journal(file(), gson);
+        final StudyGroupCollection collection = open(journal);
+        for (long id = 1; id <= 3; id++) {
+            collection.add(group(id));
+        }
+        collection.removeById(3);
+        journal.compact(collection, fileManager);
+        assertEquals(3, load().getHighestId());
+    }
+
+    @Test
+    void discardedJournalForcesFullSnapshot() throws IOException {
+        final FileManager fileManager = new FileManager(gson);
+        fileManager.saveCollection(file(), new ArrayList<>());
+        final Journal journal = new Journal(file(), gson);
+        final StudyGroupCollection collection = open(journal);
+        assertFalse(journal.needsCompaction(collection.size()));
+
+        // Отказ от поврежденного файла: ни журнал, ни файл не соответствуют коллекции
+        journal.discard();
+        assertTrue(journal.needsCompaction(collection.size()));
+        journal.compact(collection, fileManager);
+        assertFalse(journal.needsCompaction(collection.size()));
+    }
+
+    @Test
+    void crashDuringCompactionKeepsEveryChangeOnce() throws IOException {
+        for (String format : new String[] {"json", "binary", "segments"}) {
+            for (boolean afterReplace : new boolean[] {false, true}) {
+                final FileManager fileManager = new FileManager(gson);
+                save(fileManager, format);
+                final Journal journal = new Journal(file(), gson);
+                final StudyGroupCollection collection = open(journal);
+                for (long id = 1; id <= 5; id++) {
+                    collection.add(group(id));
+                }
+
+                final Path oldJournal = Path.of(file() + ".journal.old");
+                final Path backup = directory.resolve("backup");
+                final FileManager crashing = new FileManager(gson) {
+                    @Override
+                    File saveCollection(String fileName, List<StudyGroup> groups,
+                            BeforeReplace beforeReplace) throws IOException {
+                        return super.saveCollection(fileName, groups, temporary -> {
+                            beforeReplace.accept(temporary);
+                            Files.copy(oldJournal, backup);
+                            if (!afterReplace) {
+                                throw new IOException("сбой до замены файла");
+                            }
+                        });
+                    }
+                };
+                try {
+                    journal.compact(collection, crashing);
+                    assertTrue(afterReplace);
+                } catch (IOException e) {
+                    assertFalse(afterReplace);
+                }
+                if (afterReplace) {
+                    // Сбой после замены файла коллекции, но до удаления старого журнала
+                    Files.copy(backup, oldJournal);
+                }
+                Files.delete(backup);
+                collection.add(group(6));
+                journal.sync();
+
+                final String message = format + (afterReplace ? " после замены" : " до замены");
+                final StudyGroupCollection restored = load();
+                assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 6L), ids(restored), message);
+                journal.discard();
+            }
+        }
+    }
+
+    @Test
+    void interruptedCompactionReplaysBothJournals() throws IOException {
+        final FileManager fileManager = new FileManager(gson);
+        fileManager.saveCollection(file(), new ArrayList<>());
+        final Journal journal = new Journal(file(), gson);
+        final StudyGroupCollection collection = open(journal);
+        for (long id = 1; id <= 5; id++) {
+            collection.add(group(id));
+        }
+        // Сбой после переименования журнала, но до записи снимка
+        collection.checkpoint(() -> { });
+        journal.sync();
+        Files.move(Path.of(file() + ".journal"), Path.of(file() + ".journal.old"));
+        final Journal reopened = new Journal(file(), gson);
+        final StudyGroupCollection next = open(reopened);
+        next.add(group(6));
+        reopened.sync();
+
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 6L), ids(load()));
+    }
+
+    @Test
+    void failedAppendUndoesChange() throws IOException {
+        new FileManager(gson).saveJson(file(), new ArrayList<>());
+        final Journal journal = new Journal(file(), gson);
+        final StudyGroupCollection collection = open(journal);
+        collection.add(group(1));
+        collection.add(group(2));
+        journal.sync();
+
+        // Журнал нельзя открыть: на его месте каталог
+        journal.discard();
+        final Path journalPath = Path.of(file() + ".journal");
+        Files.createDirectory(journalPath);
+        final long modifications = collection.getModificationCount();
+        assertThrows(UncheckedIOException.class, () -> collection.add(group(3)));
+        assertThrows(UncheckedIOException.class, () -> collection.removeById(1));
+        collection.begin();
+        collection.add(group(4));
+        assertThrows(UncheckedIOException.class, collection::commit);
+        assertEquals(List.of(1L, 2L), ids(collection));
+        assertEquals(modifications, collection.getModificationCount());
+
+        // После восстановления журнала изменения снова записываются
+        Files.delete(journalPath);
+        journal.compact(collection, new FileManager(gson));
+        collection.add(group(5));
+        journal.sync();
+        assertEquals(List.of(1L, 2L, 5L), ids(load()));
+    }
+
+    @Test
+    void tornLastLineIsDroppedAndTruncated() throws IOException {
+        new FileManager(gson).saveJson(file(), new ArrayList<>());
+        final Path journalPath = Path.of(file() + ".journal");
+        final String line = "{\"op\":\"insert\",\"index\":0,\"group\":";
+        Files.write(journalPath, List.of("{\"op\":\"remove\",\"id\":3}"),
+                StandardCharsets.UTF_8);
+        Files.writeString(journalPath, line, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        final long intact = Files.size(journalPath) - line.length();
+
+        final StudyGroupCollection restored = new StudyGroupCollection(true);
+        new FileManager(gson).loadCollection(file(), restored);
+        assertEquals(1, new Journal(file(), gson).replay(restored));
+        assertEquals(intact, Files.size(journalPath));
+        assertEquals(3, restored.getHighestId());
+    }
+
+    @Test
+    void corruptedOrDuplicateRecordsAreReported() throws IOException {
+        new FileManager(gson).saveJson(file(), List.of(group(1)));
+        final Path journalPath = Path.of(file() + ".journal");
+        final String duplicate = "{\"op\":\"insert\",\"index\":0,\"group\":"
+                + gson.toJson(group(1)) + "}";
+        Files.write(journalPath, List.of(duplicate), StandardCharsets.UTF_8);
+        final StudyGroupCollection collection = new StudyGroupCollection(true);
+        new FileManager(gson).loadCollection(file(), collection);
+        assertThrows(IOException.class, () -> new Journal(file(), gson).replay(collection));
+        assertEquals(List.of(1L), ids(collection));
+
+        Files.write(journalPath, List.of("{\"op\":", "{\"op\":\"clear\"}"),
+                StandardCharsets.UTF_8);
+        assertThrows(IOException.class, () -> load());
+    }
+
+    private void save(FileManager fileManager, String format) throws IOException {
+        switch (format) {
+            case "binary":
+                fileManager.saveBinary(file(), new ArrayList<>());
+                break;
+            case "segments":
+                fileManager.saveSegments(file(), new ArrayList<>());
+                break;
+            default:
+                fileManager.saveJson(file(), new ArrayList<>());
+                break;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import model.Coordinates;
+import model.FormOfEducation;
+import model.Person;
+import model.StudyGroup;
+import model.StudyGroupCollection;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Тесты параллельной загрузки JSON: разрезание массива на куски не должно менять результат.
+ */
+class ParallelJsonLoaderTest {
+
+    /** Имена с символами, похожими на границы элементов. */
+    private static final String[] NAMES = {
+        "plain", "},{", "[\"]\", {", "\\", "\\\"},", "кириллица, {[", "\"\"", "a\\\\\",{"
+    };
+
+    @TempDir
+    Path directory;
+
+    private final Gson gson = gson();
+
+    private static Gson gson() {
+        final LocalDateTimeAdapter localDateTimeAdapter = new LocalDateTimeAdapter();
+        final DateAdapter dateAdapter = new DateAdapter();
+        final CoordinatesAdapter coordinatesAdapter = new CoordinatesAdapter();
+        final PersonAdapter personAdapter = new PersonAdapter(dateAdapter);
+        return new GsonBuilder()
+                .registerTypeAdapter(LocalDateTime.class, localDateTimeAdapter)
+                .registerTypeHierarchyAdapter(Date.class, dateAdapter)
+                .registerTypeAdapter(Coordinates.class, coordinatesAdapter)
+                .registerTypeAdapter(Person.class, personAdapter)
+                .registerTypeAdapter(StudyGroup.class, new StudyGroupAdapter(
+                        coordinatesAdapter, localDateTimeAdapter, personAdapter))
+                .create();
+    }
+
+    private static List<StudyGroup> groups(int count, Random random) {
+        final List<StudyGroup> groups = new ArrayList<>();
+        for (long id = 1; id <= count; id++) {
+            final StudyGroup group = new StudyGroup();
+            group.setId(id);
+            group.setName(NAMES[random.nextInt(NAMES.length)] + id);
+            final Coordinates coordinates = new Coordinates();
+            coordinates.setX1(random.nextDouble());
+            coordinates.setY1(random.nextInt(100));
+            group.setCoordinates(coordinates);
+            group.setStudentsCount(1 + random.nextInt(30));
+            group.setShouldBeExpelled(1 + random.nextInt(5));
+            group.setAverageMark(4f);
+            group.setFormOfEducation(FormOfEducation.values()[random.nextInt(3)]);
+            if (random.nextBoolean()) {
+                final Person admin = new Person();
+                admin.setName(NAMES[random.nextInt(NAMES.length)]);
+                admin.setHeight(170f);
+                admin.setPassportId("p" + id);
+                group.setGroupAdmin(admin);
+            }
+            groups.add(group);
+        }
+        return groups;
+    }
+
+    private Path file() {
+        return directory.resolve("collection.json");
+    }
+
+    private List<String> json(Iterator<StudyGroup> groups) {
+        final List<String> result = new ArrayList<>();
+        groups.forEachRemaining(group -> result.add(gson.toJson(group)));
+        return result;
+    }
+
+    /**
+     * Читает файл параллельно, разбирая все куски до закрытия канала.
+     */
+    private Iterator<StudyGroup> read(long chunkBytes, int threads) throws IOException {
+        final ForkJoinPool pool = new ForkJoinPool(threads);
+        try (FileChannel channel = FileChannel.open(file(), StandardOpenOption.READ)) {
+            final Iterator<StudyGroup> groups =
+                    ParallelJsonLoader.read(channel, gson, pool, chunkBytes);
+            if (groups == null) {
+                return null;
+            }
+            final List<StudyGroup> result = new ArrayList<>();
+            groups.forEachRemaining(result::add);
+            return result.iterator();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private List<String> sequential() throws IOException {
+        final StudyGroupCollection collection = new StudyGroupCollection();
+        new FileManager(gson).loadCollection(file().toString(), collection);
+        return json(collection.getCollection().iterator());
+    }
+
+    @Test
+    void chunksGiveSameGroupsAsSequentialLoad() throws IOException {
+        final Random random = new Random(1);
+        for (int count : new int[] {0, 1, 2, 3, 50, 400}) {
+            new FileManager(gson).saveJson(file().toString(), groups(count, random));
+            final List<String> expected = sequential();
+            assertEquals(count, expected.size());
+            for (long chunkBytes : new long[] {1, 37, 256, 4096, Long.MAX_VALUE}) {
+                for (int threads : new int[] {1, 2, 4}) {
+                    assertEquals(expected, json(read(chunkBytes, threads)),
+                            count + " групп, куски от " + chunkBytes + " байт");
+                }
+            }
+        }
+    }
+
+    @Test
+    void formattedFileIsCutBetweenElements() throws IOException {
+        final List<StudyGroup> groups = groups(100, new Random(2));
+        final Gson pretty = gson.newBuilder().setPrettyPrinting().create();
+        Files.writeString(file(), " \n" + pretty.toJson(groups) + "\n", StandardCharsets.UTF_8);
+        assertEquals(sequential(), json(read(64, 3)));
+    }
+
+    @Test
+    void lenientSyntaxFallsBackToSequentialReader() throws IOException {
+        for (String content : new String[] {
+            "[{'id':1,'name':'a'}]", "[{\"id\":1} /* c */]", "[{\"id\":1};{\"id\":2}]",
+            "{\"id\":1}", "﻿[]"
+        }) {
+            Files.writeString(file(), content, StandardCharsets.UTF_8);
+            assertNull(read(1, 2), content);
+        }
+    }
+
+    @Test
+    void truncatedOrInvalidFileIsReported() throws IOException {
+        new FileManager(gson).saveJson(file().toString(), groups(50, new Random(3)));
+        final String content = Files.readString(file(), StandardCharsets.UTF_8);
+
+        Files.writeString(file(), content.substring(0, content.length() - 1),
+                StandardCharsets.UTF_8);
+        assertThrows(EOFException.class, () -> read(64, 2));
+
+        Files.writeString(file(), content.replace("\"studentsCount\":", "\"studentsCount\":-"),
+                StandardCharsets.UTF_8);
+        assertThrows(JsonParseException.class, () -> read(64, 2));
+    }
+
+    @Test
+    void duplicateIdsInDifferentChunksAreRejected() throws IOException {
+        final List<StudyGroup> groups = groups(40, new Random(4));
+        groups.add(groups.get(0));
+        new FileManager(gson).saveJson(file().toString(), groups);
+        final Iterator<StudyGroup> loaded = read(64, 2);
+        assertThrows(IllegalArgumentException.class,
+                () -> new StudyGroupCollection().loadFrom(loaded));
+    }
+}
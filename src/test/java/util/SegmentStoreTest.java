@@ -0,0 +1,221 @@
+package util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import model.Coordinates;
+import model.FormOfEducation;
+import model.Person;
+import model.StudyGroup;
+import model.StudyGroupCollection;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Тесты хранения коллекции сегментами: полная и выборочная запись, загрузка.
+ */
+class SegmentStoreTest {
+
+    /** Шаг ID, при котором группы попадают в несколько сегментов. */
+    private static final long ID_STEP = 997;
+
+    @TempDir
+    Path directory;
+
+    private final Gson gson = gson();
+
+    private static Gson gson() {
+        final LocalDateTimeAdapter localDateTimeAdapter = new LocalDateTimeAdapter();
+        final DateAdapter dateAdapter = new DateAdapter();
+        final CoordinatesAdapter coordinatesAdapter = new CoordinatesAdapter();
+        final PersonAdapter personAdapter = new PersonAdapter(dateAdapter);
+        return new GsonBuilder()
+                .registerTypeAdapter(LocalDateTime.class, localDateTimeAdapter)
+                .registerTypeHierarchyAdapter(Date.class, dateAdapter)
+                .registerTypeAdapter(Coordinates.class, coordinatesAdapter)
+                .registerTypeAdapter(Person.class, personAdapter)
+                .registerTypeAdapter(StudyGroup.class, new StudyGroupAdapter(
+                        coordinatesAdapter, localDateTimeAdapter, personAdapter))
+                .create();
+    }
+
+    private static StudyGroup group(long id, Random random) {
+        final StudyGroup group = new StudyGroup();
+        group.setId(id);
+        group.setName("group-" + id);
+        final Coordinates coordinates = new Coordinates();
+        coordinates.setX1(random.nextDouble());
+        coordinates.setY1(random.nextInt(100));
+        group.setCoordinates(coordinates);
+        group.setStudentsCount(1 + random.nextInt(30));
+        group.setShouldBeExpelled(1 + random.nextInt(5));
+        group.setAverageMark(4f);
+        group.setFormOfEducation(FormOfEducation.values()[random.nextInt(3)]);
+        if (random.nextBoolean()) {
+            final Person admin = new Person();
+            admin.setName("admin-" + random.nextInt(10));
+            admin.setHeight(170f);
+            admin.setPassportId("passport-" + id);
+            group.setGroupAdmin(admin);
+        }
+        return group;
+    }
+
+    /**
+     * Коллекция из групп с ID, разбросанными по нескольким сегментам, в случайном порядке.
+     */
+    private static StudyGroupCollection collection(int count, Random random) {
+        final StudyGroupCollection collection = new StudyGroupCollection(true);
+        for (long i = 1; i <= count; i++) {
+            collection.insertAt(random.nextInt(collection.size() + 1), group(i * ID_STEP, random));
+        }
+        return collection;
+    }
+
+    private String file() {
+        return directory.resolve("collection.json").toString();
+    }
+
+    private List<String> json(List<StudyGroup> groups) {
+        final List<String> result = new ArrayList<>();
+        for (StudyGroup group : groups) {
+            result.add(gson.toJson(group));
+        }
+        return result;
+    }
+
+    /**
+     * Файлы сегментов из манифеста по ключу сегмента.
+     */
+    private Map<Long, String> segmentFiles() throws IOException {
+        final JsonObject manifest = JsonParser.parseString(
+                Files.readString(Path.of(file()), StandardCharsets.UTF_8)).getAsJsonObject();
+        final Map<Long, String> files = new TreeMap<>();
+        for (JsonElement segment : manifest.getAsJsonArray("segments")) {
+            files.put(segment.getAsJsonObject().get("key").getAsLong(),
+                    segment.getAsJsonObject().get("file").getAsString());
+        }
+        return files;
+    }
+
+    private Set<String> filesOnDisk() throws IOException {
+        try (Stream<Path> files = Files.list(Path.of(file() + ".segments"))) {
+            return files.map(path -> path.getFileName().toString())
+                    .collect(Collectors.toCollection(TreeSet::new));
+        }
+    }
+
+    private StudyGroupCollection load() throws IOException {
+        final StudyGroupCollection loaded = new StudyGroupCollection(true);
+        new FileManager(gson).loadCollection(file(), loaded);
+        return loaded;
+    }
+
+    @Test
+    void segmentsLoadBackInCollectionOrder() throws IOException {
+        final StudyGroupCollection collection = collection(300, new Random(1));
+        new FileManager(gson).saveSegments(file(), collection.getCollection());
+        assertTrue(new FileManager(gson).isSegmentManifest(file()));
+        assertTrue(segmentFiles().size() > 10);
+
+        final StudyGroupCollection loaded = load();
+        assertEquals(json(collection.getCollection()), json(loaded.getCollection()));
+    }
+
+    @Test
+    void manifestKeepsHighestId() throws IOException {
+        final StudyGroupCollection collection = collection(20, new Random(5));
+        final long highest = 20 * ID_STEP;
+        collection.removeById(highest);
+        new FileManager(gson).saveSegments(file(), collection.getCollection());
+        assertEquals(highest, load().getHighestId());
+    }
+
+    @Test
+    void onlyChangedSegmentsAreRewritten() throws IOException {
+        final Random random = new Random(2);
+        final StudyGroupCollection collection = collection(300, random);
+        final FileManager fileManager = new FileManager(gson);
+        fileManager.saveSegments(file(), collection.getCollection());
+        final Map<Long, String> before = segmentFiles();
+
+        final long span = SegmentStore.DEFAULT_SPAN;
+        final long updated = 10 * ID_STEP;
+        final long removed = 150 * ID_STEP;
+        final long inserted = 301 * ID_STEP;
+        collection.update(updated, group(updated, random));
+        collection.removeById(removed);
+        collection.insertAt(7, group(inserted, random));
+        final Set<Long> touched = Set.of(updated / span, removed / span, inserted / span);
+        fileManager.saveCollection(file(), collection.getCollection());
+
+        final Map<Long, String> after = segmentFiles();
+        for (Map.Entry<Long, String> entry : after.entrySet()) {
+            final boolean rewritten = !entry.getValue().equals(before.get(entry.getKey()));
+            assertEquals(touched.contains(entry.getKey()), rewritten, "сегмент " + entry.getKey());
+        }
+        // Старые версии перезаписанных сегментов удалены
+        assertEquals(new TreeSet<>(after.values()), filesOnDisk());
+
+        // Сохранение без изменений не перезаписывает ни одного сегмента
+        fileManager.saveCollection(file(), collection.getCollection());
+        assertEquals(after, segmentFiles());
+        assertEquals(json(collection.getCollection()), json(load().getCollection()));
+    }
+
+    @Test
+    void loadedCollectionSavesIncrementally() throws IOException {
+        final Random random = new Random(3);
+        new FileManager(gson).saveSegments(file(), collection(200, random).getCollection());
+        final Map<Long, String> before = segmentFiles();
+
+        final StudyGroupCollection loaded = load();
+        final long updated = 42 * ID_STEP;
+        loaded.update(updated, group(updated, random));
+        new FileManager(gson).saveCollection(file(), loaded.getCollection());
+
+        final Map<Long, String> after = segmentFiles();
+        for (Map.Entry<Long, String> entry : after.entrySet()) {
+            assertEquals(entry.getKey() == updated / SegmentStore.DEFAULT_SPAN,
+                    !entry.getValue().equals(before.get(entry.getKey())));
+        }
+        assertEquals(json(loaded.getCollection()), json(load().getCollection()));
+    }
+
+    @Test
+    void plainListRewritesEverySegment() throws IOException {
+        final StudyGroupCollection collection = collection(100, new Random(4));
+        final FileManager fileManager = new FileManager(gson);
+        fileManager.saveSegments(file(), collection.getCollection());
+        final Map<Long, String> before = segmentFiles();
+
+        final List<StudyGroup> groups = new ArrayList<>(collection.getCollection());
+        fileManager.saveSegments(file(), groups);
+        final Map<Long, String> after = segmentFiles();
+        assertEquals(before.keySet(), after.keySet());
+        for (Map.Entry<Long, String> entry : after.entrySet()) {
+            assertTrue(!entry.getValue().equals(before.get(entry.getKey())));
+        }
+        assertEquals(json(groups), json(load().getCollection()));
+    }
+}
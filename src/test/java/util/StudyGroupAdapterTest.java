@@ -0,0 +1,144 @@
+package util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonSyntaxException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+import java.util.Random;
+import model.Color;
+import model.Coordinates;
+import model.FormOfEducation;
+import model.Person;
+import model.StudyGroup;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Тесты адаптеров Gson для классов модели.
+ */
+class StudyGroupAdapterTest {
+
+    private static final Gson REFLECTIVE = new GsonBuilder()
+            .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter())
+            .create();
+
+    private final Gson gson = gson();
+
+    private static Gson gson() {
+        final LocalDateTimeAdapter localDateTimeAdapter = new LocalDateTimeAdapter();
+        final DateAdapter dateAdapter = new DateAdapter();
+        final CoordinatesAdapter coordinatesAdapter = new CoordinatesAdapter();
+        final PersonAdapter personAdapter = new PersonAdapter(dateAdapter);
+        return new GsonBuilder()
+                .registerTypeAdapter(LocalDateTime.class, localDateTimeAdapter)
+                .registerTypeHierarchyAdapter(Date.class, dateAdapter)
+                .registerTypeAdapter(Coordinates.class, coordinatesAdapter)
+                .registerTypeAdapter(Person.class, personAdapter)
+                .registerTypeAdapter(StudyGroup.class, new StudyGroupAdapter(
+                        coordinatesAdapter, localDateTimeAdapter, personAdapter))
+                .create();
+    }
+
+    private static StudyGroup group(long id, Random random, boolean birthday) {
+        final StudyGroup group = new StudyGroup();
+        group.setId(id);
+        group.setName("группа \"" + id + "\"\n\\");
+        final Coordinates coordinates = new Coordinates();
+        coordinates.setX1(random.nextDouble() * 1000 - 500);
+        coordinates.setY1(random.nextInt(100));
+        group.setCoordinates(coordinates);
+        group.setCreationDate(LocalDateTime.of(1990 + random.nextInt(40), 1 + random.nextInt(12),
+                1 + random.nextInt(28), random.nextInt(24), random.nextInt(60),
+                random.nextInt(60), random.nextInt(4) * 250_000_000 + random.nextInt(2)));
+        group.setStudentsCount(1 + random.nextInt(1000));
+        group.setShouldBeExpelled(1 + random.nextInt(1000));
+        group.setAverageMark(random.nextFloat() * 5 + 0.01f);
+        if (random.nextBoolean()) {
+            group.setFormOfEducation(FormOfEducation.values()[random.nextInt(3)]);
+        }
+        if (random.nextBoolean()) {
+            final Person admin = new Person();
+            admin.setName("admin-" + random.nextInt(10));
+            admin.setHeight(150f + random.nextFloat() * 50);
+            admin.setPassportId("passport-" + id);
+            if (random.nextBoolean()) {
+                admin.setEyeColor(Color.values()[random.nextInt(Color.values().length)]);
+            }
+            if (birthday) {
+                final long millis = random.nextLong() % 2_000_000_000_000L;
+                admin.setBirthday(random.nextBoolean()
+                        ? new java.sql.Date(millis) : new Date(millis / 1000 * 1000));
+            }
+            group.setGroupAdmin(admin);
+        }
+        return group;
+    }
+
+    @Test
+    void outputMatchesReflectiveGson() {
+        // Без дня рождения: рефлексивный Gson форматирует Date по системной локали
+        final Random random = new Random(1);
+        for (long id = 1; id <= 2000; id++) {
+            final StudyGroup group = group(id, random, false);
+            assertEquals(REFLECTIVE.toJson(group), gson.toJson(group));
+        }
+    }
+
+    @Test
+    void groupsSurviveRoundTrip() {
+        final Random random = new Random(2);
+        for (long id = 1; id <= 2000; id++) {
+            final StudyGroup group = group(id, random, true);
+            final String json = gson.toJson(group);
+            final StudyGroup restored = gson.fromJson(json, StudyGroup.class);
+            assertEquals(json, gson.toJson(restored));
+            assertEquals(group.getCreationDate(), restored.getCreationDate());
+            if (group.getGroupAdmin() != null && group.getGroupAdmin().getBirthday() != null) {
+                final Date birthday = group.getGroupAdmin().getBirthday();
+                final Date restoredBirthday = restored.getGroupAdmin().getBirthday();
+                assertEquals(birthday.getClass(), restoredBirthday.getClass());
+                assertEquals(birthday.toString(), restoredBirthday.toString());
+            }
+        }
+    }
+
+    @Test
+    void dateTimeTextMatchesIsoFormatter() {
+        final Random random = new Random(3);
+        final LocalDateTimeAdapter adapter = new LocalDateTimeAdapter();
+        for (int i = 0; i < 10_000; i++) {
+            final LocalDateTime value = LocalDateTime.of(random.nextInt(12_000) - 1000,
+                    1 + random.nextInt(12), 1 + random.nextInt(28), random.nextInt(24),
+                    random.nextInt(60), random.nextInt(60),
+                    random.nextBoolean() ? 0 : random.nextInt(1_000_000_000));
+            final String text = adapter.toJsonTree(value).getAsString();
+            final String expected = DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(value);
+            assertEquals(expected, text);
+            assertEquals(value, adapter.fromJsonTree(adapter.toJsonTree(value)));
+        }
+    }
+
+    @Test
+    void unknownFieldsAndNullsAreSkipped() {
+        final StudyGroup group = gson.fromJson("{\"id\":5,\"extra\":[1,{\"a\":2}],"
+                + "\"name\":\"x\",\"groupAdmin\":null,\"formOfEducation\":\"UNKNOWN\"}",
+                StudyGroup.class);
+        assertEquals(5, group.getId());
+        assertEquals("x", group.getName());
+        assertNull(group.getGroupAdmin());
+        assertNull(group.getFormOfEducation());
+    }
+
+    @Test
+    void invalidValuesAreReportedAsSyntaxErrors() {
+        assertThrows(JsonSyntaxException.class,
+                () -> gson.fromJson("{\"id\":1,\"studentsCount\":-3}", StudyGroup.class));
+        assertThrows(JsonSyntaxException.class,
+                () -> gson.fromJson("{\"id\":1,\"creationDate\":\"вчера\"}", StudyGroup.class));
+    }
+}